@@ -0,0 +1,51 @@
+package com.mvbr.store.benchmark;
+
+import com.mvbr.store.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Valor monetário de um request (texto do JSON → valor → texto) e soma,
+ * com {@link Money} e com o {@link BigDecimal} + moeda em String de antes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MoneyBenchmark {
+
+    private final String amountText = "14957.49";
+    private final String currencyText = "brl";
+
+    private final Money money = Money.parse(amountText, currencyText);
+    private final BigDecimal decimal = new BigDecimal(amountText);
+
+    @Benchmark
+    public String moneyParseAndFormat() {
+        return Money.parse(amountText, currencyText).amountText();
+    }
+
+    @Benchmark
+    public void bigDecimalParseAndFormat(Blackhole blackhole) {
+        blackhole.consume(currencyText.toUpperCase());
+        blackhole.consume(new BigDecimal(amountText).toPlainString());
+    }
+
+    @Benchmark
+    public Money moneySum() {
+        return money.plus(money);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalSum() {
+        return decimal.add(decimal);
+    }
+
+}
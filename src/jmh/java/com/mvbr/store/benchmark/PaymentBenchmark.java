@@ -0,0 +1,30 @@
+package com.mvbr.store.benchmark;
+
+import com.mvbr.store.model.Money;
+import com.mvbr.store.model.Payment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construção + validação de {@link Payment} (o que o controller faz a cada request).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PaymentBenchmark {
+
+    private final Money amount = Money.parse("14957.49", "brl");
+
+    @Benchmark
+    public boolean constructAndValidate() {
+        Payment payment = new Payment("pgto-100", "user-20", amount);
+        return payment.isValid();
+    }
+
+}
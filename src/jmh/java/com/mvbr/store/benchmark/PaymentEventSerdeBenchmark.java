@@ -0,0 +1,70 @@
+package com.mvbr.store.benchmark;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.codec.VersionedEventDeserializer;
+import com.mvbr.store.event.codec.VersionedEventSerializer;
+import com.mvbr.store.model.Money;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialização/deserialização de {@link PaymentApprovedEvent}: JSON (v1) x binário (v2),
+ * com as mesmas configs usadas pelos producers/consumers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PaymentEventSerdeBenchmark {
+
+    private static final String TOPIC = "payment.approved.v1";
+
+    @Param({"false", "true"})
+    public boolean binaryCodec;
+
+    private VersionedEventSerializer serializer;
+    private VersionedEventDeserializer deserializer;
+
+    private RecordHeaders serializedHeaders;
+    private byte[] serialized;
+
+    private final PaymentApprovedEvent event = new PaymentApprovedEvent(
+            "f04cc487-723d-4718-9082-d62273868fd2", "pgto-100", "user-20",
+            Money.parse("14957.49", "BRL"), "APPROVED", 1764908587316L);
+
+    @Setup
+    public void setup() {
+        serializer = new VersionedEventSerializer();
+        serializer.configure(Map.of(VersionedEventSerializer.BINARY_ENABLED, binaryCodec), false);
+
+        deserializer = new VersionedEventDeserializer();
+        deserializer.configure(Map.of(
+                JsonDeserializer.TRUSTED_PACKAGES, "*",
+                JsonDeserializer.USE_TYPE_INFO_HEADERS, true), false);
+
+        serializedHeaders = new RecordHeaders();
+        serialized = serializer.serialize(TOPIC, serializedHeaders, event);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        // cópia: o JsonDeserializer remove os headers de tipo depois de ler
+        return deserializer.deserialize(TOPIC, new RecordHeaders(serializedHeaders.toArray()), serialized);
+    }
+
+}
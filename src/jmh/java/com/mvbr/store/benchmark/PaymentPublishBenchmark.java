@@ -0,0 +1,79 @@
+package com.mvbr.store.benchmark;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.codec.VersionedEventSerializer;
+import com.mvbr.store.model.Money;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.repository.PaymentRepository;
+import com.mvbr.store.service.PaymentPublication;
+import com.mvbr.store.service.PaymentService;
+import com.mvbr.store.tracing.PaymentTracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminho de publicação: {@link PaymentService#approvePayment} (registro + transição no
+ * {@link PaymentRepository}, construção do evento, UUID e timestamp incluídos) e {@link PaymentApprovedProducer#producePaymentApproved}
+ * sobre um MockProducer que serializa o valor como o produtor real.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PaymentPublishBenchmark {
+
+    @Param({"true", "false"})
+    public boolean binaryCodec;
+
+    private PaymentService paymentService;
+    private PaymentApprovedProducer producer;
+
+    private final Money amount = Money.parse("14957.49", "BRL");
+
+    // aprovar duas vezes o mesmo paymentId é recusado: um id novo por chamada
+    private long sequence;
+
+    private final PaymentApprovedEvent event = new PaymentApprovedEvent(
+            "f04cc487-723d-4718-9082-d62273868fd2", "pgto-100", "user-20",
+            Money.parse("14957.49", "BRL"), "APPROVED", 1764908587316L);
+
+    @Setup
+    public void setup() {
+        VersionedEventSerializer serializer = new VersionedEventSerializer();
+        serializer.configure(Map.of(VersionedEventSerializer.BINARY_ENABLED, binaryCodec), false);
+
+        SerializingMockProducer mockProducer = new SerializingMockProducer(serializer);
+        KafkaTemplate<String, Object> template = new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer));
+
+        // tracing ligado e sample-rate 0: o custo medido é o do caminho não amostrado
+        PaymentTracer tracer = new PaymentTracer(true, 0, 2, Duration.ofMinutes(2));
+        this.producer = new PaymentApprovedProducer(template, tracer);
+        PaymentRepository repository = new PaymentRepository(64, 100_000, false, Path.of("."), Duration.ofMinutes(1));
+        this.paymentService = new PaymentService(repository, producer, tracer, null);
+    }
+
+    @Benchmark
+    public PaymentPublication approvePayment() {
+        return paymentService.approvePayment("pgto-" + sequence++, "user-20", amount);
+    }
+
+    @Benchmark
+    public CompletableFuture<SendResult<String, Object>> producePaymentApproved() {
+        return producer.producePaymentApproved(event);
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.mvbr.store.benchmark;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.time.Duration;
+import java.util.concurrent.Future;
+
+/**
+ * MockProducer que também serializa o valor (com headers), como o KafkaProducer real faz.
+ * O MockProducer padrão só serializa a chave, o que esconderia o custo do serializer.
+ * O histórico de envios é limpo periodicamente para não crescer durante a iteração, e o
+ * {@code close()} do KafkaTemplate após cada envio é ignorado (o MockProducerFactory
+ * entrega sempre a mesma instância).
+ */
+class SerializingMockProducer extends MockProducer<String, Object> {
+
+    private final Serializer<Object> valueSerializer;
+
+    private int sentSinceClear;
+
+    SerializingMockProducer(Serializer<Object> valueSerializer) {
+        super(true, null, new StringSerializer(), (topic, data) -> null);
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    public synchronized Future<RecordMetadata> send(ProducerRecord<String, Object> record, Callback callback) {
+        valueSerializer.serialize(record.topic(), record.headers(), record.value());
+
+        if (++sentSinceClear == 10_000) {
+            clear();
+            sentSinceClear = 0;
+        }
+
+        return super.send(record, callback);
+    }
+
+    @Override
+    public void close(Duration timeout) {
+    }
+}
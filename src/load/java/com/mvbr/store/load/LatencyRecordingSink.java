@@ -0,0 +1,77 @@
+package com.mvbr.store.load;
+
+import com.mvbr.store.consumer.sink.ProcessedEventSink;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ProcessedEventSink} do harness de carga: no lugar de escrever o evento, registra
+ * a latência produção → consumo ({@code agora - timestamp do evento}, em ms) da lane.
+ *
+ * <p>O critical recebe {@link PaymentApprovedEvent} e o default {@link PaymentNotificationEvent}
+ * pelos listeners reais; o faster é registrado direto pelo listener do harness.
+ */
+class LatencyRecordingSink implements ProcessedEventSink {
+
+    static final String CRITICAL = "critical";
+    static final String DEFAULT = "default";
+    static final String FASTER = "faster";
+
+    private final ConcurrentHashMap<String, LaneStats> lanes = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    @Override
+    public void processed(Object event) {
+        switch (event) {
+            case PaymentApprovedEvent approved -> lane(CRITICAL).record(approved.timestamp());
+            case PaymentNotificationEvent notification -> lane(DEFAULT).record(notification.timestamp());
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void rejected(String topic, int partition, long offset) {
+        rejected.increment();
+    }
+
+    LaneStats lane(String name) {
+        return lanes.computeIfAbsent(name, ignored -> new LaneStats());
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    /** Contagem e histograma de latência de uma lane; lidos e zerados a cada degrau. */
+    static final class LaneStats {
+
+        private final Recorder latency = new Recorder(3);
+        private final LongAdder consumed = new LongAdder();
+        private volatile long lastConsumedNanos;
+
+        void record(long eventTimestamp) {
+            latency.recordValue(Math.max(0, System.currentTimeMillis() - eventTimestamp));
+            consumed.increment();
+            lastConsumedNanos = System.nanoTime();
+        }
+
+        long consumed() {
+            return consumed.sum();
+        }
+
+        long lastConsumedNanos() {
+            return lastConsumedNanos;
+        }
+
+        /** Latências registradas desde a chamada anterior. */
+        Histogram takeLatency() {
+            return latency.getIntervalHistogram();
+        }
+    }
+}
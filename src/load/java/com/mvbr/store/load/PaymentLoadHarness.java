@@ -0,0 +1,443 @@
+package com.mvbr.store.load;
+
+import com.mvbr.store.consumer.retry.ApprovedRetryTopics;
+import com.mvbr.store.event.EventIds;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.load.LatencyRecordingSink.LaneStats;
+import com.mvbr.store.model.Money;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Harness de carga/saturação por lane, contra um Kafka embedded com os tópicos reais.
+ *
+ * <p>Cada lane é exercitada isoladamente, em degraus de taxa ({@code load.rates} eventos/s,
+ * {@code load.step} cada), em malha aberta: o envio segue o relógio e não espera a resposta,
+ * então um consumer lento aparece como latência e lag, e não como menos carga oferecida.
+ * <ul>
+ *   <li>critical: {@code POST /api/payments/approved} → outbox → {@code payment.approved.v1}
+ *       → listener batch do {@code criticalKafkaListenerContainerFactory}</li>
+ *   <li>default: {@code defaultKafkaTemplate} → {@code payment.notification.v1}
+ *       → listener do {@code defaultKafkaListenerContainerFactory}</li>
+ *   <li>faster: producer fire-and-forget → {@link #FASTER_TOPIC} → container criado aqui pelo
+ *       {@code fasterKafkaListenerContainerFactory} (nenhum listener da aplicação usa essa lane)</li>
+ * </ul>
+ *
+ * <p>Latência = consumo − {@code timestamp} do evento (HdrHistogram, ms). Por degrau: throughput
+ * consumido, p50/p99/p999, lag máximo do group (amostrado a cada 500ms) e o maior atraso do
+ * gerador em relação ao agendamento. A lane para no primeiro degrau saturado (não drenou, ou
+ * consumiu menos de 95% da taxa oferecida). Relatório e distribuições .hgrm em {@code load.report-dir}.
+ *
+ * <p>Roda só no profile {@code load-test}: {@code ./mvnw -Pload-test test}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "logging.level.org.apache.kafka=WARN",
+        "logging.level.kafka=WARN",
+        "logging.level.org.apache.zookeeper=WARN",
+        "logging.level.state.change.logger=WARN"
+})
+@EmbeddedKafka(kraft = true, partitions = 3,
+        topics = {ApprovedRetryTopics.MAIN, "payment.notification.v1", PaymentLoadHarness.FASTER_TOPIC},
+        bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+class PaymentLoadHarness {
+
+    static final String FASTER_TOPIC = "payment.load.faster.v1";
+    private static final String FASTER_GROUP = "payment-load-faster-group";
+
+    private static final Money AMOUNT = Money.parse("10.00", "BRL");
+    private static final Duration LAG_SAMPLE_INTERVAL = Duration.ofMillis(500);
+
+    private static final AtomicReference<Throwable> FIRST_SEND_ERROR = new AtomicReference<>();
+
+    @DynamicPropertySource
+    static void dataDirectories(DynamicPropertyRegistry registry) throws IOException {
+        // outbox e snapshots de uma execução não podem vazar para a próxima
+        Path data = Files.createTempDirectory("store-load");
+        registry.add("store.outbox.directory", () -> data.resolve("outbox").toString());
+        registry.add("store.aggregates.directory", () -> data.resolve("aggregates").toString());
+        registry.add("store.archive.directory", () -> data.resolve("archive").toString());
+    }
+
+    @TestConfiguration
+    static class LoadConfig {
+
+        @Bean
+        @Primary
+        LatencyRecordingSink latencyRecordingSink() {
+            return new LatencyRecordingSink();
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LatencyRecordingSink sink;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    @Qualifier("defaultKafkaTemplate")
+    private KafkaTemplate<String, Object> defaultTemplate;
+
+    @Autowired
+    @Qualifier("fastProducerFactory")
+    private ProducerFactory<String, Object> fastProducerFactory;
+
+    @Autowired
+    @Qualifier("fasterKafkaListenerContainerFactory")
+    private ConcurrentKafkaListenerContainerFactory<String, Object> fasterFactory;
+
+    @Test
+    void findsTheSaturationPointOfEachLane() throws Exception {
+
+        Settings settings = Settings.fromSystemProperties();
+        Files.createDirectories(settings.reportDir());
+
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 3);
+        }
+        ConcurrentMessageListenerContainer<String, Object> fasterContainer = startFasterContainer();
+
+        HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        KafkaTemplate<String, Object> fastTemplate = new KafkaTemplate<>(fastProducerFactory);
+        LongAdder sendErrors = new LongAdder();
+
+        Map<String, Lane> lanes = Map.of(
+                LatencyRecordingSink.CRITICAL, new Lane("payment-service-approved-group", ApprovedRetryTopics.MAIN,
+                        seq -> approvedRequest(http, seq, settings)),
+                LatencyRecordingSink.DEFAULT, new Lane("payment-service-notification-group", "payment.notification.v1",
+                        seq -> defaultTemplate.send("payment.notification.v1", userId(seq, settings),
+                                notification(LatencyRecordingSink.DEFAULT, seq, settings))),
+                LatencyRecordingSink.FASTER, new Lane(FASTER_GROUP, FASTER_TOPIC,
+                        seq -> fastTemplate.send(FASTER_TOPIC, userId(seq, settings),
+                                notification(LatencyRecordingSink.FASTER, seq, settings))));
+
+        List<StepResult> results = new ArrayList<>();
+        try (Admin admin = Admin.create(kafkaAdmin.getConfigurationProperties())) {
+            for (String name : settings.lanes()) {
+                Lane lane = lanes.get(name);
+                if (lane == null) {
+                    throw new IllegalArgumentException("Unknown lane " + name + " (critical, default, faster)");
+                }
+                runLane(name, lane, settings, admin, sendErrors, results);
+            }
+        } finally {
+            fasterContainer.stop();
+        }
+
+        report(settings, results);
+    }
+
+    // =============================
+    // LANES
+    // =============================
+
+    /** Como gerar o evento {@code seq} de uma lane e onde medir o lag dela. */
+    private record Lane(String group, String topic, LongFunction<CompletableFuture<?>> send) {
+    }
+
+    private CompletableFuture<?> approvedRequest(HttpClient http, long seq, Settings settings) {
+        String body = "{\"paymentId\":\"load-" + seq + "\",\"userId\":\"" + userId(seq, settings)
+                + "\",\"amount\":" + AMOUNT.amountText() + ",\"currency\":\"" + AMOUNT.currencyCode() + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payments/approved"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("HTTP " + response.statusCode());
+                    }
+                    return response;
+                });
+    }
+
+    private static PaymentNotificationEvent notification(String lane, long seq, Settings settings) {
+        return new PaymentNotificationEvent(EventIds.next(), "load-" + lane + "-" + seq, userId(seq, settings),
+                AMOUNT, "load", System.currentTimeMillis());
+    }
+
+    private static String userId(long seq, Settings settings) {
+        return "load-user-" + (seq % settings.users());
+    }
+
+    private ConcurrentMessageListenerContainer<String, Object> startFasterContainer() {
+        ConcurrentMessageListenerContainer<String, Object> container = fasterFactory.createContainer(FASTER_TOPIC);
+        container.getContainerProperties().setGroupId(FASTER_GROUP);
+        LaneStats stats = sink.lane(LatencyRecordingSink.FASTER);
+        container.getContainerProperties().setMessageListener((MessageListener<String, Object>) record -> {
+            if (record.value() instanceof PaymentNotificationEvent event) {
+                stats.record(event.timestamp());
+            }
+        });
+        container.start();
+        ContainerTestUtils.waitForAssignment(container, 3);
+        return container;
+    }
+
+    // =============================
+    // DEGRAUS
+    // =============================
+
+    private void runLane(String name, Lane lane, Settings settings, Admin admin,
+                         LongAdder sendErrors, List<StepResult> results) throws InterruptedException {
+
+        LaneStats stats = sink.lane(name);
+        AtomicLong sequence = new AtomicLong();
+
+        // aquecimento (JIT, conexões, metadata) fora do relatório
+        long warmupBefore = stats.consumed();
+        long warmupSent = drive(lane, settings.rates()[0], settings.warmup(), sequence, sendErrors).sent();
+        awaitDrain(stats, warmupBefore, warmupSent, settings.drainTimeout());
+        stats.takeLatency();
+
+        for (int rate : settings.rates()) {
+            long errorsBefore = sendErrors.sum();
+            long consumedBefore = stats.consumed();
+            AtomicLong maxLag = new AtomicLong();
+
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("load-lag-sampler").daemon().factory());
+            sampler.scheduleWithFixedDelay(() -> maxLag.accumulateAndGet(lag(admin, lane), Math::max),
+                    0, LAG_SAMPLE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            Drive drive = drive(lane, rate, settings.step(), sequence, sendErrors);
+            boolean drained = awaitDrain(stats, consumedBefore, drive.sent(), settings.drainTimeout());
+
+            sampler.shutdownNow();
+            long consumed = stats.consumed() - consumedBefore;
+            long until = drained ? stats.lastConsumedNanos() : System.nanoTime();
+            double seconds = Math.max(until - start, 1) / 1e9;
+
+            StepResult result = new StepResult(name, rate, drive.sent(), consumed, consumed / seconds,
+                    stats.takeLatency(), maxLag.get(), sendErrors.sum() - errorsBefore,
+                    TimeUnit.NANOSECONDS.toMillis(drive.maxBehindNanos()), drained);
+            results.add(result);
+            System.out.println(result.line());
+
+            if (result.saturated()) {
+                // sobra do degrau saturado não pode contaminar a próxima lane
+                awaitDrain(stats, consumedBefore, drive.sent(), settings.drainTimeout());
+                break;
+            }
+        }
+    }
+
+    private record Drive(long sent, long maxBehindNanos) {
+    }
+
+    /**
+     * Envia {@code rate} eventos/s durante {@code duration} seguindo o relógio: se o envio
+     * atrasar, os próximos saem em rajada até alcançar o agendamento (malha aberta).
+     */
+    private static Drive drive(Lane lane, int rate, Duration duration, AtomicLong sequence, LongAdder errors) {
+        long period = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long sent = 0;
+        long maxBehind = 0;
+
+        for (long due = start; due < end; due += period) {
+            long now = System.nanoTime();
+            if (due > now) {
+                LockSupport.parkNanos(due - now);
+            } else {
+                maxBehind = Math.max(maxBehind, now - due);
+            }
+            try {
+                lane.send().apply(sequence.getAndIncrement()).whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                                errors.increment();
+                    }
+                });
+            } catch (RuntimeException ex) {
+                sendFailed(errors, ex);
+            }
+            sent++;
+        }
+        return new Drive(sent, maxBehind);
+    }
+
+    /** Conta a falha; a primeira vai para o log (o relatório só mostra a contagem). */
+    private static void sendFailed(LongAdder errors, Throwable ex) {
+        if (FIRST_SEND_ERROR.compareAndSet(null, ex)) {
+            System.err.println("first send error: " + ex);
+        }
+        errors.increment();
+    }
+
+    private static boolean awaitDrain(LaneStats stats, long consumedBefore, long expected, Duration timeout)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (stats.consumed() - consumedBefore < expected) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    /**
+     * Soma de (fim da partição − offset commitado) do group no tópico da lane. Lanes com
+     * commit periódico mostram lag mesmo com latência baixa: ele inclui o intervalo de commit.
+     */
+    private static long lag(Admin admin, Lane lane) {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(lane.group())
+                    .partitionsToOffsetAndMetadata().get(5, TimeUnit.SECONDS);
+            Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+            committed.keySet().stream().filter(tp -> tp.topic().equals(lane.topic()))
+                    .forEach(tp -> request.put(tp, OffsetSpec.latest()));
+            if (request.isEmpty()) {
+                return 0;
+            }
+            long lag = 0;
+            for (var end : admin.listOffsets(request).all().get(5, TimeUnit.SECONDS).entrySet()) {
+                OffsetAndMetadata offset = committed.get(end.getKey());
+                lag += Math.max(0, end.getValue().offset() - (offset == null ? 0 : offset.offset()));
+            }
+            return lag;
+        } catch (Exception ex) {
+            return 0;
+        }
+    }
+
+    // =============================
+    // RELATÓRIO
+    // =============================
+
+    private record StepResult(String lane, int offeredRate, long sent, long consumed, double achievedRate,
+                              Histogram latency, long maxLag, long sendErrors, long maxBehindMillis,
+                              boolean drained) {
+
+        boolean saturated() {
+            return !drained || achievedRate < offeredRate * 0.95;
+        }
+
+        String line() {
+            return String.format("%-9s %9d %9d %9d %10.0f %8d %8d %8d %8d %9d %7d %9d %s",
+                    lane, offeredRate, sent, consumed, achievedRate,
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMaxValue(),
+                    maxLag, sendErrors, maxBehindMillis, saturated() ? "SATURATED" : "ok");
+        }
+    }
+
+    private static final String HEADER = String.format("%-9s %9s %9s %9s %10s %8s %8s %8s %8s %9s %7s %9s %s",
+            "lane", "offered/s", "sent", "consumed", "achieved/s", "p50 ms", "p99 ms", "p999 ms", "max ms",
+            "max lag", "errors", "behind ms", "status");
+
+    private void report(Settings settings, List<StepResult> results) throws IOException {
+        Path file = settings.reportDir().resolve("report.txt");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            for (PrintStream target : List.of(System.out, out)) {
+                target.println();
+                target.println(HEADER);
+                results.forEach(result -> target.println(result.line()));
+                target.println();
+                for (String lane : settings.lanes()) {
+                    target.println(lane + ": " + saturationSummary(lane, results));
+                }
+                target.println("rejected records: " + sink.rejected());
+            }
+        }
+
+        for (StepResult result : results) {
+            Path hgrm = settings.reportDir().resolve(result.lane() + "-" + result.offeredRate() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(hgrm))) {
+                result.latency().outputPercentileDistribution(out, 1.0);
+            }
+        }
+    }
+
+    private static String saturationSummary(String lane, List<StepResult> results) {
+        StepResult lastOk = null;
+        for (StepResult result : results) {
+            if (!result.lane().equals(lane)) {
+                continue;
+            }
+            if (result.saturated()) {
+                return "saturates between " + (lastOk == null ? 0 : lastOk.offeredRate()) + " and "
+                        + result.offeredRate() + " events/s";
+            }
+            lastOk = result;
+        }
+        return lastOk == null ? "no steps run" : "not saturated up to " + lastOk.offeredRate() + " events/s";
+    }
+
+    // =============================
+    // CONFIG (system properties, ver o profile load-test no pom)
+    // =============================
+
+    private record Settings(List<String> lanes, int[] rates, Duration step, Duration warmup,
+                            Duration drainTimeout, int users, Path reportDir) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Arrays.stream(System.getProperty("load.lanes", "critical,default,faster").split(","))
+                            .map(String::trim).filter(s -> !s.isEmpty()).toList(),
+                    Arrays.stream(System.getProperty("load.rates", "500,1000,2000,4000").split(","))
+                            .map(String::trim).mapToInt(Integer::parseInt).toArray(),
+                    DurationStyle.detectAndParse(System.getProperty("load.step", "10s")),
+                    DurationStyle.detectAndParse(System.getProperty("load.warmup", "5s")),
+                    DurationStyle.detectAndParse(System.getProperty("load.drain-timeout", "30s")),
+                    Integer.parseInt(System.getProperty("load.users", "1000")),
+                    Path.of(System.getProperty("load.report-dir", "target/load-test")));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.mvbr.store.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila limitada pré-alocada para vários produtores e um único consumidor, sem lock.
+ *
+ * <p>{@link #offer} pode ser chamado de qualquer thread e nunca bloqueia: com a fila cheia
+ * devolve false. {@link #poll} só pode ser chamado pela thread consumidora.
+ */
+public class MpscRingBuffer<T> {
+
+    // Slot i guarda o item da posição p quando sequences[i] == p + 1 (publicado)
+    // e está livre para a posição p quando sequences[i] == p.
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;                                  // só o consumidor
+
+    /** A capacidade é arredondada para a próxima potência de 2. */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /** false se a fila está cheia (o consumidor ainda não liberou o slot). */
+    public boolean offer(T item) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = item;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();                  // outro produtor pegou a posição
+            }
+        }
+    }
+
+    /** Próximo item publicado, ou null se não há nenhum. Só na thread consumidora. */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T item = (T) slots[index];
+        slots[index] = null;
+        sequences.set(index, head + slots.length);
+        head++;
+        return item;
+    }
+
+    /** Itens aceitos desde a criação. */
+    public long published() {
+        return tail.get();
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,150 @@
+package com.mvbr.store.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diagnóstico de pinning no modo virtual threads ({@code spring.threads.virtual.enabled=true}).
+ *
+ * <p>Uma virtual thread que bloqueia dentro de um {@code synchronized} (ex.: {@code System.out},
+ * que sincroniza no {@link java.io.PrintStream}) ou de código nativo fica presa à carrier thread
+ * e, com poucas carriers, segura todas as outras. Aqui um {@link RecordingStream} do JFR escuta
+ * o evento {@code jdk.VirtualThreadPinned} desde a criação do contexto: cada local de pinning
+ * (primeiro frame da aplicação, ou o topo da pilha) é logado uma vez com a pilha e contado em
+ * {@code store.threads.virtual.pinned{site}}. Quando a aplicação sobe, sai um resumo do que
+ * apareceu durante a inicialização.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadDiagnostics {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadDiagnostics.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.mvbr.store.";
+    private static final int MAX_LOGGED_FRAMES = 12;
+    private static final int MAX_SITES = 256;
+
+    private final MeterRegistry meterRegistry;
+    private final RecordingStream stream;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    public VirtualThreadDiagnostics(MeterRegistry meterRegistry,
+                                    @Value("${store.threads.pinned-threshold:20ms}") Duration threshold) {
+        this.meterRegistry = meterRegistry;
+
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportStartup() {
+        log.info("Virtual threads enabled: Tomcat request executor and Kafka listener consumers run on virtual threads");
+
+        if (sites.isEmpty()) {
+            log.info("No virtual thread pinning observed during startup");
+            return;
+        }
+        List<Site> observed = sites.values().stream()
+                .sorted((a, b) -> Long.compare(b.count.sum(), a.count.sum()))
+                .toList();
+        log.warn("Virtual thread pinning observed during startup at {} site(s):", observed.size());
+        for (Site site : observed) {
+            log.warn("  {} pinned {} time(s), longest {} ms", site.name, site.count.sum(), site.longestMillis);
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String name = siteOf(event.getStackTrace());
+        if (sites.size() >= MAX_SITES && !sites.containsKey(name)) {
+            name = "other";
+        }
+
+        Site site = sites.computeIfAbsent(name, key -> {
+            log.warn("Virtual thread pinned for {} ms at {}:{}", event.getDuration().toMillis(), key,
+                    format(event.getStackTrace()));
+            return new Site(key, Counter.builder("store.threads.virtual.pinned")
+                    .tag("site", key)
+                    .description("Virtual threads that blocked while pinned to their carrier")
+                    .register(meterRegistry));
+        });
+        site.record(event.getDuration());
+    }
+
+    /** Primeiro frame do código da aplicação; sem ele, o topo da pilha. */
+    private static String siteOf(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+                return frameName(frame);
+            }
+        }
+        return frameName(stackTrace.getFrames().get(0));
+    }
+
+    private static String frameName(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(frames.size(), MAX_LOGGED_FRAMES); i++) {
+            text.append("\n\tat ").append(frameName(frames.get(i)));
+        }
+        if (frames.size() > MAX_LOGGED_FRAMES) {
+            text.append("\n\t...");
+        }
+        return text.toString();
+    }
+
+    @PreDestroy
+    public void close() {
+        stream.close();
+    }
+
+    private static final class Site {
+
+        final String name;
+        final Counter counter;
+        final LongAdder count = new LongAdder();
+        volatile long longestMillis;
+
+        Site(String name, Counter counter) {
+            this.name = name;
+            this.counter = counter;
+        }
+
+        void record(Duration duration) {
+            counter.increment();
+            count.increment();
+            longestMillis = Math.max(longestMillis, duration.toMillis());
+        }
+    }
+}
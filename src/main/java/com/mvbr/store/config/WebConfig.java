@@ -0,0 +1,24 @@
+package com.mvbr.store.config;
+
+import com.mvbr.store.tracing.PaymentTracer;
+import com.mvbr.store.tracing.PaymentTracingInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final PaymentTracer paymentTracer;
+
+    public WebConfig(PaymentTracer paymentTracer) {
+        this.paymentTracer = paymentTracer;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // POST /approved, /approved/async, /approved/accepted e /approved/bulk
+        registry.addInterceptor(new PaymentTracingInterceptor(paymentTracer))
+                .addPathPatterns("/api/payments/approved", "/api/payments/approved/**");
+    }
+}
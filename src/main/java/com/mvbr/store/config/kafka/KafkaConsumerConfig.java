@@ -1,33 +1,127 @@
 package com.mvbr.store.config.kafka;
 
+import com.mvbr.store.consumer.coalesce.FlushOnRevokeRebalanceListener;
+import com.mvbr.store.consumer.coalesce.NotificationCoalescer;
+import com.mvbr.store.consumer.coalesce.NotificationDeliverySink;
+import com.mvbr.store.consumer.dedup.DeduplicationSeeder;
+import com.mvbr.store.consumer.dedup.EventIdDeduplicator;
+import com.mvbr.store.consumer.parallel.KeyOrderedBatchProcessor;
+import com.mvbr.store.consumer.retry.ApprovedRetryTopics;
+import com.mvbr.store.consumer.sink.ProcessedEventSink;
+import com.mvbr.store.consumer.sink.RingBufferEventSink;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.event.codec.VersionedEventDeserializer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
 import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerPartitionPausingBackOffManager;
+import org.springframework.kafka.listener.ContainerPausingBackOffHandler;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.kafka.support.serializer.DeserializationException;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 @EnableKafka
 public class KafkaConsumerConfig {
 
+    /** Registros por poll nos listeners em lote; teto do limite de registros em voo do autoscaler. */
+    public static final int MAX_POLL_RECORDS = 500;
+
+    private static final int DEDUP_ENTRIES_PER_GENERATION = 250_000;        // ~8MB por geração
+    private static final Duration DEDUP_WINDOW = Duration.ofMinutes(10);
+    private static final int DEDUP_SEED_RECORDS_PER_PARTITION = 1_000;
+    private static final Duration DEDUP_SEED_TIMEOUT = Duration.ofSeconds(5);
+
+    // mesmo broker do KafkaAdmin do Spring Boot (o harness de carga aponta para um embedded)
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // true = containers não sobem no refresh do contexto; o ParallelListenerStarter
+    // sobe todos em paralelo quando a aplicação fica pronta
+    @Value("${store.kafka.listeners.lazy-startup:false}")
+    private boolean lazyStartup;
+
+    private final MeterRegistry meterRegistry;
+
+    public KafkaConsumerConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Métricas do client Kafka (kafka.consumer.*: records-per-request, fetch-latency,
+    // records-lag por partição...) e timers do container (spring.kafka.listener), com a tag lane
+    private <K, V> DefaultKafkaConsumerFactory<K, V> withMetrics(DefaultKafkaConsumerFactory<K, V> factory, String lane) {
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry, List.of(Tag.of("lane", lane))));
+        return factory;
+    }
+
+    private <K, V> ConcurrentKafkaListenerContainerFactory<K, V> withMetrics(
+            ConcurrentKafkaListenerContainerFactory<K, V> factory, String lane) {
+        factory.getContainerProperties().setMicrometerTags(Map.of("lane", lane));
+        if (virtualThreads) {
+            factory.getContainerProperties().setListenerTaskExecutor(virtualThreadExecutor(lane));
+        }
+        if (lazyStartup) {
+            factory.setAutoStartup(false);
+        }
+        return factory;
+    }
+
+    // spring.threads.virtual.enabled=true → o Spring Boot põe o Tomcat em virtual threads e aqui
+    // as threads de consumer de cada container também viram virtual threads (uma por consumer)
+    private static AsyncTaskExecutor virtualThreadExecutor(String lane) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(lane + "-consumer-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
     // =============================
     // COMMON CONFIG FOR ALL
     // =============================
     private Map<String, Object> baseConfig() {
         Map<String, Object> props = new HashMap<>();
 
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
 
         // === OFFSET RESET STRATEGY ===
         // "latest" = lê apenas mensagens NOVAS (após o consumer conectar)
@@ -39,10 +133,11 @@ public class KafkaConsumerConfig {
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
 
         // Specify the actual deserializers to use
+        // schema-version v2 → codec binário; v1 / sem header → JsonDeserializer
         props.put(ErrorHandlingDeserializer.KEY_DESERIALIZER_CLASS, StringDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, VersionedEventDeserializer.class);
 
-        // JsonDeserializer specific configuration
+        // JsonDeserializer specific configuration (fallback JSON)
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, true);
 
@@ -50,56 +145,161 @@ public class KafkaConsumerConfig {
     }
 
     // =============================
-    // 1 - CRITICAL (Manual Commit)
+    // 1 - CRITICAL (Manual Commit, Batch)
     // =============================
     @Bean
     public ConsumerFactory<String, Object> criticalConsumerFactory() {
         Map<String, Object> props = baseConfig();
 
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
 
-        return new DefaultKafkaConsumerFactory<>(props);
+        // Batch listener: um poll entrega até 500 registros e o commit é feito
+        // uma vez por lote (ou até o último registro processado com sucesso,
+        // via BatchListenerFailedException) → at-least-once sem round-trip por evento
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, MAX_POLL_RECORDS);
+
+        return withMetrics(new DefaultKafkaConsumerFactory<>(props), "critical");
     }
 
     @Bean(name = "criticalKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, Object> criticalKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, Object> criticalKafkaListenerContainerFactory(
+            @Qualifier("approvedRetryRecoverer") DeadLetterPublishingRecoverer retryRecoverer) {
 
         ConcurrentKafkaListenerContainerFactory<String, Object> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
 
         factory.setConsumerFactory(criticalConsumerFactory());
         factory.setConcurrency(1);
+        factory.setBatchListener(true);
 
         // === CONFIG CORRETA PARA SPRING 3.x ===
         factory.getContainerProperties().setAckMode(
                 org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL
         );
 
-        // Retry + Backoff
-        ExponentialBackOffWithMaxRetries backoff = new ExponentialBackOffWithMaxRetries(5);
-        backoff.setInitialInterval(1000);
-        backoff.setMultiplier(2);
-        backoff.setMaxInterval(10000);
-
-        CommonErrorHandler errorHandler = new DefaultErrorHandler(backoff);
+        // Retry NÃO bloqueante
+        // Em modo batch o DefaultErrorHandler trata BatchListenerFailedException: commita os
+        // offsets antes do registro que falhou, publica esse registro no retry-1s (sem tentar
+        // de novo aqui) e re-entrega o resto do lote → a partição continua andando
+        CommonErrorHandler errorHandler = new DefaultErrorHandler(retryRecoverer, new FixedBackOff(0L, 0L));
         factory.setCommonErrorHandler(errorHandler);
 
-        return factory;
+        // Rebalance → pré-carrega o cache de eventIds com o histórico recente da partição
+        factory.getContainerProperties().setConsumerRebalanceListener(new DeduplicationSeeder(
+                criticalConsumerFactory(),
+                approvedEventDeduplicator(),
+                value -> value instanceof PaymentApprovedEvent event ? event.eventId() : null,
+                DEDUP_SEED_RECORDS_PER_PARTITION,
+                DEDUP_SEED_TIMEOUT));
+
+        return withMetrics(factory, "critical");
+    }
+
+    // =============================
+    // 1.1 - CRITICAL RETRY (retry-1s → retry-10s → retry-60s → DLT)
+    // =============================
+    // Um registro por vez, commit manual. Se o registro ainda não venceu, o listener lança
+    // KafkaBackoffException: só a partição dele fica pausada até o vencimento, o error handler
+    // re-posiciona nela e o container segue fazendo poll das outras.
+    // Cada tier tem seu próprio container (e group), então um retry de 60s não segura o de 1s.
+    @Bean(name = "criticalRetryKafkaListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, Object> criticalRetryKafkaListenerContainerFactory(
+            @Qualifier("approvedRetryRecoverer") DeadLetterPublishingRecoverer retryRecoverer) {
+
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(criticalConsumerFactory());
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setAckMode(
+                org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL
+        );
+        factory.setCommonErrorHandler(new DefaultErrorHandler((record, ex) -> {
+            if (SeekUtils.isBackoffException(ex)) {
+                // ainda não venceu: não recupera, o handler faz seek e o registro volta no resume
+                throw (RuntimeException) ex;
+            }
+            retryRecoverer.accept(record, ex);
+        }, new FixedBackOff(0L, 0L)));
+
+        return withMetrics(factory, "critical-retry");
+    }
+
+    /** Agenda o resume das partições de retry pausadas até o vencimento do primeiro registro. */
+    @Bean
+    public ThreadPoolTaskScheduler approvedRetryResumeScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("approved-retry-resume-");
+        return scheduler;
+    }
+
+    /**
+     * Pausa só a partição do registro que ainda não venceu (não o container inteiro, como o
+     * nack) e lança {@link org.springframework.kafka.listener.KafkaBackoffException}.
+     */
+    @Bean
+    public KafkaConsumerBackoffManager approvedRetryBackoffManager(
+            KafkaListenerEndpointRegistry registry,
+            @Qualifier("approvedRetryResumeScheduler") ThreadPoolTaskScheduler scheduler) {
+
+        return new ContainerPartitionPausingBackOffManager(registry,
+                new ContainerPausingBackOffHandler(new ListenerContainerPauseService(registry, scheduler)));
+    }
+
+    /**
+     * Publica o registro que falhou no próximo tier (ou no DLT) com a chave original,
+     * então a ordem por userId se mantém dentro de cada tier. Além dos headers
+     * {@code kafka_dlt-*} (exceção, stacktrace, tópico/partição/offset de origem),
+     * grava {@link ApprovedRetryTopics#NOT_BEFORE_HEADER} com o vencimento do retry.
+     * Falhas de desserialização/conversão vão direto para o DLT.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer approvedRetryRecoverer(
+            @Qualifier("criticalKafkaTemplate") KafkaTemplate<String, Object> template) {
+
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(template,
+                (record, ex) -> new TopicPartition(isFatal(ex)
+                        ? ApprovedRetryTopics.DLT
+                        : ApprovedRetryTopics.nextDestination(record.topic()), -1));
+
+        recoverer.setHeadersFunction((record, ex) -> {
+            Duration delay = ApprovedRetryTopics.delayOf(ApprovedRetryTopics.nextDestination(record.topic()));
+            if (isFatal(ex) || delay.isZero()) {
+                return new RecordHeaders();
+            }
+            long notBefore = System.currentTimeMillis() + delay.toMillis();
+            return new RecordHeaders(new RecordHeader[]{new RecordHeader(ApprovedRetryTopics.NOT_BEFORE_HEADER,
+                    Long.toString(notBefore).getBytes(StandardCharsets.US_ASCII))});
+        });
+
+        return recoverer;
+    }
+
+    private static boolean isFatal(Exception ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeserializationException
+                    || cause instanceof ConversionException
+                    || cause instanceof ClassCastException) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // =============================
-    // 2 - DEFAULT (Auto Commit)
+    // 2 - DEFAULT (Manual Commit, Batch)
     // =============================
     @Bean
     public ConsumerFactory<String, Object> defaultConsumerFactory() {
         Map<String, Object> props = baseConfig();
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
-        return new DefaultKafkaConsumerFactory<>(props);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, MAX_POLL_RECORDS);
+        return withMetrics(new DefaultKafkaConsumerFactory<>(props), "default");
     }
 
     @Bean(name = "defaultKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, Object> defaultKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, Object> defaultKafkaListenerContainerFactory(
+            @Nullable NotificationCoalescer notificationCoalescer) {
 
         ConcurrentKafkaListenerContainerFactory<String, Object> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
@@ -107,7 +307,26 @@ public class KafkaConsumerConfig {
         factory.setConsumerFactory(defaultConsumerFactory());
         factory.setConcurrency(3);
 
-        return factory;
+        // Batch com commit manual: sem coalescing o listener dá ack no lote inteiro; com coalescing
+        // commita por partição só até a primeira notificação ainda no buffer (não entregue)
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(
+                org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL
+        );
+
+        ConsumerAwareRebalanceListener seeder = new DeduplicationSeeder(
+                defaultConsumerFactory(),
+                notificationEventDeduplicator(),
+                value -> value instanceof PaymentNotificationEvent event ? event.eventId() : null,
+                DEDUP_SEED_RECORDS_PER_PARTITION,
+                DEDUP_SEED_TIMEOUT);
+
+        // Coalescing por usuário ligado → lotes pendentes das partições revogadas saem antes do rebalance
+        factory.getContainerProperties().setConsumerRebalanceListener(notificationCoalescer == null
+                ? seeder
+                : new FlushOnRevokeRebalanceListener(notificationCoalescer, seeder));
+
+        return withMetrics(factory, "default");
     }
 
     // =============================
@@ -117,8 +336,8 @@ public class KafkaConsumerConfig {
     public ConsumerFactory<String, Object> fasterConsumerFactory() {
         Map<String, Object> props = baseConfig();
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
-        return new DefaultKafkaConsumerFactory<>(props);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, MAX_POLL_RECORDS);
+        return withMetrics(new DefaultKafkaConsumerFactory<>(props), "faster");
     }
 
     @Bean(name = "fasterKafkaListenerContainerFactory")
@@ -130,6 +349,87 @@ public class KafkaConsumerConfig {
         factory.setConsumerFactory(fasterConsumerFactory());
         factory.setConcurrency(8);
 
-        return factory;
+        return withMetrics(factory, "faster");
+    }
+
+    // =============================
+    // PARALLEL PROCESSING (por chave)
+    // =============================
+    // Os registros de um lote são distribuídos em virtual threads;
+    // a ordem é mantida por userId (a chave do registro), não por partição.
+    @Bean(destroyMethod = "close")
+    public KeyOrderedBatchProcessor approvedBatchProcessor() {
+        return new KeyOrderedBatchProcessor("payment-approved", MAX_POLL_RECORDS, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    public KeyOrderedBatchProcessor notificationBatchProcessor() {
+        return new KeyOrderedBatchProcessor("payment-notification", MAX_POLL_RECORDS, meterRegistry);
+    }
+
+    // =============================
+    // DEDUPLICATION (eventId)
+    // =============================
+    // Re-entregas (retry do error handler, auto-commit atrasado, rebalance)
+    // chegam com o mesmo eventId e são descartadas antes do handler.
+    @Bean
+    public EventIdDeduplicator approvedEventDeduplicator() {
+        return withMetrics(new EventIdDeduplicator(DEDUP_ENTRIES_PER_GENERATION, DEDUP_WINDOW), "payment-approved");
+    }
+
+    @Bean
+    public EventIdDeduplicator notificationEventDeduplicator() {
+        return withMetrics(new EventIdDeduplicator(DEDUP_ENTRIES_PER_GENERATION, DEDUP_WINDOW), "payment-notification");
+    }
+
+    private EventIdDeduplicator withMetrics(EventIdDeduplicator deduplicator, String listener) {
+        FunctionCounter.builder("store.consumer.dedup.hits", deduplicator, EventIdDeduplicator::hits)
+                .tag("listener", listener)
+                .description("Re-delivered events skipped by eventId")
+                .register(meterRegistry);
+        FunctionCounter.builder("store.consumer.dedup.misses", deduplicator, EventIdDeduplicator::misses)
+                .tag("listener", listener)
+                .register(meterRegistry);
+        meterRegistry.gauge("store.consumer.dedup.size", List.of(Tag.of("listener", listener)),
+                deduplicator, EventIdDeduplicator::size);
+        return deduplicator;
+    }
+
+    // =============================
+    // NOTIFICATION DELIVERY (coalescing por usuário)
+    // =============================
+    // Destino padrão dos lotes do NotificationCoalescer: cada notificação segue para o
+    // ProcessedEventSink como antes. Um bean NotificationDeliverySink da aplicação substitui este.
+    @Bean
+    @ConditionalOnMissingBean(NotificationDeliverySink.class)
+    public NotificationDeliverySink notificationDeliverySink(ProcessedEventSink processedEventSink) {
+        return (userId, notifications) -> notifications.forEach(processedEventSink::processed);
+    }
+
+    // =============================
+    // PROCESSED EVENT SINK
+    // =============================
+    // Os consumers só entregam a referência do evento; formatação e stdout
+    // ficam numa única thread de escrita, fora das threads do listener.
+    @Bean(destroyMethod = "close")
+    public RingBufferEventSink processedEventSink(
+            @Value("${store.consumer.sink.capacity:65536}") int capacity,
+            @Value("${store.consumer.sink.overflow-policy:DROP}") RingBufferEventSink.OverflowPolicy policy) {
+
+        RingBufferEventSink sink = new RingBufferEventSink(capacity, policy, System.out);
+
+        FunctionCounter.builder("store.consumer.sink.published", sink, RingBufferEventSink::published)
+                .register(meterRegistry);
+        FunctionCounter.builder("store.consumer.sink.written", sink, RingBufferEventSink::written)
+                .register(meterRegistry);
+        FunctionCounter.builder("store.consumer.sink.dropped", sink, RingBufferEventSink::dropped)
+                .description("Processed events not written because the sink buffer was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("store.consumer.sink.blocked", sink, RingBufferEventSink::blocked)
+                .description("Times a listener thread waited for room in the sink buffer")
+                .register(meterRegistry);
+        Gauge.builder("store.consumer.sink.pending", sink, RingBufferEventSink::pending)
+                .register(meterRegistry);
+        return sink;
     }
-}
\ No newline at end of file
+}
@@ -1,20 +1,83 @@
 package com.mvbr.store.config.kafka;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mvbr.store.event.codec.VersionedEventSerializer;
+import com.mvbr.store.producer.hotkey.HotKeyDetector;
+import com.mvbr.store.producer.hotkey.HotKeySalter;
+import com.mvbr.store.telemetry.TelemetryLane;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.CompositeProducerListener;
+import org.springframework.kafka.support.LoggingProducerListener;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 public class KafkaProducerConfig {
 
+    // v2 (binário) x v1 (JSON) — os consumers entendem os dois formatos pelo header schema-version
+    @Value("${store.kafka.codec.binary-enabled:false}")
+    private boolean binaryCodecEnabled;
+
+    // mesmo broker do KafkaAdmin do Spring Boot (o harness de carga aponta para um embedded)
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    // Detector de chaves quentes (top-K por tópico, janela com decaimento)
+    @Value("${store.kafka.hot-keys.top-k:16}")
+    private int hotKeysTopK;
+
+    @Value("${store.kafka.hot-keys.hot-share:0.05}")
+    private double hotKeyShare;
+
+    @Value("${store.kafka.hot-keys.min-records:100}")
+    private long hotKeyMinRecords;
+
+    @Value("${store.kafka.hot-keys.window:60s}")
+    private Duration hotKeyWindow;
+
+    private final MeterRegistry meterRegistry;
+
+    public KafkaProducerConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Métricas do client Kafka (kafka.producer.*: batch-size, record-retry-rate, request-latency...)
+    // e timers do KafkaTemplate (spring.kafka.template), todos com a tag lane
+    private <K, V> DefaultKafkaProducerFactory<K, V> withMetrics(DefaultKafkaProducerFactory<K, V> factory, String lane) {
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry, List.of(Tag.of("lane", lane))));
+        return factory;
+    }
+
+    private <K, V> KafkaTemplate<K, V> withMetrics(KafkaTemplate<K, V> template, String lane) {
+        template.setMicrometerTags(Map.of("lane", lane));
+        return template;
+    }
+
+    // o detector conta os acks do template; o LoggingProducerListener (padrão) continua logando as falhas
+    private KafkaTemplate<String, Object> withHotKeys(KafkaTemplate<String, Object> template, HotKeyDetector detector) {
+        CompositeProducerListener<String, Object> listener = new CompositeProducerListener<>(new LoggingProducerListener<>());
+        listener.addDelegate(detector);
+        template.setProducerListener(listener);
+        return template;
+    }
+
     // =============================
     // 1 - CRITICAL PRODUCER
     // =============================
@@ -22,7 +85,7 @@ public class KafkaProducerConfig {
     public ProducerFactory<String,Object> criticalProducerFactory() {
 
         Map<String,Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
 
         // === DURABILIDADE MÁXIMA ===
         config.put(ProducerConfig.ACKS_CONFIG, "all");                     // líder + réplicas confirmam
@@ -44,15 +107,17 @@ public class KafkaProducerConfig {
 
         // === SERIALIZERS ===
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, VersionedEventSerializer.class);
+        config.put(VersionedEventSerializer.BINARY_ENABLED, binaryCodecEnabled);
 
-        return new DefaultKafkaProducerFactory<>(config);
+        return withMetrics(new DefaultKafkaProducerFactory<>(config), "critical");
 
     }
 
     @Bean(name = "criticalKafkaTemplate")
     public KafkaTemplate<String, Object> criticalKafkaTemplate() {
-        return new KafkaTemplate<>(criticalProducerFactory());
+        return withHotKeys(withMetrics(new KafkaTemplate<>(criticalProducerFactory()), "critical"),
+                approvedHotKeyDetector());
     }
 
     // =============================
@@ -62,18 +127,59 @@ public class KafkaProducerConfig {
     public ProducerFactory<String, Object> defaultProducerFactory() {
 
         Map<String, Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        config.put(ProducerConfig.ACKS_CONFIG, 1);
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.ACKS_CONFIG, "1");
         config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        return new DefaultKafkaProducerFactory<>(config);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, VersionedEventSerializer.class);
+        config.put(VersionedEventSerializer.BINARY_ENABLED, binaryCodecEnabled);
+        return withMetrics(new DefaultKafkaProducerFactory<>(config), "default");
 
     }
 
     @Bean(name = "defaultKafkaTemplate")
     public KafkaTemplate<String, Object> defaultKafkaTemplate() {
-        return new KafkaTemplate<>(defaultProducerFactory());
+        return withHotKeys(withMetrics(new KafkaTemplate<>(defaultProducerFactory()), "default"),
+                notificationHotKeyDetector());
+    }
+
+    // =============================
+    // HOT KEYS (chave = userId)
+    // =============================
+    // Poucos usuários grandes concentram uma partição; o detector mostra quem são
+    // (GET /api/hot-keys) e o skew por partição de cada tópico.
+    @Bean
+    public HotKeyDetector approvedHotKeyDetector() {
+        return withMetrics(newHotKeyDetector("payment.approved.v1"));
+    }
+
+    @Bean
+    public HotKeyDetector notificationHotKeyDetector() {
+        return withMetrics(newHotKeyDetector("payment.notification.v1"));
+    }
+
+    // Só nas notificações: ordem estrita por usuário importa menos que a partição equilibrada
+    @Bean
+    public HotKeySalter notificationKeySalter(
+            @Value("${store.kafka.hot-keys.salting.enabled:false}") boolean enabled,
+            @Value("${store.kafka.hot-keys.salting.buckets:8}") int buckets) {
+        return new HotKeySalter(notificationHotKeyDetector(), enabled, buckets, meterRegistry);
+    }
+
+    private HotKeyDetector newHotKeyDetector(String topic) {
+        return new HotKeyDetector(topic, hotKeysTopK, hotKeyShare, hotKeyMinRecords, hotKeyWindow);
+    }
+
+    private HotKeyDetector withMetrics(HotKeyDetector detector) {
+        Gauge.builder("store.producer.hotkey.skew", detector, HotKeyDetector::skew)
+                .tag("topic", detector.topic())
+                .description("Busiest partition load over the mean partition load (1.0 = balanced)")
+                .register(meterRegistry);
+        Gauge.builder("store.producer.hotkey.top.share", detector, HotKeyDetector::topShare)
+                .tag("topic", detector.topic())
+                .description("Share of recent records that went to the hottest key")
+                .register(meterRegistry);
+        return detector;
     }
 
     // =============================
@@ -83,14 +189,52 @@ public class KafkaProducerConfig {
     public ProducerFactory<String, Object> fastProducerFactory() {
 
         Map<String, Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        config.put(ProducerConfig.ACKS_CONFIG, 0);
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.ACKS_CONFIG, "0");
         config.put(ProducerConfig.LINGER_MS_CONFIG, 50);
         config.put(ProducerConfig.BATCH_SIZE_CONFIG, 32768);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        return new DefaultKafkaProducerFactory<>(config);
+        return withMetrics(new DefaultKafkaProducerFactory<>(config), "fast");
+
+    }
+
+    // max.block.ms=0: buffer cheio (ou sem metadata) → send() falha na hora em vez de
+    // bloquear por 60s; a TelemetryLane manda o evento para o spill em disco
+    @Bean(name = "fastKafkaTemplate")
+    public KafkaTemplate<String, Object> fastKafkaTemplate() {
+        return withMetrics(new KafkaTemplate<>(fastProducerFactory(),
+                Map.of(ProducerConfig.MAX_BLOCK_MS_CONFIG, 0)), "fast");
+    }
 
+    // Telemetria: emit() nunca bloqueia a thread do request; uma thread dedicada
+    // envia pelo fastKafkaTemplate e o que o producer recusar vai para o spill em disco
+    @Bean(destroyMethod = "close")
+    public TelemetryLane telemetryLane(
+            ObjectMapper objectMapper,
+            @Value("${store.telemetry.capacity:65536}") int capacity,
+            @Value("${store.telemetry.spill.directory:./data/telemetry-spill}") Path spillDirectory,
+            @Value("${store.telemetry.spill.segment-bytes:16777216}") int spillSegmentBytes,
+            @Value("${store.telemetry.spill.max-bytes:1073741824}") long maxSpillBytes) {
+
+        TelemetryLane lane = new TelemetryLane(fastKafkaTemplate(), KafkaTopicConfig.TELEMETRY_TOPIC,
+                capacity, spillDirectory, spillSegmentBytes, maxSpillBytes, objectMapper);
+
+        FunctionCounter.builder("store.telemetry.accepted", lane, TelemetryLane::accepted)
+                .register(meterRegistry);
+        FunctionCounter.builder("store.telemetry.dropped", lane, TelemetryLane::dropped)
+                .description("Telemetry events discarded because the queue or the spill was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("store.telemetry.spilled", lane, TelemetryLane::spilled)
+                .description("Telemetry events written to disk because the producer buffer was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("store.telemetry.replayed", lane, TelemetryLane::replayed)
+                .register(meterRegistry);
+        Gauge.builder("store.telemetry.pending", lane, TelemetryLane::pending)
+                .register(meterRegistry);
+        Gauge.builder("store.telemetry.spill.backlog.bytes", lane, TelemetryLane::spillBacklogBytes)
+                .register(meterRegistry);
+        return lane;
     }
 
     /*
@@ -0,0 +1,60 @@
+package com.mvbr.store.config.kafka;
+
+import com.mvbr.store.consumer.retry.ApprovedRetryTopics;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    // =============================
+    // RETRY / DLT do payment.approved.v1
+    // =============================
+    // Criados pelo KafkaAdmin na subida (se não existirem).
+    // O registro vai para o tier com a mesma chave (userId) → mesma partição dentro do tier.
+    private static final int PARTITIONS = 3;
+    private static final int REPLICAS = 1;
+
+    @Bean
+    public KafkaAdmin.NewTopics approvedRetryTopics() {
+        return new KafkaAdmin.NewTopics(
+                retryTopic(ApprovedRetryTopics.RETRY_1S),
+                retryTopic(ApprovedRetryTopics.RETRY_10S),
+                retryTopic(ApprovedRetryTopics.RETRY_60S),
+                // DLT guarda por mais tempo: é onde alguém vai investigar/reprocessar
+                TopicBuilder.name(ApprovedRetryTopics.DLT)
+                        .partitions(PARTITIONS)
+                        .replicas(REPLICAS)
+                        .config(TopicConfig.RETENTION_MS_CONFIG, Long.toString(Duration.ofDays(14).toMillis()))
+                        .build()
+        );
+    }
+
+    // =============================
+    // TELEMETRIA (fire-and-forget)
+    // =============================
+    public static final String TELEMETRY_TOPIC = "telemetry.v1";
+
+    @Bean
+    public NewTopic telemetryTopic() {
+        return TopicBuilder.name(TELEMETRY_TOPIC)
+                .partitions(PARTITIONS)
+                .replicas(REPLICAS)
+                .config(TopicConfig.RETENTION_MS_CONFIG, Long.toString(Duration.ofDays(1).toMillis()))
+                .build();
+    }
+
+    private static NewTopic retryTopic(String name) {
+        return TopicBuilder.name(name)
+                .partitions(PARTITIONS)
+                .replicas(REPLICAS)
+                .config(TopicConfig.RETENTION_MS_CONFIG, Long.toString(Duration.ofDays(1).toMillis()))
+                .build();
+    }
+}
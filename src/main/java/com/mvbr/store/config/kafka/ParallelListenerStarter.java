@@ -0,0 +1,70 @@
+package com.mvbr.store.config.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Subida tardia e em paralelo dos listener containers ({@code store.kafka.listeners.lazy-startup=true}).
+ *
+ * <p>Por padrão o {@link KafkaListenerEndpointRegistry} sobe os containers um a um durante o
+ * refresh do contexto, e cada um cria seus {@code KafkaConsumer} e espera a thread de consumer
+ * começar antes de passar para o próximo. Com lazy-startup as factories deixam os containers
+ * parados e, quando a aplicação fica pronta, cada container sobe na sua virtual thread: o tempo
+ * até o primeiro poll passa a ser o do container mais lento, e não a soma de todos.
+ */
+@Component
+public class ParallelListenerStarter {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelListenerStarter.class);
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final boolean lazyStartup;
+
+    public ParallelListenerStarter(KafkaListenerEndpointRegistry listenerRegistry,
+                                   @Value("${store.kafka.listeners.lazy-startup:false}") boolean lazyStartup) {
+        this.listenerRegistry = listenerRegistry;
+        this.lazyStartup = lazyStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListeners() {
+        if (!lazyStartup) {
+            return;
+        }
+
+        List<MessageListenerContainer> stopped = listenerRegistry.getListenerContainers().stream()
+                .filter(container -> !container.isRunning())
+                .toList();
+        long started = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MessageListenerContainer container : stopped) {
+                executor.execute(() -> start(container));
+            }
+        }   // close() espera todos subirem
+
+        log.info("Started {} listener container(s) in parallel in {} ms",
+                stopped.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void start(MessageListenerContainer container) {
+        long started = System.nanoTime();
+        try {
+            container.start();
+            log.debug("Listener container {} started in {} ms",
+                    container.getListenerId(), (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException ex) {
+            log.error("Could not start listener container {}", container.getListenerId(), ex);
+        }
+    }
+}
@@ -1,39 +1,182 @@
 package com.mvbr.store.consumer;
 
+import com.mvbr.store.consumer.aggregate.PaymentAggregateStore;
+import com.mvbr.store.consumer.archive.EventArchive;
+import com.mvbr.store.consumer.dedup.EventIdDeduplicator;
+import com.mvbr.store.consumer.parallel.KeyOrderedBatchProcessor;
+import com.mvbr.store.consumer.retry.ApprovedRetryTopics;
+import com.mvbr.store.consumer.sink.ProcessedEventSink;
 import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.tracing.PaymentTracer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.KafkaBackoffException;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class PaymentApprovedConsumer {
 
     // =============================
-    // 1 - CRITICAL
+    // 1 - CRITICAL (Batch)
     // =============================
 
+    private final KeyOrderedBatchProcessor batchProcessor;
+    private final EventIdDeduplicator deduplicator;
+    private final ProcessedEventSink sink;
+    private final PaymentAggregateStore aggregates;
+    private final PaymentTracer tracer;
+    private final KafkaConsumerBackoffManager retryBackoff;
+
+    // store.archive.enabled=true → cada evento processado vai para o arquivo local consultável
+    @Nullable
+    private final EventArchive archive;
+
+    public PaymentApprovedConsumer(@Qualifier("approvedBatchProcessor") KeyOrderedBatchProcessor batchProcessor,
+                                   @Qualifier("approvedEventDeduplicator") EventIdDeduplicator deduplicator,
+                                   ProcessedEventSink sink,
+                                   PaymentAggregateStore aggregates,
+                                   PaymentTracer tracer,
+                                   @Qualifier("approvedRetryBackoffManager") KafkaConsumerBackoffManager retryBackoff,
+                                   @Nullable EventArchive archive) {
+        this.batchProcessor = batchProcessor;
+        this.deduplicator = deduplicator;
+        this.sink = sink;
+        this.aggregates = aggregates;
+        this.tracer = tracer;
+        this.retryBackoff = retryBackoff;
+        this.archive = archive;
+    }
+
+    /**
+     * Recebe o lote inteiro do poll, processa em paralelo mantendo a ordem por userId
+     * e só faz o commit ao final.
+     * Se um registro falhar, o processor lança {@link BatchListenerFailedException} apontando para ele:
+     * o error handler commita tudo que veio antes, manda o registro para o retry-1s e re-entrega
+     * o resto do lote (já processados são descartados pelo dedup).
+     */
     @KafkaListener(
+            id = "payment-approved",
             topics = "payment.approved.v1",
             groupId = "payment-service-approved-group",
             containerFactory = "criticalKafkaListenerContainerFactory"
     )
-    public void handlePaymentApproved(PaymentApprovedEvent event) {
+    public void handlePaymentApproved(List<ConsumerRecord<String, PaymentApprovedEvent>> records,
+                                      Acknowledgment acknowledgment) {
+
+        if (tracer.enabled()) {
+            // checkpoint "polled": o lote acabou de sair do poll
+            long polled = PaymentTracer.now();
+            batchProcessor.process(records, record -> {
+                processOnce(record);
+                tracer.handled(record, polled);
+            });
+        } else {
+            batchProcessor.process(records, this::processOnce);
+        }
+
+        acknowledgment.acknowledge();
+
+        // lote inteiro aplicado: os agregados podem avançar o offset (e tirar snapshot)
+        aggregates.markConsumed(records);
+    }
+
+    // =============================
+    // 1.1 - CRITICAL RETRY (um container por tier)
+    // =============================
+
+    @KafkaListener(
+            id = "payment-approved-retry-1s",
+            topics = ApprovedRetryTopics.RETRY_1S,
+            groupId = "payment-service-approved-retry-1s-group",
+            containerFactory = "criticalRetryKafkaListenerContainerFactory"
+    )
+    public void handlePaymentApprovedRetry1s(ConsumerRecord<String, PaymentApprovedEvent> record,
+                                             Acknowledgment acknowledgment,
+                                             Consumer<?, ?> consumer) {
+        retry("payment-approved-retry-1s", record, acknowledgment, consumer);
+    }
+
+    @KafkaListener(
+            id = "payment-approved-retry-10s",
+            topics = ApprovedRetryTopics.RETRY_10S,
+            groupId = "payment-service-approved-retry-10s-group",
+            containerFactory = "criticalRetryKafkaListenerContainerFactory"
+    )
+    public void handlePaymentApprovedRetry10s(ConsumerRecord<String, PaymentApprovedEvent> record,
+                                              Acknowledgment acknowledgment,
+                                              Consumer<?, ?> consumer) {
+        retry("payment-approved-retry-10s", record, acknowledgment, consumer);
+    }
+
+    @KafkaListener(
+            id = "payment-approved-retry-60s",
+            topics = ApprovedRetryTopics.RETRY_60S,
+            groupId = "payment-service-approved-retry-60s-group",
+            containerFactory = "criticalRetryKafkaListenerContainerFactory"
+    )
+    public void handlePaymentApprovedRetry60s(ConsumerRecord<String, PaymentApprovedEvent> record,
+                                              Acknowledgment acknowledgment,
+                                              Consumer<?, ?> consumer) {
+        retry("payment-approved-retry-60s", record, acknowledgment, consumer);
+    }
+
+    /**
+     * Registros de uma partição do tier vencem na ordem em que chegaram, então basta olhar o
+     * primeiro: se ainda não venceu, o backoff manager pausa só essa partição até o vencimento e
+     * lança {@link KafkaBackoffException}; o error handler re-busca o mesmo offset no resume.
+     * Se falhar, o error handler manda para o próximo tier (ou DLT).
+     */
+    private void retry(String listenerId, ConsumerRecord<String, PaymentApprovedEvent> record,
+                       Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+
+        retryBackoff.backOffIfNecessary(retryBackoff.createContext(ApprovedRetryTopics.notBefore(record), listenerId,
+                new TopicPartition(record.topic(), record.partition()), consumer));
+
+        processOnce(record);
+
+        acknowledgment.acknowledge();
+    }
 
-        // Handle deserialization failures gracefully
+    /** Descarta eventIds já processados; só marca depois do processamento terminar sem erro. */
+    private void processOnce(ConsumerRecord<String, PaymentApprovedEvent> record) {
+
+        PaymentApprovedEvent event = record.value();
         if (event == null) {
-            System.err.println("\n===== DESERIALIZATION ERROR =====");
-            System.err.println("Received null event - skipping bad message");
-            System.err.println("=================================\n");
+            // falha de desserialização (ErrorHandlingDeserializer): descarta o registro
+            sink.rejected(record.topic(), record.partition(), record.offset());
             return;
         }
 
-        System.out.println("\n===== PAYMENT APPROVED EVENT RECEIVED =====");
-        System.out.println("eventId:   " + event.eventId());
-        System.out.println("paymentId: " + event.paymentId());
-        System.out.println("userId:    " + event.userId());
-        System.out.println("amount:    " + event.amount());
-        System.out.println("status:    " + event.status());
-        System.out.println("timestamp: " + event.timestamp());
-        System.out.println("===========================================\n");
+        if (deduplicator.isDuplicate(event.eventId())) {
+            return;
+        }
+
+        // só o tópico principal soma nos agregados: é o que o AggregateRebuilder relê, e um
+        // evento que falha aqui e segue para o retry já foi somado (não conta de novo no tier)
+        if (ApprovedRetryTopics.MAIN.equals(record.topic())) {
+            aggregates.record(event);
+        }
+        process(event);
+        if (archive != null) {
+            archive.archive(record, event);
+        }
+
+        deduplicator.markProcessed(event.eventId());
+    }
+
+    private void process(PaymentApprovedEvent event) {
+
+        // formatação e escrita ficam com a thread do sink, fora do caminho do consumo
+        sink.processed(event);
     }
 
 }
@@ -1,26 +1,108 @@
 package com.mvbr.store.consumer;
 
+import com.mvbr.store.consumer.archive.EventArchive;
+import com.mvbr.store.consumer.coalesce.NotificationCoalescer;
+import com.mvbr.store.consumer.dedup.EventIdDeduplicator;
+import com.mvbr.store.consumer.parallel.KeyOrderedBatchProcessor;
+import com.mvbr.store.consumer.sink.ProcessedEventSink;
 import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.producer.hotkey.HotKeySalter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 @Service
 public class PaymentNotificationConsumer {
 
+    private final KeyOrderedBatchProcessor batchProcessor;
+    private final EventIdDeduplicator deduplicator;
+    private final ProcessedEventSink sink;
+
+    @Nullable
+    private final EventArchive archive;
+
+    @Nullable
+    private final NotificationCoalescer coalescer;
+
+    private final Consumer<PaymentNotificationEvent> markProcessed;
+
+    public PaymentNotificationConsumer(@Qualifier("notificationBatchProcessor") KeyOrderedBatchProcessor batchProcessor,
+                                       @Qualifier("notificationEventDeduplicator") EventIdDeduplicator deduplicator,
+                                       ProcessedEventSink sink,
+                                       @Nullable EventArchive archive,
+                                       @Nullable NotificationCoalescer coalescer) {
+        this.batchProcessor = batchProcessor;
+        this.deduplicator = deduplicator;
+        this.sink = sink;
+        this.archive = archive;
+        this.coalescer = coalescer;
+        this.markProcessed = event -> deduplicator.markProcessed(event.eventId());
+    }
+
     @KafkaListener(
+            id = "payment-notification",
             topics = "payment.notification.v1",
             groupId = "payment-service-notification-group",
             containerFactory = "defaultKafkaListenerContainerFactory"
     )
-    public void handlePaymentNotification(PaymentNotificationEvent event) {
-
-        System.out.println("===== PAYMENT NOTIFICATION RECEIVED =====");
-        System.out.println("eventId:   " + event.eventId());
-        System.out.println("paymentId: " + event.paymentId());
-        System.out.println("userId:    " + event.userId());
-        System.out.println("amount:    " + event.amount());
-        System.out.println("message:   " + event.message());
-        System.out.println("timestamp: " + event.timestamp());
-        System.out.println("==========================================\n");
+    public void handlePaymentNotification(List<ConsumerRecord<String, PaymentNotificationEvent>> records,
+                                          Acknowledgment ack,
+                                          org.apache.kafka.clients.consumer.Consumer<?, ?> consumer) {
+
+        // notificações do mesmo userId continuam em ordem; usuários diferentes em paralelo
+        // (chaves com salt de um usuário quente voltam a ser uma só dentro do lote)
+        batchProcessor.process(records, record -> HotKeySalter.unsalt(record.key()), this::processOnce);
+
+        if (coalescer == null) {
+            // lote inteiro processado: commita tudo
+            ack.acknowledge();
+            return;
+        }
+        // o que ainda está no buffer do coalescer segura o commit da sua partição
+        coalescer.commitDelivered(consumer, consumer.assignment());
+    }
+
+    private void processOnce(ConsumerRecord<String, PaymentNotificationEvent> record) {
+
+        PaymentNotificationEvent event = record.value();
+        if (event == null) {
+            // falha de desserialização (ErrorHandlingDeserializer): descarta o registro
+            sink.rejected(record.topic(), record.partition(), record.offset());
+            return;
+        }
+
+        if (deduplicator.isDuplicate(event.eventId())) {
+            return;
+        }
+
+        if (coalescer != null) {
+            // vai para o lote do usuário; o eventId só é marcado depois que o lote for entregue
+            // (se a entrega falhar, o lote fica no coalescer em retry)
+            if (archive != null) {
+                archive.archive(record, event);
+            }
+            coalescer.offer(new TopicPartition(record.topic(), record.partition()), record.offset(), event, markProcessed);
+            return;
+        }
+
+        process(event);
+        if (archive != null) {
+            archive.archive(record, event);
+        }
+
+        deduplicator.markProcessed(event.eventId());
+    }
+
+    private void process(PaymentNotificationEvent event) {
+
+        // formatação e escrita ficam com a thread do sink, fora do caminho do consumo
+        sink.processed(event);
     }
-}
\ No newline at end of file
+}
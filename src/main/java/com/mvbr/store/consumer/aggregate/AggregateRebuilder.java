@@ -0,0 +1,210 @@
+package com.mvbr.store.consumer.aggregate;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Reconstrói o {@link PaymentAggregateStore} na subida: carrega o snapshot e relê o
+ * {@code payment.approved.v1} de onde o snapshot parou até o offset commitado pelo group
+ * (daí em diante o listener assume). Sem snapshot, relê só o período da retenção
+ * ({@code offsetsForTimes}). Os tópicos de retry não entram: o listener também só soma os
+ * eventos do tópico principal, antes de processá-los.
+ *
+ * <p>Roda numa thread própria com tempo máximo por tentativa; enquanto isso o store não grava
+ * snapshots e as consultas podem vir incompletas. Uma partição só tem o offset avançado quando
+ * o replay dela chega ao fim; se uma tentativa estoura o tempo ou o Kafka falha, o store segue
+ * em rebuild (sem snapshot, que gravaria o buraco como consumido) e a próxima tentativa
+ * continua de onde a anterior parou, com backoff.
+ */
+@Component
+public class AggregateRebuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(AggregateRebuilder.class);
+
+    private static final String TOPIC = "payment.approved.v1";
+    private static final String GROUP = "payment-service-approved-group";
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofMinutes(1);
+
+    private final ConsumerFactory<String, Object> consumerFactory;
+    private final PaymentAggregateStore store;
+    private final Duration retention;
+    private final Duration timeout;
+    private final Duration retryBackoff;
+
+    public AggregateRebuilder(@Qualifier("criticalConsumerFactory") ConsumerFactory<String, Object> consumerFactory,
+                              PaymentAggregateStore store,
+                              @Value("${store.aggregates.retention:60m}") Duration retention,
+                              @Value("${store.aggregates.rebuild-timeout:60s}") Duration timeout,
+                              @Value("${store.aggregates.rebuild-retry-backoff:1s}") Duration retryBackoff) {
+        this.consumerFactory = consumerFactory;
+        this.store = store;
+        this.retention = retention;
+        this.timeout = timeout;
+        this.retryBackoff = retryBackoff;
+
+        // o snapshot é carregado antes dos listeners subirem; só o replay do Kafka é assíncrono
+        store.setRebuilding(true);
+        boolean fromSnapshot = store.loadSnapshot();
+        Map<TopicPartition, Long> snapshotOffsets = store.consumedOffsets();
+
+        Thread.ofPlatform().name("aggregate-rebuild").daemon().start(() -> rebuild(fromSnapshot, snapshotOffsets));
+    }
+
+    private void rebuild(boolean fromSnapshot, Map<TopicPartition, Long> snapshotOffsets) {
+        long started = System.currentTimeMillis();
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        // próximo offset a reler e fim (offset commitado) de cada partição ainda incompleta;
+        // sobrevivem entre tentativas para não somar duas vezes o que já foi relido
+        Map<TopicPartition, Long> starts = null;
+        Map<TopicPartition, Long> ends = null;
+        int replayed = 0;
+        long backoffMillis = retryBackoff.toMillis();
+
+        for (int attempt = 1; ; attempt++) {
+            // group.id só para ler os offsets commitados: assign() não entra no group nem commita
+            try (Consumer<String, Object> reader = consumerFactory.createConsumer(GROUP, "aggregate-rebuild", null, overrides)) {
+
+                if (ends == null) {
+                    List<PartitionInfo> infos = reader.partitionsFor(TOPIC, timeout);
+                    Set<TopicPartition> partitions = new HashSet<>();
+                    infos.forEach(info -> partitions.add(new TopicPartition(info.topic(), info.partition())));
+
+                    Map<TopicPartition, OffsetAndMetadata> committed = reader.committed(partitions, timeout);
+                    Map<TopicPartition, Long> committedEnds = new HashMap<>();
+                    committed.forEach((tp, offset) -> {
+                        if (offset != null) {
+                            committedEnds.put(tp, offset.offset());
+                        }
+                    });
+
+                    starts = startOffsets(reader, committedEnds.keySet(), snapshotOffsets);
+                    ends = committedEnds;
+                }
+
+                replayed += replay(reader, starts, ends);
+                if (ends.isEmpty()) {
+                    log.info("Rebuilt payment aggregates ({}snapshot) with {} replayed records in {} ms",
+                            fromSnapshot ? "" : "no ", replayed, System.currentTimeMillis() - started);
+                    store.setRebuilding(false);
+                    return;
+                }
+                log.warn("Payment aggregate replay timed out (attempt {}); partitions {} are incomplete, retrying in {} ms",
+                        attempt, ends.keySet(), backoffMillis);
+            } catch (KafkaException ex) {
+                log.warn("Could not replay payment aggregates (attempt {}), retrying in {} ms: {}",
+                        attempt, backoffMillis, ex.getMessage());
+            }
+
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;                                     // shutdown: o store fica em rebuild
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_RETRY_BACKOFF.toMillis());
+        }
+    }
+
+    /** Offset do snapshot; sem ele, o primeiro offset dentro da retenção. */
+    private Map<TopicPartition, Long> startOffsets(Consumer<String, Object> reader,
+                                                   Set<TopicPartition> partitions,
+                                                   Map<TopicPartition, Long> snapshotOffsets) {
+        Map<TopicPartition, Long> starts = new HashMap<>();
+        Map<TopicPartition, Long> byTime = new HashMap<>();
+        long since = System.currentTimeMillis() - retention.toMillis();
+
+        for (TopicPartition tp : partitions) {
+            Long offset = snapshotOffsets.get(tp);
+            if (offset != null) {
+                starts.put(tp, offset);
+            } else {
+                byTime.put(tp, since);
+            }
+        }
+
+        if (!byTime.isEmpty()) {
+            Map<TopicPartition, OffsetAndTimestamp> found = reader.offsetsForTimes(byTime, timeout);
+            Map<TopicPartition, Long> endOffsets = reader.endOffsets(byTime.keySet(), timeout);
+            byTime.keySet().forEach(tp -> {
+                OffsetAndTimestamp hit = found.get(tp);
+                starts.put(tp, hit != null ? hit.offset() : endOffsets.getOrDefault(tp, 0L));
+            });
+        }
+        return starts;
+    }
+
+    /**
+     * Relê de {@code starts} até {@code ends} dentro do tempo da tentativa. Partições que chegam
+     * ao fim saem de {@code ends} e têm o offset marcado no store; as outras ficam com
+     * {@code starts} no próximo offset ainda não relido.
+     */
+    private int replay(Consumer<String, Object> reader, Map<TopicPartition, Long> starts, Map<TopicPartition, Long> ends) {
+
+        completed(ends, e -> starts.getOrDefault(e.getKey(), e.getValue()) >= e.getValue());
+        if (ends.isEmpty()) {
+            return 0;
+        }
+
+        reader.assign(ends.keySet());
+        ends.keySet().forEach(tp -> reader.seek(tp, starts.get(tp)));
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int replayed = 0;
+
+        while (!ends.isEmpty() && System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, Object> record : reader.poll(Duration.ofMillis(200))) {
+                TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+                Long end = ends.get(tp);
+                if (end == null || record.offset() >= end) {
+                    continue;
+                }
+                if (record.value() instanceof PaymentApprovedEvent event) {
+                    store.record(event);
+                    replayed++;
+                }
+                starts.put(tp, record.offset() + 1);
+            }
+            completed(ends, e -> reader.position(e.getKey()) >= e.getValue());
+            reader.pause(reader.assignment().stream().filter(tp -> !ends.containsKey(tp)).toList());
+        }
+        return replayed;
+    }
+
+    /** Tira de {@code ends} as partições que chegaram ao fim; o offset delas já está refletido no store. */
+    private void completed(Map<TopicPartition, Long> ends, Predicate<Map.Entry<TopicPartition, Long>> done) {
+        Iterator<Map.Entry<TopicPartition, Long>> it = ends.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TopicPartition, Long> entry = it.next();
+            if (done.test(entry)) {
+                store.markConsumed(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+    }
+}
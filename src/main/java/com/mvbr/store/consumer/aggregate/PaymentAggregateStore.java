@@ -0,0 +1,687 @@
+package com.mvbr.store.consumer.aggregate;
+
+import com.mvbr.store.dto.PaymentAggregateResponse;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Soma e contagem de pagamentos aprovados por userId/moeda e por moeda, em buckets de um minuto.
+ *
+ * <p>Os buckets formam um anel com {@code retention} minutos; cada um é uma tabela de
+ * endereçamento aberto sobre {@code long[]} (chave = índice do usuário e da moeda num long,
+ * valores em unidades mínimas da moeda). Janelas deslizantes somam os últimos N buckets;
+ * janelas fixas (tumbling) agrupam buckets alinhados ao tamanho da janela.
+ *
+ * <p>O tempo é o do evento ({@code timestamp}); eventos mais antigos que a retenção são ignorados.
+ * O dicionário de usuários conta quantas chaves de buckets vivos usam cada índice: quando um
+ * bucket sai da retenção, usuários sem chave em nenhum outro bucket são removidos e o índice
+ * volta para reuso, então o dicionário acompanha os usuários ativos na janela, não o histórico.
+ *
+ * <p>O snapshot (estado + próximo offset de cada partição do tópico principal) é gravado
+ * entre lotes pelo próprio listener, então é consistente com os offsets. Na subida, o
+ * {@link AggregateRebuilder} carrega o snapshot e relê o tópico do offset salvo até o commitado.
+ */
+@Component
+public class PaymentAggregateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentAggregateStore.class);
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int SNAPSHOT_MAGIC = 0x41474732;        // "AGG2"
+
+    private final int retentionMinutes;
+    private final Bucket[] ring;
+
+    // dicionários: userId/moeda → índice usado na chave
+    private final Map<String, Integer> userIndex = new HashMap<>();
+    private final List<String> users = new ArrayList<>();         // null = índice livre
+    private final ArrayDeque<Integer> freeUsers = new ArrayDeque<>();
+    private int[] userRefs = new int[64];                          // chaves em buckets vivos por usuário
+    private final Map<Currency, Integer> currencyIndex = new HashMap<>();
+    private final List<Currency> currencies = new ArrayList<>();
+
+    private final Map<TopicPartition, Long> consumedOffsets = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long sweptMinute = Long.MIN_VALUE;
+
+    private final Path snapshotFile;
+    private final long snapshotIntervalMillis;
+    private final ExecutorService snapshotWriter;
+    private volatile long lastSnapshotMillis = System.currentTimeMillis();
+    private volatile boolean rebuilding;
+
+    public PaymentAggregateStore(@Value("${store.aggregates.retention:60m}") Duration retention,
+                                 @Value("${store.aggregates.directory:./data/aggregates}") Path directory,
+                                 @Value("${store.aggregates.snapshot-interval:30s}") Duration snapshotInterval) {
+        this.retentionMinutes = (int) Math.max(1, retention.toMinutes());
+        this.ring = new Bucket[retentionMinutes];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Bucket();
+        }
+        this.snapshotFile = directory.resolve("payment-aggregates.snapshot");
+        this.snapshotIntervalMillis = snapshotInterval.toMillis();
+        this.snapshotWriter = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("aggregate-snapshot").daemon().factory());
+    }
+
+    // =============================
+    // ESCRITA
+    // =============================
+
+    /** Soma o evento no bucket do minuto dele. */
+    public void record(PaymentApprovedEvent event) {
+        if (event.userId() == null || event.money() == null) {
+            return;
+        }
+
+        long minute = Math.floorDiv(event.timestamp(), MINUTE);
+        long now = currentMinute();
+        if (minute > now) {
+            minute = now;                                   // relógio do produtor adiantado
+        }
+        if (minute <= now - retentionMinutes) {
+            return;                                         // fora da retenção
+        }
+
+        lock.lock();
+        try {
+            expireBuckets(now);
+            int currency = currencyIndex(event.money().currency());
+            int user = userIndex(event.userId());
+
+            if (bucket(minute).add(key(user, currency), currency, event.money().minorUnits())) {
+                userRefs[user]++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chamado pelo listener depois de um lote processado por completo: avança o próximo
+     * offset de cada partição e, se o intervalo passou, tira o snapshot (sem lote em voo).
+     */
+    public void markConsumed(List<? extends ConsumerRecord<?, ?>> records) {
+        lock.lock();
+        try {
+            for (ConsumerRecord<?, ?> record : records) {
+                consumedOffsets.merge(new TopicPartition(record.topic(), record.partition()),
+                        record.offset() + 1, Math::max);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (System.currentTimeMillis() - lastSnapshotMillis >= snapshotIntervalMillis) {
+            snapshotAsync();
+        }
+    }
+
+    /** Registra um offset já refletido no estado (usado pelo rebuild). */
+    void markConsumed(TopicPartition partition, long nextOffset) {
+        lock.lock();
+        try {
+            consumedOffsets.merge(partition, nextOffset, Math::max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // =============================
+    // LEITURA
+    // =============================
+
+    /** Totais por moeda do usuário nos últimos {@code minutes} minutos (incluindo o atual). */
+    public List<PaymentAggregateResponse> userTotals(String userId, int minutes) {
+        long to = currentMinute() + 1;
+        long from = to - clamp(minutes);
+
+        lock.lock();
+        try {
+            Integer user = userIndex.get(userId);
+            return user == null ? List.of() : userRows(userId, user, from, to);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Janelas fixas de {@code windowMinutes} alinhadas ao epoch (ex.: 5 → :00, :05, :10...),
+     * da mais recente para a mais antiga; só janelas com movimento.
+     */
+    public List<PaymentAggregateResponse> userWindows(String userId, int windowMinutes, int windows) {
+        int size = clamp(windowMinutes);
+        long current = Math.floorDiv(currentMinute(), size) * size;
+
+        lock.lock();
+        try {
+            Integer user = userIndex.get(userId);
+            if (user == null) {
+                return List.of();
+            }
+            List<PaymentAggregateResponse> rows = new ArrayList<>();
+            for (int i = 0; i < windows; i++) {
+                long from = current - (long) i * size;
+                if (from + size <= currentMinute() - retentionMinutes + 1) {
+                    break;
+                }
+                rows.addAll(userRows(userId, user, from, from + size));
+            }
+            return rows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Total da moeda (todos os usuários) nos últimos {@code minutes} minutos. */
+    public PaymentAggregateResponse currencyTotals(String currency, int minutes) {
+        long to = currentMinute() + 1;
+        long from = to - clamp(minutes);
+        Currency code = Money.currency(currency);
+
+        lock.lock();
+        try {
+            Integer index = currencyIndex.get(code);
+            long count = 0;
+            long units = 0;
+            if (index != null) {
+                for (long minute = from; minute < to; minute++) {
+                    Bucket bucket = ring[slot(minute)];
+                    if (bucket.minute == minute && index < bucket.currencyCounts.length) {
+                        count += bucket.currencyCounts[index];
+                        units += bucket.currencyUnits[index];
+                    }
+                }
+            }
+            return new PaymentAggregateResponse(null, from * MINUTE, to * MINUTE, count, Money.ofMinor(units, code));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<PaymentAggregateResponse> userRows(String userId, int user, long from, long to) {
+        List<PaymentAggregateResponse> rows = new ArrayList<>(1);
+        for (int currency = 0; currency < currencies.size(); currency++) {
+            long key = key(user, currency);
+            long count = 0;
+            long units = 0;
+            for (long minute = from; minute < to; minute++) {
+                Bucket bucket = ring[slot(minute)];
+                if (bucket.minute == minute) {
+                    int i = bucket.find(key);
+                    if (i >= 0) {
+                        count += bucket.counts[i];
+                        units += bucket.units[i];
+                    }
+                }
+            }
+            if (count > 0) {
+                rows.add(new PaymentAggregateResponse(userId, from * MINUTE, to * MINUTE,
+                        count, Money.ofMinor(units, currencies.get(currency))));
+            }
+        }
+        return rows;
+    }
+
+    // =============================
+    // SNAPSHOT
+    // =============================
+
+    void setRebuilding(boolean rebuilding) {
+        this.rebuilding = rebuilding;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding;
+    }
+
+    Map<TopicPartition, Long> consumedOffsets() {
+        lock.lock();
+        try {
+            return new HashMap<>(consumedOffsets);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void snapshotAsync() {
+        if (rebuilding) {
+            return;                 // estado incompleto: o snapshot antigo continua valendo
+        }
+        lastSnapshotMillis = System.currentTimeMillis();
+        byte[] data = serialize();
+        snapshotWriter.execute(() -> write(data));
+    }
+
+    /** Grava o snapshot agora (no shutdown, com os containers já parados). */
+    public void snapshot() {
+        if (!rebuilding) {
+            write(serialize());
+        }
+    }
+
+    private byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        lock.lock();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(System.currentTimeMillis());
+
+            out.writeInt(currencies.size());
+            for (int i = 0; i < currencies.size(); i++) {
+                out.writeUTF(currencies.get(i).getCurrencyCode());
+            }
+            out.writeInt(users.size());
+            for (String user : users) {
+                out.writeBoolean(user != null);
+                if (user != null) {
+                    out.writeUTF(user);
+                }
+            }
+
+            out.writeInt(consumedOffsets.size());
+            for (Map.Entry<TopicPartition, Long> entry : consumedOffsets.entrySet()) {
+                out.writeUTF(entry.getKey().topic());
+                out.writeInt(entry.getKey().partition());
+                out.writeLong(entry.getValue());
+            }
+
+            long oldest = currentMinute() - retentionMinutes;
+            int live = 0;
+            for (Bucket bucket : ring) {
+                if (bucket.minute > oldest && bucket.size > 0) {
+                    live++;
+                }
+            }
+            out.writeInt(live);
+            for (Bucket bucket : ring) {
+                if (bucket.minute > oldest && bucket.size > 0) {
+                    bucket.writeTo(out);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.unlock();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void write(byte[] data) {
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Could not write payment aggregate snapshot: {}", ex.toString());
+        }
+    }
+
+    /** Carrega o snapshot, se houver; devolve false se não existe ou está corrompido. */
+    boolean loadSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            load(in);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Ignoring unreadable payment aggregate snapshot {}: {}", snapshotFile, ex.toString());
+            clear();
+            return false;
+        }
+    }
+
+    private void load(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a payment aggregate snapshot");
+        }
+        in.readLong();
+
+        lock.lock();
+        try {
+            clear();
+            int currencyCount = in.readInt();
+            for (int i = 0; i < currencyCount; i++) {
+                currencyIndex(Money.currency(in.readUTF()));
+            }
+            // as chaves dos buckets guardam o índice: os buracos do dicionário são mantidos
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                String user = in.readBoolean() ? in.readUTF() : null;
+                users.add(user);
+                if (user != null) {
+                    userIndex.put(user, i);
+                }
+            }
+            userRefs = new int[Math.max(64, userCount)];
+            int partitions = in.readInt();
+            for (int i = 0; i < partitions; i++) {
+                consumedOffsets.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+            }
+
+            long oldest = currentMinute() - retentionMinutes;
+            int buckets = in.readInt();
+            for (int i = 0; i < buckets; i++) {
+                long minute = in.readLong();
+                Bucket bucket = minute > oldest ? bucket(minute) : new Bucket();
+                bucket.readFrom(in);
+                if (bucket.minute == minute) {
+                    bucket.forEachKey(key -> userRefs[userOf(key)]++);
+                }
+            }
+
+            // usuários só de buckets que saíram da retenção desde o snapshot
+            for (int i = 0; i < users.size(); i++) {
+                if (users.get(i) != null && userRefs[i] == 0) {
+                    releaseUser(i);
+                } else if (users.get(i) == null) {
+                    freeUsers.push(i);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clear() {
+        lock.lock();
+        try {
+            for (Bucket bucket : ring) {
+                bucket.reset(Long.MIN_VALUE);
+            }
+            userIndex.clear();
+            users.clear();
+            freeUsers.clear();
+            Arrays.fill(userRefs, 0);
+            sweptMinute = Long.MIN_VALUE;
+            currencyIndex.clear();
+            currencies.clear();
+            consumedOffsets.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshotWriter.close();
+        snapshot();
+    }
+
+    // =============================
+    // INTERNOS
+    // =============================
+
+    private Bucket bucket(long minute) {
+        Bucket bucket = ring[slot(minute)];
+        if (bucket.minute != minute) {
+            release(bucket);
+            bucket.reset(minute);
+        }
+        return bucket;
+    }
+
+    /**
+     * Uma vez por minuto, esvazia os buckets que saíram da retenção sem terem sido reusados
+     * (minutos sem evento), para os usuários deles não ficarem presos no dicionário.
+     */
+    private void expireBuckets(long now) {
+        if (now == sweptMinute) {
+            return;
+        }
+        sweptMinute = now;
+        for (Bucket bucket : ring) {
+            if (bucket.size > 0 && bucket.minute <= now - retentionMinutes) {
+                release(bucket);
+                bucket.reset(Long.MIN_VALUE);
+            }
+        }
+    }
+
+    private void release(Bucket bucket) {
+        if (bucket.size > 0) {
+            bucket.forEachKey(key -> {
+                int user = userOf(key);
+                if (--userRefs[user] == 0) {
+                    releaseUser(user);
+                }
+            });
+        }
+    }
+
+    private void releaseUser(int user) {
+        userIndex.remove(users.get(user));
+        users.set(user, null);
+        freeUsers.push(user);
+    }
+
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, retentionMinutes);
+    }
+
+    private int clamp(int minutes) {
+        return Math.max(1, Math.min(minutes, retentionMinutes));
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / MINUTE;
+    }
+
+    private static long key(int user, int currency) {
+        return ((long) user << 16) | currency;
+    }
+
+    private static int userOf(long key) {
+        return (int) (key >>> 16);
+    }
+
+    private int userIndex(String userId) {
+        Integer index = userIndex.get(userId);
+        if (index == null) {
+            index = freeUsers.poll();
+            if (index == null) {
+                index = users.size();
+                users.add(userId);
+                if (index >= userRefs.length) {
+                    userRefs = Arrays.copyOf(userRefs, userRefs.length * 2);
+                }
+            } else {
+                users.set(index, userId);
+            }
+            userIndex.put(userId, index);
+        }
+        return index;
+    }
+
+    /** Usuários no dicionário (ativos em algum bucket vivo). */
+    int dictionarySize() {
+        lock.lock();
+        try {
+            return userIndex.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int currencyIndex(Currency currency) {
+        Integer index = currencyIndex.get(currency);
+        if (index == null) {
+            index = currencies.size();
+            currencies.add(currency);
+            currencyIndex.put(currency, index);
+        }
+        return index;
+    }
+
+    /** Um minuto: tabela (userId, moeda) → contagem/soma + totais por moeda. */
+    private static final class Bucket {
+
+        private static final long EMPTY = -1L;
+
+        long minute = Long.MIN_VALUE;
+        int size;
+        long[] keys = newKeys(64);
+        long[] counts = new long[64];
+        long[] units = new long[64];
+        long[] currencyCounts = new long[8];
+        long[] currencyUnits = new long[8];
+
+        void reset(long minute) {
+            this.minute = minute;
+            if (size > 0) {
+                Arrays.fill(keys, EMPTY);
+                Arrays.fill(counts, 0);
+                Arrays.fill(units, 0);
+                Arrays.fill(currencyCounts, 0);
+                Arrays.fill(currencyUnits, 0);
+                size = 0;
+            }
+        }
+
+        /** Devolve true se a chave é nova no bucket. */
+        boolean add(long key, int currency, long amount) {
+            boolean added = addTotals(key, 1, amount);
+            if (currency >= currencyCounts.length) {
+                int length = Math.max(currency + 1, currencyCounts.length * 2);
+                currencyCounts = Arrays.copyOf(currencyCounts, length);
+                currencyUnits = Arrays.copyOf(currencyUnits, length);
+            }
+            currencyCounts[currency]++;
+            currencyUnits[currency] += amount;
+            return added;
+        }
+
+        private boolean addTotals(long key, long count, long amount) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int i = slotFor(keys, key);
+            boolean added = keys[i] == EMPTY;
+            if (added) {
+                keys[i] = key;
+                size++;
+            }
+            counts[i] += count;
+            units[i] += amount;
+            return added;
+        }
+
+        void forEachKey(LongConsumer action) {
+            for (long key : keys) {
+                if (key != EMPTY) {
+                    action.accept(key);
+                }
+            }
+        }
+
+        int find(long key) {
+            int i = slotFor(keys, key);
+            return keys[i] == EMPTY ? -1 : i;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            long[] oldUnits = units;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new long[keys.length];
+            units = new long[keys.length];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = slotFor(keys, oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                    units[i] = oldUnits[j];
+                }
+            }
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(minute);
+            out.writeInt(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(counts[i]);
+                    out.writeLong(units[i]);
+                }
+            }
+            out.writeInt(currencyCounts.length);
+            for (int i = 0; i < currencyCounts.length; i++) {
+                out.writeLong(currencyCounts[i]);
+                out.writeLong(currencyUnits[i]);
+            }
+        }
+
+        void readFrom(DataInputStream in) throws IOException {
+            int entries = in.readInt();
+            for (int j = 0; j < entries; j++) {
+                addTotals(in.readLong(), in.readLong(), in.readLong());
+            }
+            int length = in.readInt();
+            if (length > currencyCounts.length) {
+                currencyCounts = Arrays.copyOf(currencyCounts, length);
+                currencyUnits = Arrays.copyOf(currencyUnits, length);
+            }
+            for (int i = 0; i < length; i++) {
+                currencyCounts[i] = in.readLong();
+                currencyUnits[i] = in.readLong();
+            }
+        }
+
+        private static int slotFor(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int i = (int) (mix(key) & mask);
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private static long mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return key;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
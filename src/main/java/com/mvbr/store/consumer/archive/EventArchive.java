@@ -0,0 +1,344 @@
+package com.mvbr.store.consumer.archive;
+
+import com.mvbr.store.dto.ArchivedEventResponse;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.event.codec.PaymentEventCodec;
+import com.mvbr.store.storage.SegmentedLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Arquivo local dos eventos processados pelos consumers, para auditoria/suporte sem reler o tópico.
+ *
+ * <p>Cada evento processado vai para um {@link SegmentedLog} (segmentos mapeados em memória)
+ * como {@code [anterior do paymentId][anterior do userId][archivedAt][offset][partição]
+ * [tópico][evento no codec binário]}. Dois {@link KeyIndex} guardam a posição do evento mais
+ * recente de cada paymentId e de cada userId; os anteriores são encadeados pelo próprio
+ * registro, então uma consulta é um lookup no hash + uma leitura mapeada por evento da chave.
+ * Um índice esparso de tempo (uma amostra por segundo) serve os range scans por período.
+ *
+ * <p>Os índices ficam só em memória e são reconstruídos na subida relendo o arquivo. Uma thread
+ * de manutenção faz o fsync a cada {@code flush-interval} e apaga os segmentos sem escrita há
+ * mais que {@code retention}; as chaves cujo evento mais recente saiu junto são removidas.
+ *
+ * <p>O Kafka continua sendo a fonte da verdade: uma falha ao arquivar é contada e logada, mas
+ * não falha o processamento do registro.
+ */
+@Component
+@ConditionalOnProperty(name = "store.archive.enabled", havingValue = "true")
+public class EventArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(EventArchive.class);
+
+    // prevByPayment + prevByUser + archivedAt + offset (long) + partition (int) + tamanho do tópico (short)
+    private static final int FIXED_BYTES = 4 * Long.BYTES + Integer.BYTES + Short.BYTES;
+    private static final int SCAN_CHUNK = 256;
+    private static final long TIME_SAMPLE_MILLIS = 1_000;
+    private static final Duration RETENTION_CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    private final SegmentedLog eventLog;
+    private final Duration retention;
+
+    private final KeyIndex byPayment;
+    private final KeyIndex byUser;
+    private final ConcurrentSkipListMap<Long, Long> timeIndex = new ConcurrentSkipListMap<>();   // archivedAt → posição
+
+    // escrita (append + índices) e retenção exclusivas; consultas em paralelo entre si
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long lastArchivedAt;
+    private long lastSampleAt = Long.MIN_VALUE;
+
+    private final Counter archived;
+    private final Counter failed;
+    private final ScheduledExecutorService maintenance;
+
+    public EventArchive(@Value("${store.archive.directory:./data/archive}") Path directory,
+                        @Value("${store.archive.segment-bytes:67108864}") int segmentBytes,
+                        @Value("${store.archive.retention:7d}") Duration retention,
+                        @Value("${store.archive.flush-interval:1s}") Duration flushInterval,
+                        @Value("${store.archive.index.expected-keys:100000}") int expectedKeys,
+                        MeterRegistry meterRegistry) {
+        this.eventLog = new SegmentedLog(directory, segmentBytes);
+        this.retention = retention;
+        this.byPayment = new KeyIndex(expectedKeys);
+        this.byUser = new KeyIndex(expectedKeys);
+
+        long started = System.currentTimeMillis();
+        rebuild();
+        log.info("Event archive at {}: {} payments and {} users indexed in {} ms",
+                directory, byPayment.size(), byUser.size(), System.currentTimeMillis() - started);
+
+        this.archived = Counter.builder("store.archive.archived")
+                .description("Processed events written to the local archive")
+                .register(meterRegistry);
+        this.failed = Counter.builder("store.archive.failed")
+                .description("Processed events that could not be archived")
+                .register(meterRegistry);
+        Gauge.builder("store.archive.bytes", eventLog, archive -> archive.writePosition() - archive.startPosition())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("store.archive.index.keys", byPayment, KeyIndex::size)
+                .tag("index", "payment")
+                .register(meterRegistry);
+        Gauge.builder("store.archive.index.keys", byUser, KeyIndex::size)
+                .tag("index", "user")
+                .register(meterRegistry);
+
+        // flush e retenção na mesma thread: um segmento nunca é apagado no meio de um fsync
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("event-archive").daemon().factory());
+        maintenance.scheduleWithFixedDelay(this::flush,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::enforceRetention,
+                0, RETENTION_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // =============================
+    // ESCRITA
+    // =============================
+
+    /** Arquiva um evento já processado ({@link PaymentApprovedEvent} ou {@link PaymentNotificationEvent}). */
+    public void archive(ConsumerRecord<String, ?> record, Object event) {
+        try {
+            byte[] eventBytes = PaymentEventCodec.encode(event);
+            byte[] topic = record.topic().getBytes(StandardCharsets.UTF_8);
+            long paymentHash = KeyIndex.hash(paymentIdOf(event));
+            long userHash = KeyIndex.hash(userIdOf(event));
+
+            lock.writeLock().lock();
+            try {
+                long archivedAt = Math.max(lastArchivedAt, System.currentTimeMillis());
+
+                ByteBuffer payload = ByteBuffer.allocate(FIXED_BYTES + topic.length + eventBytes.length);
+                payload.putLong(byPayment.get(paymentHash));
+                payload.putLong(byUser.get(userHash));
+                payload.putLong(archivedAt);
+                payload.putLong(record.offset());
+                payload.putInt(record.partition());
+                payload.putShort((short) topic.length);
+                payload.put(topic);
+                payload.put(eventBytes);
+
+                long position = eventLog.append(payload.array());
+                index(position, paymentHash, userHash, archivedAt);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            archived.increment();
+        } catch (RuntimeException ex) {
+            failed.increment();
+            log.warn("Could not archive event from {}-{}@{}: {}",
+                    record.topic(), record.partition(), record.offset(), ex.toString());
+        }
+    }
+
+    private void index(long position, long paymentHash, long userHash, long archivedAt) {
+        byPayment.put(paymentHash, position);
+        byUser.put(userHash, position);
+        if (archivedAt >= lastSampleAt + TIME_SAMPLE_MILLIS) {
+            timeIndex.put(archivedAt, position);
+            lastSampleAt = archivedAt;
+        }
+        lastArchivedAt = archivedAt;
+    }
+
+    // =============================
+    // CONSULTAS
+    // =============================
+
+    /**
+     * Os {@code limit} eventos mais recentes do pagamento ainda no arquivo, devolvidos do mais antigo para o
+     * mais recente. Com mais de {@code limit} eventos, os mais antigos ficam de fora: a lista da chave só
+     * é percorrida de trás para frente.
+     */
+    public List<ArchivedEventResponse> byPaymentId(String paymentId, int limit) {
+        List<ArchivedEventResponse> events = walk(byPayment, paymentId, true, Long.MIN_VALUE, Long.MAX_VALUE, limit);
+        Collections.reverse(events);
+        return events;
+    }
+
+    /** Eventos do usuário com archivedAt em [from, to), do mais recente para o mais antigo. */
+    public List<ArchivedEventResponse> byUserId(String userId, long fromMillis, long toMillis, int limit) {
+        return walk(byUser, userId, false, fromMillis, toMillis, limit);
+    }
+
+    /** Eventos de todos os usuários com archivedAt em [from, to), na ordem em que foram arquivados. */
+    public List<ArchivedEventResponse> scan(long fromMillis, long toMillis, int limit) {
+        List<ArchivedEventResponse> events = new ArrayList<>();
+        List<Entry> chunk = new ArrayList<>(SCAN_CHUNK);
+
+        lock.readLock().lock();
+        try {
+            long start = eventLog.startPosition();
+            Map.Entry<Long, Long> sample = timeIndex.floorEntry(fromMillis);
+            long position = sample == null ? start : Math.max(start, sample.getValue());
+            long end = eventLog.writePosition();
+
+            while (position < end && events.size() < limit) {
+                chunk.clear();
+                position = eventLog.read(position, end, SCAN_CHUNK,
+                        (recordPosition, payload) -> chunk.add(decode(recordPosition, payload)));
+                for (Entry entry : chunk) {
+                    if (entry.archivedAt() >= toMillis || events.size() >= limit) {
+                        return events;
+                    }
+                    if (entry.archivedAt() >= fromMillis) {
+                        events.add(entry.response());
+                    }
+                }
+            }
+            return events;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // segue a lista da chave do mais recente para o mais antigo (archivedAt só diminui)
+    private List<ArchivedEventResponse> walk(KeyIndex index, String key, boolean byPaymentId,
+                                             long fromMillis, long toMillis, int limit) {
+        List<ArchivedEventResponse> events = new ArrayList<>();
+        long hash = KeyIndex.hash(key);
+
+        lock.readLock().lock();
+        try {
+            long start = eventLog.startPosition();
+            long position = index.get(hash);
+            while (position >= start && events.size() < limit) {
+                Entry entry = decode(position, eventLog.readAt(position));
+                if (entry.archivedAt() < fromMillis) {
+                    break;
+                }
+                // a lista pode ter outra chave com o mesmo hash
+                if (entry.archivedAt() < toMillis && key.equals(byPaymentId ? entry.paymentId() : entry.userId())) {
+                    events.add(entry.response());
+                }
+                position = byPaymentId ? entry.prevByPayment() : entry.prevByUser();
+            }
+            return events;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // =============================
+    // MANUTENÇÃO
+    // =============================
+
+    private void rebuild() {
+        eventLog.read(eventLog.startPosition(), eventLog.writePosition(), Integer.MAX_VALUE, (position, payload) -> {
+            Entry entry = decode(position, payload);
+            index(position, KeyIndex.hash(entry.paymentId()), KeyIndex.hash(entry.userId()), entry.archivedAt());
+        });
+    }
+
+    private void flush() {
+        try {
+            eventLog.flush();
+        } catch (RuntimeException ex) {
+            log.warn("Event archive flush failed", ex);
+        }
+    }
+
+    void enforceRetention() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        lock.writeLock().lock();
+        try {
+            long before = eventLog.startPosition();
+            eventLog.deleteSegmentsModifiedBefore(cutoff);
+            long start = eventLog.startPosition();
+            if (start == before) {
+                return;
+            }
+            byPayment.removeBefore(start);
+            byUser.removeBefore(start);
+            while (!timeIndex.isEmpty() && timeIndex.firstEntry().getValue() < start) {
+                timeIndex.pollFirstEntry();
+            }
+            log.info("Event archive retention: deleted {} bytes older than {}", start - before, retention);
+        } catch (RuntimeException ex) {
+            log.warn("Event archive retention failed", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        maintenance.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            eventLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static String paymentIdOf(Object event) {
+        return switch (event) {
+            case PaymentApprovedEvent approved -> approved.paymentId();
+            case PaymentNotificationEvent notification -> notification.paymentId();
+            default -> throw new IllegalArgumentException("Unsupported event type: " + event.getClass().getName());
+        };
+    }
+
+    private static String userIdOf(Object event) {
+        return switch (event) {
+            case PaymentApprovedEvent approved -> approved.userId();
+            case PaymentNotificationEvent notification -> notification.userId();
+            default -> throw new IllegalArgumentException("Unsupported event type: " + event.getClass().getName());
+        };
+    }
+
+    private static Entry decode(long position, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long prevByPayment = buffer.getLong();
+        long prevByUser = buffer.getLong();
+        long archivedAt = buffer.getLong();
+        long offset = buffer.getLong();
+        int partition = buffer.getInt();
+        int topicLength = buffer.getShort();
+        String topic = new String(payload, FIXED_BYTES, topicLength, StandardCharsets.UTF_8);
+        Object event = PaymentEventCodec.decode(Arrays.copyOfRange(payload, FIXED_BYTES + topicLength, payload.length));
+        return new Entry(position, prevByPayment, prevByUser, archivedAt, topic, partition, offset, event);
+    }
+
+    private record Entry(long position, long prevByPayment, long prevByUser, long archivedAt,
+                         String topic, int partition, long offset, Object event) {
+
+        String paymentId() {
+            return paymentIdOf(event);
+        }
+
+        String userId() {
+            return userIdOf(event);
+        }
+
+        ArchivedEventResponse response() {
+            return new ArchivedEventResponse(position, archivedAt, topic, partition, offset, event);
+        }
+    }
+}
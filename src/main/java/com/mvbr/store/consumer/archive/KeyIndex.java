@@ -0,0 +1,108 @@
+package com.mvbr.store.consumer.archive;
+
+/**
+ * Índice hash compacto: hash de 64 bits da chave → posição do registro mais recente dela.
+ *
+ * <p>Endereçamento aberto com sondagem linear em dois {@code long[]} (16 bytes por chave,
+ * ocupação máxima de 50%), sem objeto por entrada. Os registros anteriores da mesma chave são
+ * encadeados no próprio arquivo (cada registro guarda a posição do anterior), então o índice
+ * só precisa da cabeça da lista.
+ *
+ * <p>Duas chaves com o mesmo hash dividem a mesma lista; quem lê confere a chave de cada
+ * registro. Não é thread-safe: o {@link EventArchive} protege com o lock dele.
+ */
+class KeyIndex {
+
+    private static final long EMPTY = 0;
+
+    private long[] hashes;
+    private long[] positions;
+    private int size;
+
+    KeyIndex(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedKeys * 2 - 1)) << 1;
+        this.hashes = new long[capacity];
+        this.positions = new long[capacity];
+    }
+
+    /** Troca a cabeça da lista da chave; devolve a cabeça anterior ou -1. */
+    long put(long hash, long position) {
+        if ((size + 1) * 2 > hashes.length) {
+            resize(hashes.length * 2);
+        }
+        int slot = slot(hash);
+        if (hashes[slot] == EMPTY) {
+            hashes[slot] = hash;
+            positions[slot] = position;
+            size++;
+            return -1;
+        }
+        long previous = positions[slot];
+        positions[slot] = position;
+        return previous;
+    }
+
+    /** Posição do registro mais recente da chave, ou -1. */
+    long get(long hash) {
+        int slot = slot(hash);
+        return hashes[slot] == EMPTY ? -1 : positions[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Remove as chaves cujo registro mais recente já saiu do arquivo (retenção). */
+    void removeBefore(long startPosition) {
+        long[] oldHashes = hashes;
+        long[] oldPositions = positions;
+        hashes = new long[oldHashes.length];
+        positions = new long[oldPositions.length];
+        size = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY && oldPositions[i] >= startPosition) {
+                int slot = slot(oldHashes[i]);
+                hashes[slot] = oldHashes[i];
+                positions[slot] = oldPositions[i];
+                size++;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldHashes = hashes;
+        long[] oldPositions = positions;
+        hashes = new long[capacity];
+        positions = new long[capacity];
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY) {
+                int slot = slot(oldHashes[i]);
+                hashes[slot] = oldHashes[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    // slot da chave ou o primeiro vazio da sondagem
+    private int slot(long hash) {
+        int mask = hashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (hashes[slot] != EMPTY && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Hash de 64 bits da chave (FNV-1a + finalizador do SplitMix64); nunca 0. */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return h == EMPTY ? 1 : h;
+    }
+}
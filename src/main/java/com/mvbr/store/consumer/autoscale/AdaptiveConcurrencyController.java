@@ -0,0 +1,193 @@
+package com.mvbr.store.consumer.autoscale;
+
+import com.mvbr.store.config.kafka.KafkaConsumerConfig;
+import com.mvbr.store.consumer.lag.ConsumerLagMonitor;
+import com.mvbr.store.consumer.parallel.KeyOrderedBatchProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajusta o paralelismo dos listeners batch pelo lag do grupo e pela latência do handler,
+ * sem redeploy.
+ *
+ * <p>O que muda é o limite de registros em voo do {@link KeyOrderedBatchProcessor} de cada
+ * lane (o pool de virtual threads), e não a {@code concurrency} do container: mudar a
+ * concurrency exige parar e subir o container, o que provoca um rebalance justamente no pico.
+ * Quando a latência passa do limite de descarte, o container é pausado (as partições deixam de
+ * ser buscadas, sem rebalance) até o downstream se recuperar. As regras estão em
+ * {@link ConcurrencyPolicy}.
+ *
+ * <p>Métricas (tag {@code lane}): {@code store.consumer.autoscale.limit},
+ * {@code store.consumer.autoscale.paused}, {@code store.consumer.autoscale.latency} e
+ * {@code store.consumer.autoscale.decisions} (tag {@code action}).
+ */
+@Component
+@ConditionalOnProperty(name = "store.consumer.autoscale.enabled", havingValue = "true")
+public class AdaptiveConcurrencyController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ConsumerLagMonitor lagMonitor;
+    private final ConcurrencyPolicy policy;
+    private final List<Lane> lanes;
+    private final ScheduledExecutorService scheduler;
+
+    public AdaptiveConcurrencyController(
+            KafkaListenerEndpointRegistry listenerRegistry,
+            ConsumerLagMonitor lagMonitor,
+            @Qualifier("approvedBatchProcessor") KeyOrderedBatchProcessor approvedProcessor,
+            @Qualifier("notificationBatchProcessor") KeyOrderedBatchProcessor notificationProcessor,
+            MeterRegistry meterRegistry,
+            @Value("${store.consumer.autoscale.interval:10s}") Duration interval,
+            @Value("${store.consumer.autoscale.min-in-flight:16}") int minInFlight,
+            @Value("${store.consumer.autoscale.max-in-flight:500}") int maxInFlight,
+            @Value("${store.consumer.autoscale.high-lag:10000}") long highLag,
+            @Value("${store.consumer.autoscale.low-lag:100}") long lowLag,
+            @Value("${store.consumer.autoscale.max-latency:200ms}") Duration maxLatency,
+            @Value("${store.consumer.autoscale.shed-latency:1s}") Duration shedLatency,
+            @Value("${store.consumer.autoscale.min-pause:30s}") Duration minPause) {
+
+        this.listenerRegistry = listenerRegistry;
+        this.lagMonitor = lagMonitor;
+        // um lote nunca tem mais que max.poll.records registros: acima disso o limite não faz efeito
+        if (maxInFlight > KafkaConsumerConfig.MAX_POLL_RECORDS) {
+            log.warn("max-in-flight {} is above max.poll.records; capping at {}", maxInFlight, KafkaConsumerConfig.MAX_POLL_RECORDS);
+            maxInFlight = KafkaConsumerConfig.MAX_POLL_RECORDS;
+        }
+        this.policy = new ConcurrencyPolicy(minInFlight, maxInFlight, highLag, lowLag,
+                maxLatency.toMillis(), shedLatency.toMillis(), Math.max(1, minInFlight / 2), minPause.toMillis());
+
+        this.lanes = List.of(
+                new Lane("payment-approved", "payment-service-approved-group",
+                        approvedProcessor, meterRegistry),
+                new Lane("payment-notification", "payment-service-notification-group",
+                        notificationProcessor, meterRegistry));
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("adaptive-concurrency").daemon().factory());
+        this.scheduler.scheduleWithFixedDelay(this::adjust,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void adjust() {
+        for (Lane lane : lanes) {
+            try {
+                adjust(lane);
+            } catch (RuntimeException ex) {
+                log.warn("Could not adjust concurrency for {}", lane.name, ex);
+            }
+        }
+    }
+
+    private void adjust(Lane lane) {
+
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(lane.name);
+        if (container == null || !container.isRunning()) {
+            return;
+        }
+
+        long lag = lagMonitor.totalLag(lane.group).orElse(-1);
+        double latencyMillis = lane.sampleLatencyMillis();
+        boolean paused = container.isPauseRequested();
+        long pausedMillis = paused ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lane.pausedSince) : 0;
+
+        ConcurrencyPolicy.Decision decision =
+                policy.decide(lane.processor.maxInFlight(), paused, pausedMillis, lag, latencyMillis);
+
+        if (decision.limit() != lane.processor.maxInFlight()) {
+            lane.processor.setMaxInFlight(decision.limit());
+        }
+        if (decision.paused() && !paused) {
+            lane.pausedSince = System.nanoTime();
+            container.pause();
+        } else if (!decision.paused() && paused) {
+            container.resume();
+        }
+        lane.paused = decision.paused();
+        lane.decisions.get(decision.action()).increment();
+
+        if (decision.action() != ConcurrencyPolicy.Action.HOLD) {
+            log.info("Autoscale {}: {} (limit={}, lag={}, latency={}ms)",
+                    lane.name, decision.action(), decision.limit(), lag,
+                    Double.isNaN(latencyMillis) ? "-" : String.format("%.1f", latencyMillis));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /** Uma lane: container (pelo id do listener) + processor + a latência por intervalo. */
+    private static final class Lane {
+
+        final String name;                              // id do @KafkaListener
+        final String group;
+        final KeyOrderedBatchProcessor processor;
+        final Map<ConcurrencyPolicy.Action, Counter> decisions = new EnumMap<>(ConcurrencyPolicy.Action.class);
+
+        volatile boolean paused;
+        volatile double latencyMillis;
+        long pausedSince = System.nanoTime();           // pausado por fora (sem início conhecido) conta desde a subida
+        private long lastCount;
+        private double lastNanos;
+
+        Lane(String name, String group, KeyOrderedBatchProcessor processor, MeterRegistry registry) {
+            this.name = name;
+            this.group = group;
+            this.processor = processor;
+            this.lastCount = processor.completedRecords();
+            this.lastNanos = processor.handlerNanos();
+
+            for (ConcurrencyPolicy.Action action : ConcurrencyPolicy.Action.values()) {
+                decisions.put(action, Counter.builder("store.consumer.autoscale.decisions")
+                        .tag("lane", name)
+                        .tag("action", action.name().toLowerCase().replace('_', '-'))
+                        .register(registry));
+            }
+            Gauge.builder("store.consumer.autoscale.limit", processor, KeyOrderedBatchProcessor::maxInFlight)
+                    .tag("lane", name)
+                    .description("In-flight record limit chosen by the autoscaler")
+                    .register(registry);
+            Gauge.builder("store.consumer.autoscale.paused", this, lane -> lane.paused ? 1 : 0)
+                    .tag("lane", name)
+                    .register(registry);
+            Gauge.builder("store.consumer.autoscale.latency", this, lane -> lane.latencyMillis)
+                    .tag("lane", name)
+                    .baseUnit("milliseconds")
+                    .description("Mean handler latency over the last autoscale interval")
+                    .register(registry);
+        }
+
+        /** Latência média do handler desde a última amostra; NaN se nada terminou no intervalo. */
+        double sampleLatencyMillis() {
+            long count = processor.completedRecords();
+            double nanos = processor.handlerNanos();
+            long records = count - lastCount;
+            double latency = records > 0 ? (nanos - lastNanos) / records / 1_000_000.0 : Double.NaN;
+            lastCount = count;
+            lastNanos = nanos;
+            latencyMillis = records > 0 ? latency : 0;  // o gauge mostra 0 quando não há amostra
+            return latency;
+        }
+    }
+}
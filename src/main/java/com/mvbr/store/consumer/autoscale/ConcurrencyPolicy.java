@@ -0,0 +1,82 @@
+package com.mvbr.store.consumer.autoscale;
+
+/**
+ * Regra de decisão do {@link AdaptiveConcurrencyController} para uma lane, sem estado:
+ * recebe o limite atual, há quanto tempo está pausada, o lag e a latência média do handler
+ * e devolve o próximo passo.
+ *
+ * <ul>
+ *   <li>latência acima de {@code shedLatencyMillis}: o downstream não está dando conta →
+ *       pausa o container (para de buscar registros) e reduz o limite pela metade;</li>
+ *   <li>latência acima de {@code maxLatencyMillis}: reduz o limite pela metade;</li>
+ *   <li>lag acima de {@code highLag}: dobra o limite (até {@code maxInFlight});</li>
+ *   <li>lag abaixo de {@code lowLag}: reduz o limite em {@code step} (até {@code minInFlight});</li>
+ *   <li>fora disso mantém.</li>
+ * </ul>
+ *
+ * <p>Um container pausado volta quando uma amostra real de latência (registros que terminaram
+ * no intervalo) mostra que normalizou. Pausado, ele logo para de terminar registros e a
+ * latência fica sem amostra ({@link Double#NaN}): isso não é recuperação, então a pausa se
+ * mantém até {@code minPauseMillis} e só então o container volta para testar o downstream
+ * (se ainda estiver lento, a próxima amostra pausa de novo).
+ */
+public record ConcurrencyPolicy(
+        int minInFlight,
+        int maxInFlight,
+        long highLag,
+        long lowLag,
+        double maxLatencyMillis,
+        double shedLatencyMillis,
+        int step,
+        long minPauseMillis
+) {
+
+    public enum Action { HOLD, SCALE_UP, SCALE_DOWN, SHED, RESUME }
+
+    public record Decision(int limit, boolean paused, Action action) {}
+
+    public ConcurrencyPolicy {
+        if (minInFlight < 1 || maxInFlight < minInFlight) {
+            throw new IllegalArgumentException("Invalid in-flight bounds: " + minInFlight + ".." + maxInFlight);
+        }
+        if (lowLag > highLag || shedLatencyMillis < maxLatencyMillis || step < 1 || minPauseMillis < 0) {
+            throw new IllegalArgumentException("Invalid concurrency policy thresholds");
+        }
+    }
+
+    /**
+     * @param pausedMillis    há quanto tempo o container está pausado (ignorado se não está)
+     * @param lag             lag total do grupo (-1 se ainda não há leitura)
+     * @param latencyMillis   latência média do handler no último intervalo
+     *                        ({@link Double#NaN} se nada terminou no intervalo)
+     */
+    public Decision decide(int limit, boolean paused, long pausedMillis, long lag, double latencyMillis) {
+
+        int current = clamp(limit);
+
+        if (paused && Double.isNaN(latencyMillis) && pausedMillis < minPauseMillis) {
+            return new Decision(current, true, Action.HOLD);
+        }
+
+        if (latencyMillis > shedLatencyMillis) {
+            return new Decision(clamp(current / 2), true, paused ? Action.SCALE_DOWN : Action.SHED);
+        }
+        if (latencyMillis > maxLatencyMillis) {
+            return new Decision(clamp(current / 2), false, paused ? Action.RESUME : Action.SCALE_DOWN);
+        }
+        if (paused) {
+            return new Decision(current, false, Action.RESUME);
+        }
+        if (lag > highLag && current < maxInFlight) {
+            return new Decision(clamp(current * 2), false, Action.SCALE_UP);
+        }
+        if (lag >= 0 && lag < lowLag && current > minInFlight) {
+            return new Decision(clamp(current - step), false, Action.SCALE_DOWN);
+        }
+        return new Decision(current, false, Action.HOLD);
+    }
+
+    private int clamp(int limit) {
+        return Math.max(minInFlight, Math.min(maxInFlight, limit));
+    }
+}
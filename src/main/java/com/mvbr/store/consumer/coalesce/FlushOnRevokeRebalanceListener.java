@@ -0,0 +1,52 @@
+package com.mvbr.store.consumer.coalesce;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+
+/**
+ * Antes de entregar o rebalance ao listener original, entrega os lotes pendentes do
+ * {@link NotificationCoalescer} que têm notificações das partições revogadas/perdidas e, no
+ * revoke, commita as partições até onde foi entregue.
+ *
+ * <p>Roda na thread do consumer, depois do último lote do listener e antes do novo dono da
+ * partição começar: o próximo consumer do usuário só entrega depois delas, e o que falhou aqui
+ * não foi commitado e volta para ele.
+ */
+public class FlushOnRevokeRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final NotificationCoalescer coalescer;
+    private final ConsumerAwareRebalanceListener delegate;
+
+    public FlushOnRevokeRebalanceListener(NotificationCoalescer coalescer, ConsumerAwareRebalanceListener delegate) {
+        this.coalescer = coalescer;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        coalescer.flush(partitions);
+        coalescer.commitDelivered(consumer, partitions);
+        delegate.onPartitionsRevokedBeforeCommit(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        delegate.onPartitionsRevokedAfterCommit(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        // perder a partição sem revoke: entregar (talvez em dobro) em vez de perder o lote; o
+        // commit não vale mais para um consumer fora da geração
+        coalescer.flush(partitions);
+        delegate.onPartitionsLost(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        delegate.onPartitionsAssigned(consumer, partitions);
+    }
+}
@@ -0,0 +1,492 @@
+package com.mvbr.store.consumer.coalesce;
+
+import com.mvbr.store.event.PaymentNotificationEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Junta as notificações de cada userId numa janela curta e entrega um lote por usuário ao
+ * {@link NotificationDeliverySink}, em vez de uma chamada por notificação durante uma rajada.
+ *
+ * <p>O lote de um usuário sai quando a notificação mais antiga dele completa {@code window}
+ * (thread de flush), quando chega a {@code max-batch} notificações (na thread do listener) ou
+ * quando a partição de origem é revogada ({@link FlushOnRevokeRebalanceListener}). eventIds
+ * repetidos dentro da janela são descartados.
+ *
+ * <p>Memória limitada: acima de {@code max-buffered} notificações no total, a thread do listener
+ * entrega lotes de outros usuários até voltar à metade do limite (backpressure, não descarte).
+ * O limite é aproximado: cada thread de consumer pode passar dele pelo resto do lote do poll.
+ *
+ * <p>Ordem por usuário: o buffer só sai do mapa depois que a entrega termina, sob o lock do
+ * usuário, então uma notificação nova do mesmo usuário espera o lote anterior ser entregue.
+ * O lock é um {@link ReentrantLock}, não {@code synchronized}: a entrega chama o downstream com
+ * ele na mão e, com virtual threads, um monitor prenderia a carrier thread durante o I/O.
+ *
+ * <p>Falha na entrega: o lote continua no buffer, na frente das notificações novas do usuário,
+ * e volta depois de um backoff exponencial ({@code retry-backoff} até {@code retry-max-backoff}).
+ * O callback {@code onDelivered} de cada notificação (o consumer marca o eventId no dedup) só
+ * roda depois que o lote dela foi entregue. Enquanto o downstream falha o buffer cresce até
+ * {@code max-buffered}; daí as partições de origem são pausadas no container em vez de
+ * descartar. O listener não espera: o poll continua (sem passar de {@code max.poll.interval.ms})
+ * e não traz registros delas até a thread de flush retomar, com o buffer de volta à metade.
+ *
+ * <p>Commit: o container é MANUAL e o consumer commita com {@link #commitDelivered}, que por
+ * partição não passa do offset da primeira notificação ainda no buffer. Revoke e shutdown
+ * tentam entregar o que estiver pendente e commitam até onde foi entregue (um lote que falha no
+ * revoke continua aqui, em retry); no shutdown, o que ainda falhar é descartado e contado, mas
+ * não foi commitado: volta no próximo consumer do grupo, assim como numa queda do processo.
+ */
+@Component
+@ConditionalOnProperty(name = "store.consumer.notifications.coalesce.enabled", havingValue = "true")
+public class NotificationCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationCoalescer.class);
+
+    private static final long MIN_TICK_MILLIS = 5;
+
+    private static final String LISTENER_ID = "payment-notification";   // @KafkaListener do PaymentNotificationConsumer
+
+    enum FlushReason { WINDOW, SIZE, PRESSURE, REVOKE, SHUTDOWN }
+
+    private final NotificationDeliverySink delivery;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final int maxBuffered;
+    private final long retryBackoffNanos;
+    private final long retryMaxBackoffNanos;
+    private final PartitionPauser pauser;
+
+    private final ConcurrentHashMap<String, UserBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    private final Set<TopicPartition> sources = ConcurrentHashMap.newKeySet();  // partições que já mandaram notificação
+    private final Map<TopicPartition, ConcurrentSkipListSet<Long>> undelivered = new ConcurrentHashMap<>();
+    private final Set<TopicPartition> paused = ConcurrentHashMap.newKeySet();   // alterado só com o pauseLock
+    private final ReentrantLock pauseLock = new ReentrantLock();
+
+    private final Counter received;
+    private final Counter merged;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Counter pauses;
+    private final DistributionSummary batchSize;
+    private final Map<FlushReason, Counter> flushes = new EnumMap<>(FlushReason.class);
+    private final ScheduledExecutorService flusher;
+
+    @Autowired
+    public NotificationCoalescer(NotificationDeliverySink delivery,
+                                 @Value("${store.consumer.notifications.coalesce.window:200ms}") Duration window,
+                                 @Value("${store.consumer.notifications.coalesce.max-batch:50}") int maxBatch,
+                                 @Value("${store.consumer.notifications.coalesce.max-buffered:10000}") int maxBuffered,
+                                 @Value("${store.consumer.notifications.coalesce.retry-backoff:1s}") Duration retryBackoff,
+                                 @Value("${store.consumer.notifications.coalesce.retry-max-backoff:30s}") Duration retryMaxBackoff,
+                                 KafkaListenerEndpointRegistry listenerRegistry,
+                                 MeterRegistry meterRegistry) {
+        this(delivery, window, maxBatch, maxBuffered, retryBackoff, retryMaxBackoff,
+                containerPauser(listenerRegistry), meterRegistry);
+    }
+
+    NotificationCoalescer(NotificationDeliverySink delivery, Duration window, int maxBatch, int maxBuffered,
+                          Duration retryBackoff, Duration retryMaxBackoff, PartitionPauser pauser,
+                          MeterRegistry meterRegistry) {
+        if (maxBatch < 1 || maxBuffered < maxBatch) {
+            throw new IllegalArgumentException(
+                    "need 1 <= max-batch <= max-buffered: " + maxBatch + ", " + maxBuffered);
+        }
+        this.delivery = delivery;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+        this.maxBuffered = maxBuffered;
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        this.retryMaxBackoffNanos = Math.max(retryBackoffNanos, retryMaxBackoff.toNanos());
+        this.pauser = pauser;
+
+        this.received = Counter.builder("store.consumer.coalesce.received")
+                .description("Notifications handed to the per-user coalescer")
+                .register(meterRegistry);
+        this.merged = Counter.builder("store.consumer.coalesce.merged")
+                .description("Notifications dropped because the same eventId was already buffered")
+                .register(meterRegistry);
+        this.failed = Counter.builder("store.consumer.coalesce.failed")
+                .description("Notifications in batches whose delivery threw (kept for retry)")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("store.consumer.coalesce.dropped")
+                .description("Notifications still undelivered at shutdown")
+                .register(meterRegistry);
+        this.pauses = Counter.builder("store.consumer.coalesce.pauses")
+                .description("Times the source partitions were paused because the buffer was full")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("store.consumer.coalesce.batch.size")
+                .description("Notifications per delivered batch")
+                .register(meterRegistry);
+        for (FlushReason reason : FlushReason.values()) {
+            flushes.put(reason, Counter.builder("store.consumer.coalesce.flushes")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .description("Batches delivered, by what triggered them")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("store.consumer.coalesce.pending", buffered, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("store.consumer.coalesce.users", buffers, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("store.consumer.coalesce.paused.partitions", paused, Set::size)
+                .register(meterRegistry);
+
+        // tick de meia janela: um lote sai no máximo 1.5 janela depois da primeira notificação
+        long tickMillis = Math.max(MIN_TICK_MILLIS, window.toMillis() / 2);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("notification-coalescer").daemon().factory());
+        flusher.scheduleWithFixedDelay(() -> flushDue(System.nanoTime()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Coloca a notificação no lote do usuário; entrega na hora se o lote encheu (e o usuário não
+     * está em backoff). {@code onDelivered} roda depois que a notificação foi entregue; até lá o
+     * {@code offset} segura o commit da partição.
+     */
+    public void offer(TopicPartition partition, long offset, PaymentNotificationEvent event,
+                      Consumer<PaymentNotificationEvent> onDelivered) {
+        received.increment();
+        sources.add(partition);
+        String userId = Objects.requireNonNullElse(event.userId(), "");
+
+        while (true) {
+            UserBuffer buffer = buffers.computeIfAbsent(userId, UserBuffer::new);
+            buffer.lock.lock();
+            try {
+                if (buffer.closed) {
+                    continue;                             // acabou de ser entregue; pega o novo
+                }
+                if (buffer.contains(event.eventId())) {
+                    merged.increment();
+                    return;
+                }
+                undelivered.computeIfAbsent(partition, tp -> new ConcurrentSkipListSet<>()).add(offset);
+                buffer.add(event, partition, offset, onDelivered);
+                buffered.incrementAndGet();
+                if (buffer.events.size() >= maxBatch && !buffer.backingOff(System.nanoTime())) {
+                    flush(buffer, FlushReason.SIZE);
+                }
+            } finally {
+                buffer.lock.unlock();
+            }
+            break;
+        }
+
+        if (buffered.get() > maxBuffered) {
+            relievePressure();
+        }
+    }
+
+    /** Entrega os lotes dos usuários com notificações das partições (revoke/lost). */
+    public void flush(Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        for (UserBuffer buffer : buffers.values()) {
+            buffer.lock.lock();
+            try {
+                if (!buffer.closed && buffer.touches(partitions)) {
+                    flush(buffer, FlushReason.REVOKE);
+                }
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Na thread do consumer (depois do lote do listener ou no revoke): commita cada partição até a
+     * posição do consumer, ou até a primeira notificação dela ainda no buffer, o que vier antes.
+     * Um commit que falha só atrasa o offset; o que for re-entregue o dedup descarta.
+     */
+    public void commitDelivered(org.apache.kafka.clients.consumer.Consumer<?, ?> consumer,
+                                Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        try {
+            for (TopicPartition partition : partitions) {
+                long offset = consumer.position(partition);
+                ConcurrentSkipListSet<Long> pending = undelivered.get(partition);
+                Long first = pending == null || pending.isEmpty() ? null : pending.first();
+                offsets.put(partition, new OffsetAndMetadata(first == null ? offset : Math.min(offset, first)));
+            }
+            consumer.commitSync(offsets);
+        } catch (KafkaException ex) {
+            log.warn("Could not commit delivered notification offsets {}: {}", offsets, ex.getMessage());
+        }
+    }
+
+    void flushDue(long nowNanos) {
+        for (UserBuffer buffer : buffers.values()) {
+            if (nowNanos - buffer.firstAt < windowNanos || buffer.backingOff(nowNanos)) {
+                continue;
+            }
+            buffer.lock.lock();
+            try {
+                if (!buffer.closed && !buffer.events.isEmpty() && nowNanos - buffer.firstAt >= windowNanos
+                        && !buffer.backingOff(nowNanos)) {
+                    flush(buffer, FlushReason.WINDOW);
+                }
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+        resumeIfRelieved();
+    }
+
+    // sem lock nenhum: entrega lotes (ordem do mapa, não a mais antiga) até voltar à metade do limite
+    private void relievePressure() {
+        int target = maxBuffered / 2;
+        for (UserBuffer buffer : buffers.values()) {
+            if (buffered.get() <= target) {
+                return;
+            }
+            buffer.lock.lock();
+            try {
+                if (!buffer.closed && !buffer.backingOff(System.nanoTime())) {
+                    flush(buffer, FlushReason.PRESSURE);
+                }
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+
+        // o que sobrou está em backoff: pausa as partições de origem e volta para o poll; a
+        // thread de flush retoma quando os retries trouxerem o buffer de volta à metade
+        if (buffered.get() > maxBuffered) {
+            pauseSources();
+        }
+    }
+
+    private void pauseSources() {
+        pauseLock.lock();
+        try {
+            List<TopicPartition> partitions = new ArrayList<>(sources);
+            partitions.removeAll(paused);
+            if (partitions.isEmpty()) {
+                return;
+            }
+            pauser.pause(partitions);
+            paused.addAll(partitions);
+            pauses.increment();
+            log.warn("Notification buffer full ({} pending): pausing {}", buffered.get(), partitions);
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    private void resumeIfRelieved() {
+        if (paused.isEmpty() || buffered.get() > maxBuffered / 2) {
+            return;
+        }
+        pauseLock.lock();
+        try {
+            if (!paused.isEmpty() && buffered.get() <= maxBuffered / 2) {
+                List<TopicPartition> partitions = List.copyOf(paused);
+                pauser.resume(partitions);
+                paused.clear();
+                log.info("Notification buffer relieved ({} pending): resuming {}", buffered.get(), partitions);
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * Chamado com o lock do buffer: entrega em lotes de até {@code max-batch}, na ordem. Se o
+     * sink falhar, o que não foi entregue fica no buffer e agenda o retry; o buffer só sai do
+     * mapa vazio. Devolve false se sobrou notificação.
+     */
+    private boolean flush(UserBuffer buffer, FlushReason reason) {
+        while (!buffer.events.isEmpty()) {
+            int size = Math.min(buffer.events.size(), maxBatch);
+            List<PaymentNotificationEvent> batch = List.copyOf(buffer.events.subList(0, size));
+            flushes.get(reason).increment();
+            batchSize.record(size);
+            try {
+                delivery.deliver(buffer.userId, batch);
+            } catch (RuntimeException ex) {
+                failed.increment(size);
+                long backoff = Math.min(retryMaxBackoffNanos, retryBackoffNanos << Math.min(buffer.attempts, 20));
+                buffer.attempts++;
+                buffer.retryAt = System.nanoTime() + backoff;
+                log.warn("Could not deliver {} notifications of user {} (attempt {}), retrying in {} ms: {}",
+                        size, buffer.userId, buffer.attempts, TimeUnit.NANOSECONDS.toMillis(backoff), ex.getMessage());
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                undelivered.get(buffer.origins.get(i)).remove(buffer.offsets.get(i));
+            }
+            buffer.delivered(size);
+            buffered.addAndGet(-size);
+        }
+        buffer.closed = true;
+        buffers.remove(buffer.userId, buffer);
+        return true;
+    }
+
+    int pending() {
+        return buffered.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // os containers já pararam: o que sobrou no buffer é entregue antes de sair (uma tentativa)
+        for (UserBuffer buffer : buffers.values()) {
+            buffer.lock.lock();
+            try {
+                if (!buffer.closed && !flush(buffer, FlushReason.SHUTDOWN)) {
+                    int lost = buffer.events.size();
+                    dropped.increment(lost);
+                    buffered.addAndGet(-lost);
+                    buffer.closed = true;
+                    buffers.remove(buffer.userId, buffer);
+                    log.warn("Dropping {} undelivered notifications of user {} at shutdown", lost, buffer.userId);
+                }
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+    }
+
+    /** Pausa e retoma partições no container do listener; o pedido vale a partir do próximo poll. */
+    interface PartitionPauser {
+
+        void pause(Collection<TopicPartition> partitions);
+
+        void resume(Collection<TopicPartition> partitions);
+    }
+
+    private static PartitionPauser containerPauser(KafkaListenerEndpointRegistry listenerRegistry) {
+        return new PartitionPauser() {
+            @Override
+            public void pause(Collection<TopicPartition> partitions) {
+                MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+                if (container != null) {
+                    partitions.forEach(container::pausePartition);
+                }
+            }
+
+            @Override
+            public void resume(Collection<TopicPartition> partitions) {
+                MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+                if (container != null) {
+                    partitions.forEach(container::resumePartition);
+                }
+            }
+        };
+    }
+
+    private static final class UserBuffer {
+
+        final String userId;
+        final ReentrantLock lock = new ReentrantLock();
+        final List<PaymentNotificationEvent> events = new ArrayList<>();
+        final List<Consumer<PaymentNotificationEvent>> callbacks = new ArrayList<>();
+        final List<TopicPartition> origins = new ArrayList<>();     // mais de uma partição só com salting
+        final List<Long> offsets = new ArrayList<>();
+        volatile long firstAt;
+        volatile long retryAt;                                      // 0 = sem falha pendente
+        int attempts;
+        boolean closed;
+
+        UserBuffer(String userId) {
+            this.userId = userId;
+            this.firstAt = System.nanoTime();
+        }
+
+        void add(PaymentNotificationEvent event, TopicPartition partition, long offset,
+                 Consumer<PaymentNotificationEvent> onDelivered) {
+            if (events.isEmpty()) {
+                firstAt = System.nanoTime();
+            }
+            events.add(event);
+            callbacks.add(onDelivered);
+            origins.add(partition);
+            offsets.add(offset);
+        }
+
+        /** As {@code count} primeiras foram entregues: avisa os callbacks e tira do buffer. */
+        void delivered(int count) {
+            for (int i = 0; i < count; i++) {
+                callbacks.get(i).accept(events.get(i));
+            }
+            events.subList(0, count).clear();
+            callbacks.subList(0, count).clear();
+            origins.subList(0, count).clear();
+            offsets.subList(0, count).clear();
+            attempts = 0;
+            retryAt = 0;
+        }
+
+        boolean backingOff(long nowNanos) {
+            long at = retryAt;
+            return at != 0 && nowNanos - at < 0;
+        }
+
+        // até max-batch notificações (mais só com o downstream em falha): varredura linear sai
+        // mais barato que um Set
+        boolean contains(String eventId) {
+            if (eventId == null) {
+                return false;
+            }
+            for (PaymentNotificationEvent event : events) {
+                if (eventId.equals(event.eventId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean touches(Collection<TopicPartition> revoked) {
+            for (TopicPartition partition : origins) {
+                if (revoked.contains(partition)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.mvbr.store.consumer.coalesce;
+
+import com.mvbr.store.event.PaymentNotificationEvent;
+
+import java.util.List;
+
+/**
+ * Destino dos lotes montados pelo {@link NotificationCoalescer}: uma chamada por usuário e janela,
+ * e não uma por notificação.
+ *
+ * <p>O padrão repassa cada notificação ao {@code ProcessedEventSink}; para entregar num serviço
+ * externo basta declarar um bean deste tipo. Chamado com o lock do usuário, então lotes do mesmo
+ * usuário nunca se sobrepõem e chegam na ordem de consumo. Uma exceção é contada e logada, e o
+ * lote fica no buffer para ser entregue de novo depois de um backoff (at-least-once: o sink
+ * pode receber de novo parte de um lote que falhou no meio).
+ */
+public interface NotificationDeliverySink {
+
+    /** Notificações do usuário na ordem em que foram consumidas, sem eventIds repetidos. */
+    void deliver(String userId, List<PaymentNotificationEvent> notifications);
+}
@@ -0,0 +1,108 @@
+package com.mvbr.store.consumer.dedup;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Ao receber partições num rebalance, lê os últimos registros antes do offset commitado
+ * e alimenta o {@link EventIdDeduplicator} com os eventIds deles.
+ *
+ * <p>Cobre eventos republicados com o mesmo eventId (replay do produtor / outbox) logo
+ * depois de uma troca de dono da partição, quando o cache local ainda está vazio.
+ * A leitura usa um consumer separado, sem group, e tem tempo máximo: se o broker
+ * não responder, o listener começa com o cache como estiver.
+ */
+public class DeduplicationSeeder implements ConsumerAwareRebalanceListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DeduplicationSeeder.class);
+
+    private final ConsumerFactory<String, Object> consumerFactory;
+    private final EventIdDeduplicator deduplicator;
+    private final Function<Object, String> eventIdExtractor;
+    private final int recordsPerPartition;
+    private final Duration timeout;
+
+    public DeduplicationSeeder(ConsumerFactory<String, Object> consumerFactory,
+                               EventIdDeduplicator deduplicator,
+                               Function<Object, String> eventIdExtractor,
+                               int recordsPerPartition,
+                               Duration timeout) {
+        this.consumerFactory = consumerFactory;
+        this.deduplicator = deduplicator;
+        this.eventIdExtractor = eventIdExtractor;
+        this.recordsPerPartition = recordsPerPartition;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions), timeout);
+            seed(committed);
+        } catch (KafkaException ex) {
+            log.warn("Could not seed eventId deduplication for {}: {}", partitions, ex.getMessage());
+        }
+    }
+
+    private void seed(Map<TopicPartition, OffsetAndMetadata> committed) {
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        try (Consumer<String, Object> reader = consumerFactory.createConsumer(null, "dedup-seed", null, overrides)) {
+
+            Map<TopicPartition, Long> endOffsets = new HashMap<>();
+            committed.forEach((tp, offset) -> {
+                if (offset != null && offset.offset() > 0) {
+                    endOffsets.put(tp, offset.offset());
+                }
+            });
+            if (endOffsets.isEmpty()) {
+                return;
+            }
+
+            reader.assign(endOffsets.keySet());
+            Map<TopicPartition, Long> beginning = reader.beginningOffsets(endOffsets.keySet(), timeout);
+            endOffsets.forEach((tp, end) ->
+                    reader.seek(tp, Math.max(beginning.getOrDefault(tp, 0L), end - recordsPerPartition)));
+
+            long deadline = System.nanoTime() + timeout.toNanos();
+            int seeded = 0;
+
+            while (!endOffsets.isEmpty() && System.nanoTime() < deadline) {
+                for (ConsumerRecord<String, Object> record : reader.poll(Duration.ofMillis(200))) {
+                    TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+                    Long end = endOffsets.get(tp);
+                    if (end != null && record.offset() < end && record.value() != null) {
+                        deduplicator.markProcessed(eventIdExtractor.apply(record.value()));
+                        seeded++;
+                    }
+                }
+                endOffsets.entrySet().removeIf(e -> reader.position(e.getKey()) >= e.getValue());
+                reader.pause(reader.assignment().stream().filter(tp -> !endOffsets.containsKey(tp)).toList());
+            }
+
+            log.info("Seeded eventId deduplication with {} records", seeded);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.mvbr.store.consumer.dedup;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conjunto limitado de eventIds já processados, para descartar re-entregas (at-least-once).
+ *
+ * <p>Os ids ficam em duas gerações de tabelas com endereçamento aberto sobre {@code long[]}:
+ * um UUID vira dois longs (16 bytes por entrada, sem objetos). Inserções vão para a geração
+ * atual; quando ela enche ou passa metade da janela, a anterior é descartada e a atual vira
+ * a anterior. Um id fica lembrado por pelo menos metade da janela e no máximo a janela inteira.
+ *
+ * <p>A geração descartada não é zerada na rotação (seriam ~8MB de {@code Arrays.fill} com o lock
+ * na mão, parando todas as threads do listener): ela vira a reserva e cada chamada zera mais
+ * {@link #CLEAR_CHUNK} posições dela. Como a tabela tem no máximo 8 longs por entrada, a reserva
+ * fica limpa antes da geração atual encher; a rotação só troca referências. Memória fixa:
+ * {@code 3 * capacidade * 2 * 16} bytes.
+ */
+public class EventIdDeduplicator {
+
+    static final int CLEAR_CHUNK = 64;                  // longs zerados da reserva por chamada
+
+    private final int maxEntriesPerGeneration;
+    private final long halfWindowMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Generation current;
+    private Generation previous;
+    private Generation spare;                           // próxima atual; zerada aos poucos
+    private int spareCleared;                           // longs da reserva já zerados
+    private boolean previousExpired;                    // anterior fora da janela: não consultar
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EventIdDeduplicator(int maxEntriesPerGeneration, Duration window) {
+        this.maxEntriesPerGeneration = maxEntriesPerGeneration;
+        this.halfWindowMillis = window.toMillis() / 2;
+        this.current = new Generation(maxEntriesPerGeneration, System.currentTimeMillis());
+        this.previous = new Generation(maxEntriesPerGeneration, System.currentTimeMillis());
+        this.spare = new Generation(maxEntriesPerGeneration, System.currentTimeMillis());
+        this.spareCleared = spare.slots.length;
+    }
+
+    /** true se o eventId já foi processado dentro da janela (conta hit/miss). */
+    public boolean isDuplicate(String eventId) {
+        if (eventId == null) {
+            return false;
+        }
+
+        long msb = mostSignificant(eventId);
+        long lsb = leastSignificant(eventId);
+
+        boolean seen;
+        lock.lock();
+        try {
+            rotateIfNeeded();
+            seen = current.contains(msb, lsb) || (!previousExpired && previous.contains(msb, lsb));
+        } finally {
+            lock.unlock();
+        }
+
+        (seen ? hits : misses).increment();
+        return seen;
+    }
+
+    /** Marca como processado; chamar só depois que o handler terminou com sucesso. */
+    public void markProcessed(String eventId) {
+        if (eventId == null) {
+            return;
+        }
+
+        long msb = mostSignificant(eventId);
+        long lsb = leastSignificant(eventId);
+
+        lock.lock();
+        try {
+            rotateIfNeeded();
+            current.add(msb, lsb);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return current.size + (previousExpired ? 0 : previous.size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // chamado com o lock
+    private void rotateIfNeeded() {
+        clearSpare(CLEAR_CHUNK);
+
+        long now = System.currentTimeMillis();
+        long age = now - current.startedAt;
+
+        if (current.size >= maxEntriesPerGeneration || age >= halfWindowMillis) {
+            // tráfego baixo pode deixar um resto por zerar; com tráfego alto já está limpa
+            clearSpare(spare.slots.length - spareCleared);
+
+            Generation stale = previous;
+            previous = current;
+            current = spare;
+            current.reset(now);
+            spare = stale;
+            spareCleared = 0;
+
+            // ficou parado mais que a janela inteira: a que virou anterior também expirou
+            previousExpired = age >= 2 * halfWindowMillis;
+        }
+    }
+
+    private void clearSpare(int longs) {
+        int to = Math.min(spare.slots.length, spareCleared + longs);
+        if (to > spareCleared) {
+            Arrays.fill(spare.slots, spareCleared, to, 0L);
+            spareCleared = to;
+        }
+    }
+
+    // =============================
+    // eventId → 2 longs
+    // =============================
+    // UUID canônico (36 chars) é convertido sem alocar; outros formatos usam dois hashes de 64 bits.
+
+    static long mostSignificant(String id) {
+        if (isCanonicalUuid(id)) {
+            return (hex(id, 0, 8) << 32) | (hex(id, 9, 13) << 16) | hex(id, 14, 18);
+        }
+        return hash(id, 0x9E3779B97F4A7C15L);
+    }
+
+    static long leastSignificant(String id) {
+        if (isCanonicalUuid(id)) {
+            return (hex(id, 19, 23) << 48) | hex(id, 24, 36);
+        }
+        return hash(id, 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static boolean isCanonicalUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hex(String s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = (value << 4) | Character.digit(s.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static long hash(String s, long seed) {
+        long h = seed;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // =============================
+    // Tabela de uma geração
+    // =============================
+
+    private static final class Generation {
+
+        private final long[] slots;     // pares (msb, lsb); (0, 0) = vazio
+        private final int mask;
+        private int size;
+        private long startedAt;
+
+        Generation(int maxEntries, long startedAt) {
+            int capacity = Integer.highestOneBit(Math.max(2, maxEntries * 2 - 1)) << 1;   // load factor ≤ 0.5
+            this.slots = new long[capacity * 2];
+            this.mask = capacity - 1;
+            this.startedAt = startedAt;
+        }
+
+        boolean contains(long msb, long lsb) {
+            if (msb == 0 && lsb == 0) {
+                lsb = 1;
+            }
+            for (int i = (int) mix(msb ^ lsb) & mask; ; i = (i + 1) & mask) {
+                long m = slots[i * 2];
+                long l = slots[i * 2 + 1];
+                if (m == 0 && l == 0) {
+                    return false;
+                }
+                if (m == msb && l == lsb) {
+                    return true;
+                }
+            }
+        }
+
+        void add(long msb, long lsb) {
+            if (msb == 0 && lsb == 0) {
+                lsb = 1;
+            }
+            for (int i = (int) mix(msb ^ lsb) & mask; ; i = (i + 1) & mask) {
+                long m = slots[i * 2];
+                long l = slots[i * 2 + 1];
+                if (m == 0 && l == 0) {
+                    slots[i * 2] = msb;
+                    slots[i * 2 + 1] = lsb;
+                    size++;
+                    return;
+                }
+                if (m == msb && l == lsb) {
+                    return;
+                }
+            }
+        }
+
+        // slots já zerados pela limpeza incremental da reserva
+        void reset(long now) {
+            size = 0;
+            startedAt = now;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.mvbr.store.consumer.lag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publica o lag (offset final da partição - offset commitado) de cada consumer group
+ * como o gauge {@code store.kafka.consumer.lag{group, topic, partition}}.
+ *
+ * <p>O lag é lido pelo broker (AdminClient) e não pelo consumer, então continua subindo
+ * mesmo com o listener parado ou travado — que é justamente quando ele mais importa.
+ * Partições sem offset commitado não aparecem.
+ *
+ * <p>O total da última leitura de cada grupo fica em {@link #totalLag(String)}
+ * (usado pelo {@code AdaptiveConcurrencyController}).
+ */
+@Component
+public class ConsumerLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerLagMonitor.class);
+
+    private static final List<String> GROUPS = List.of(
+            "payment-service-approved-group",
+            "payment-service-approved-retry-1s-group",
+            "payment-service-approved-retry-10s-group",
+            "payment-service-approved-retry-60s-group",
+            "payment-service-notification-group"
+    );
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Admin admin;
+    private final Map<String, MultiGauge> gauges = new HashMap<>();
+    private final Map<String, Long> totals = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public ConsumerLagMonitor(KafkaAdmin kafkaAdmin,
+                              MeterRegistry meterRegistry,
+                              @Value("${store.kafka.lag.interval:15s}") Duration interval) {
+
+        Map<String, Object> config = new HashMap<>(kafkaAdmin.getConfigurationProperties());
+        config.put(AdminClientConfig.CLIENT_ID_CONFIG, "consumer-lag-monitor");
+        config.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) REQUEST_TIMEOUT.toMillis());
+        config.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) REQUEST_TIMEOUT.toMillis());
+        this.admin = Admin.create(config);
+
+        for (String group : GROUPS) {
+            gauges.put(group, MultiGauge.builder("store.kafka.consumer.lag")
+                    .description("Records between the committed offset and the end of the partition")
+                    .baseUnit("records")
+                    .register(meterRegistry));
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("consumer-lag-monitor").daemon().factory());
+        this.scheduler.scheduleWithFixedDelay(this::refresh,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void refresh() {
+        for (String group : GROUPS) {
+            try {
+                List<MultiGauge.Row<?>> rows = new ArrayList<>();
+                totals.put(group, lagRows(group, rows));
+                gauges.get(group).register(rows, true);
+            } catch (Exception ex) {
+                // broker fora: mantém os últimos valores e tenta de novo no próximo ciclo
+                log.debug("Could not read lag for group {}: {}", group, ex.toString());
+            }
+        }
+    }
+
+    /** Lag somado de todas as partições do grupo na última leitura; vazio se ainda não leu. */
+    public OptionalLong totalLag(String group) {
+        Long total = totals.get(group);
+        return total == null ? OptionalLong.empty() : OptionalLong.of(total);
+    }
+
+    /** Preenche uma linha por partição e devolve o lag total do grupo. */
+    private long lagRows(String group, List<MultiGauge.Row<?>> rows) throws Exception {
+
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(group)
+                .partitionsToOffsetAndMetadata()
+                .get(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        if (committed.isEmpty()) {
+            return 0;
+        }
+
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        committed.keySet().forEach(tp -> request.put(tp, OffsetSpec.latest()));
+
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = admin.listOffsets(request)
+                .all()
+                .get(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        long total = 0;
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+            TopicPartition tp = entry.getKey();
+            OffsetAndMetadata offset = entry.getValue();
+            ListOffsetsResult.ListOffsetsResultInfo end = ends.get(tp);
+            if (offset == null || end == null) {
+                continue;
+            }
+            long lag = Math.max(0, end.offset() - offset.offset());
+            total += lag;
+            rows.add(MultiGauge.Row.of(Tags.of(
+                    "group", group,
+                    "topic", tp.topic(),
+                    "partition", Integer.toString(tp.partition())), lag));
+        }
+        return total;
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        admin.close(Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,216 @@
+package com.mvbr.store.consumer.parallel;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Processa um lote de registros em paralelo (virtual threads) mantendo a ordem por chave.
+ *
+ * <p>Registros com a mesma chave (userId) são encadeados e executam um após o outro;
+ * chaves diferentes rodam em paralelo, mesmo dentro da mesma partição. Registros sem chave
+ * são serializados por partição.
+ *
+ * <p>O lote só termina quando todos os registros terminaram. Se algum falhar, os registros
+ * seguintes da mesma chave não são executados (preserva a ordem na re-entrega) e é lançada
+ * {@link BatchListenerFailedException} para o primeiro registro com falha na ordem do lote:
+ * o error handler commita somente o prefixo contíguo processado de cada partição que vem
+ * antes dele e re-entrega o resto.
+ *
+ * <p>O limite de registros em voo pode ser ajustado com o processor rodando
+ * ({@link #setMaxInFlight}); reduzir o limite não interrompe quem já está em execução.
+ *
+ * <p>Métricas (tag {@code processor}): {@code store.consumer.batch.size},
+ * {@code store.consumer.record.duration} (tag {@code outcome}), {@code store.consumer.in.flight}
+ * e {@code store.consumer.in.flight.limit}.
+ */
+public class KeyOrderedBatchProcessor implements AutoCloseable {
+
+    private final ExecutorService workers;
+    private final ResizableSemaphore inFlight;
+    private volatile int maxInFlight;
+
+    private final DistributionSummary batchSize;
+    private final Timer recordSuccess;
+    private final Timer recordFailure;
+
+    public KeyOrderedBatchProcessor(String name, int maxInFlight) {
+        this(name, maxInFlight, new SimpleMeterRegistry());
+    }
+
+    public KeyOrderedBatchProcessor(String name, int maxInFlight, MeterRegistry registry) {
+        this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-worker-", 0).factory());
+        this.inFlight = new ResizableSemaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+
+        this.batchSize = DistributionSummary.builder("store.consumer.batch.size")
+                .tag("processor", name)
+                .description("Records per listener batch")
+                .register(registry);
+        this.recordSuccess = recordTimer(registry, name, "success");
+        this.recordFailure = recordTimer(registry, name, "failure");
+        registry.gauge("store.consumer.in.flight", List.of(Tag.of("processor", name)),
+                this, p -> p.maxInFlight - p.inFlight.availablePermits());
+        registry.gauge("store.consumer.in.flight.limit", List.of(Tag.of("processor", name)),
+                this, p -> p.maxInFlight);
+    }
+
+    private static Timer recordTimer(MeterRegistry registry, String name, String outcome) {
+        return Timer.builder("store.consumer.record.duration")
+                .tag("processor", name)
+                .tag("outcome", outcome)
+                .description("Handler time per record, excluding wait for same-key predecessors")
+                .register(registry);
+    }
+
+    public <V> void process(List<ConsumerRecord<String, V>> records, Consumer<ConsumerRecord<String, V>> handler) {
+        process(records, ConsumerRecord::key, handler);
+    }
+
+    /**
+     * Como {@link #process(List, Consumer)}, ordenando pela chave que {@code keyOf} devolve
+     * (ex.: a chave sem salt); null = serializa pela partição.
+     */
+    public <V> void process(List<ConsumerRecord<String, V>> records,
+                            Function<ConsumerRecord<String, V>, ?> keyOf,
+                            Consumer<ConsumerRecord<String, V>> handler) {
+
+        batchSize.record(records.size());
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] results = new CompletableFuture[records.size()];
+
+        // última tarefa de cada chave neste lote; uma chave pertence a uma única partição,
+        // então lotes de threads de consumer diferentes nunca compartilham chaves
+        // (exceto chaves com salt: aí a ordem só vale dentro do lote)
+        Map<Object, CompletableFuture<Void>> tails = new HashMap<>();
+
+        for (int i = 0; i < results.length; i++) {
+            ConsumerRecord<String, V> record = records.get(i);
+            Object key = orderingKey(record, keyOf.apply(record));
+            results[i] = submit(tails.get(key), () -> handler.accept(record));
+            tails.put(key, results[i]);
+        }
+
+        // espera o lote inteiro (inclusive as falhas) antes de decidir o commit
+        CompletableFuture.allOf(results).handle((ignored, ex) -> null).join();
+
+        for (int i = 0; i < results.length; i++) {
+            try {
+                results[i].join();
+            } catch (CompletionException ex) {
+                throw new BatchListenerFailedException("Failed to process record in key-ordered batch",
+                        ex.getCause(), records.get(i));
+            }
+        }
+    }
+
+    /**
+     * Agenda a tarefa depois da tarefa anterior da mesma chave (ou imediatamente, se não houver).
+     * Bloqueia o chamador (thread do consumer) quando o limite de tarefas em voo é atingido.
+     */
+    private CompletableFuture<Void> submit(CompletableFuture<Void> previous, Runnable task) {
+
+        inFlight.acquireUninterruptibly();
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Runnable run = () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                recordSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                done.complete(null);
+            } catch (Throwable ex) {
+                recordFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                done.completeExceptionally(ex);
+            }
+        };
+
+        done.whenComplete((ignored, ex) -> inFlight.release());
+
+        if (previous == null) {
+            workers.execute(run);
+        } else {
+            previous.whenComplete((ignored, ex) -> {
+                if (ex != null) {
+                    done.completeExceptionally(new IllegalStateException(
+                            "Skipped: a previous record with the same key failed", ex));
+                } else {
+                    workers.execute(run);
+                }
+            });
+        }
+
+        return done;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /** Muda o limite de registros em voo; com menos permits, novos registros esperam os atuais terminarem. */
+    public synchronized void setMaxInFlight(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + limit);
+        }
+        int delta = limit - maxInFlight;
+        if (delta > 0) {
+            inFlight.release(delta);
+        } else if (delta < 0) {
+            inFlight.reducePermits(-delta);
+        }
+        maxInFlight = limit;
+    }
+
+    /** Registros terminados (sucesso ou falha) desde a criação. */
+    public long completedRecords() {
+        return recordSuccess.count() + recordFailure.count();
+    }
+
+    /** Tempo total de handler (sucesso ou falha) desde a criação, em nanos. */
+    public double handlerNanos() {
+        return recordSuccess.totalTime(TimeUnit.NANOSECONDS) + recordFailure.totalTime(TimeUnit.NANOSECONDS);
+    }
+
+    private static Object orderingKey(ConsumerRecord<String, ?> record, Object key) {
+        return key != null
+                ? key
+                : new TopicPartition(record.topic(), record.partition());
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+
+    /** {@link Semaphore#reducePermits} é protegido; os permits podem ficar negativos até os atuais liberarem. */
+    private static final class ResizableSemaphore extends Semaphore {
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mvbr.store.consumer.retry;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tópicos de retry não bloqueante do {@code payment.approved.v1}.
+ *
+ * <p>Um registro que falha no tópico principal vai para {@code retry-1s}; se falhar de novo,
+ * para {@code retry-10s}, depois {@code retry-60s} e por fim para o DLT. Cada tier é
+ * consumido por um container próprio que pausa até o {@link #NOT_BEFORE_HEADER} do registro,
+ * então o tópico principal nunca espera por um retry.
+ */
+public final class ApprovedRetryTopics {
+
+    public static final String MAIN = "payment.approved.v1";
+    public static final String RETRY_1S = MAIN + ".retry-1s";
+    public static final String RETRY_10S = MAIN + ".retry-10s";
+    public static final String RETRY_60S = MAIN + ".retry-60s";
+    public static final String DLT = MAIN + ".dlt";
+
+    /** Epoch millis (texto) a partir do qual o registro pode ser re-processado. */
+    public static final String NOT_BEFORE_HEADER = "retry-not-before";
+
+    private static final List<Tier> TIERS = List.of(
+            new Tier(RETRY_1S, Duration.ofSeconds(1)),
+            new Tier(RETRY_10S, Duration.ofSeconds(10)),
+            new Tier(RETRY_60S, Duration.ofSeconds(60))
+    );
+
+    private ApprovedRetryTopics() {
+    }
+
+    /** Próximo destino de um registro que falhou em {@code topic}. */
+    public static String nextDestination(String topic) {
+        if (MAIN.equals(topic)) {
+            return TIERS.getFirst().topic();
+        }
+        for (int i = 0; i < TIERS.size() - 1; i++) {
+            if (TIERS.get(i).topic().equals(topic)) {
+                return TIERS.get(i + 1).topic();
+            }
+        }
+        return DLT;
+    }
+
+    /** Atraso do tier; {@link Duration#ZERO} para tópicos que não são de retry. */
+    public static Duration delayOf(String topic) {
+        for (Tier tier : TIERS) {
+            if (tier.topic().equals(topic)) {
+                return tier.delay();
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    /** Quando o registro de retry pode rodar: header gravado no envio ou, sem ele, timestamp + atraso do tier. */
+    public static long notBefore(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(NOT_BEFORE_HEADER);
+        if (header != null) {
+            try {
+                return Long.parseLong(new String(header.value(), StandardCharsets.US_ASCII));
+            } catch (NumberFormatException ignored) {
+                // cai no cálculo pelo timestamp
+            }
+        }
+        return record.timestamp() + delayOf(record.topic()).toMillis();
+    }
+
+    public static List<String> retryTopics() {
+        return TIERS.stream().map(Tier::topic).toList();
+    }
+
+    private record Tier(String topic, Duration delay) {
+    }
+}
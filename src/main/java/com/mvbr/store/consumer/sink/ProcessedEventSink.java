@@ -0,0 +1,16 @@
+package com.mvbr.store.consumer.sink;
+
+/**
+ * Destino dos eventos já processados pelos consumers (log, auditoria, etc.).
+ *
+ * <p>Chamado nas threads de processamento do listener: implementações não devem
+ * bloquear nem fazer I/O síncrono.
+ */
+public interface ProcessedEventSink {
+
+    /** Evento processado com sucesso. */
+    void processed(Object event);
+
+    /** Registro descartado porque o valor não pôde ser desserializado. */
+    void rejected(String topic, int partition, long offset);
+}
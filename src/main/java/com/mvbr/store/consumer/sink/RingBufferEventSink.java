@@ -0,0 +1,183 @@
+package com.mvbr.store.consumer.sink;
+
+import com.mvbr.store.concurrent.MpscRingBuffer;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link ProcessedEventSink} que só enfileira a referência do evento num {@link MpscRingBuffer}
+ * (vários produtores, um consumidor, sem lock) e deixa a formatação e a
+ * escrita para uma única thread de fundo.
+ *
+ * <p>A thread de escrita drena até {@code MAX_BATCH} eventos, monta um único texto e faz
+ * um {@code print} + {@code flush} por lote: o lock do {@link PrintStream} é pego uma vez
+ * por lote e nunca pelas threads do listener.
+ *
+ * <p>Com o buffer cheio, {@link OverflowPolicy#DROP} descarta o evento (e conta) e
+ * {@link OverflowPolicy#BLOCK} espera a thread de escrita liberar espaço.
+ */
+public class RingBufferEventSink implements ProcessedEventSink, AutoCloseable {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final MpscRingBuffer<Object> buffer;
+
+    private final OverflowPolicy policy;
+    private final PrintStream out;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private volatile long written;
+
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    public RingBufferEventSink(int capacity, OverflowPolicy policy, PrintStream out) {
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.policy = policy;
+        this.out = out;
+        this.writer = Thread.ofPlatform().name("processed-event-writer").daemon().start(this::writeLoop);
+    }
+
+    @Override
+    public void processed(Object event) {
+        publish(event);
+    }
+
+    @Override
+    public void rejected(String topic, int partition, long offset) {
+        publish(new Rejected(topic, partition, offset));
+    }
+
+    private void publish(Object entry) {
+        if (running && buffer.offer(entry)) {
+            return;
+        }
+        if (policy == OverflowPolicy.DROP || !running) {
+            dropped.increment();
+            return;
+        }
+        blocked.increment();
+        while (!buffer.offer(entry)) {
+            if (!running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    // =============================
+    // WRITER
+    // =============================
+
+    private void writeLoop() {
+        StringBuilder text = new StringBuilder(MAX_BATCH * 256);
+        while (true) {
+            boolean stopping = !running;
+            int count = drain(text);
+            if (count > 0) {
+                out.print(text);
+                out.flush();
+                text.setLength(0);
+                written += count;
+            } else if (stopping) {
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private int drain(StringBuilder text) {
+        int count = 0;
+        Object entry;
+        while (count < MAX_BATCH && (entry = buffer.poll()) != null) {
+            format(entry, text);
+            count++;
+        }
+        return count;
+    }
+
+    private static void format(Object entry, StringBuilder text) {
+        if (entry instanceof PaymentApprovedEvent event) {
+            text.append("\n===== PAYMENT APPROVED EVENT RECEIVED =====\n")
+                    .append("eventId:   ").append(event.eventId()).append('\n')
+                    .append("paymentId: ").append(event.paymentId()).append('\n')
+                    .append("userId:    ").append(event.userId()).append('\n')
+                    .append("amount:    ").append(event.money()).append('\n')
+                    .append("status:    ").append(event.status()).append('\n')
+                    .append("timestamp: ").append(event.timestamp()).append('\n')
+                    .append("===========================================\n\n");
+        } else if (entry instanceof PaymentNotificationEvent event) {
+            text.append("===== PAYMENT NOTIFICATION RECEIVED =====\n")
+                    .append("eventId:   ").append(event.eventId()).append('\n')
+                    .append("paymentId: ").append(event.paymentId()).append('\n')
+                    .append("userId:    ").append(event.userId()).append('\n')
+                    .append("amount:    ").append(event.money()).append('\n')
+                    .append("message:   ").append(event.message()).append('\n')
+                    .append("timestamp: ").append(event.timestamp()).append('\n')
+                    .append("==========================================\n\n");
+        } else if (entry instanceof Rejected rejected) {
+            text.append("===== DESERIALIZATION ERROR ===== ")
+                    .append(rejected.topic()).append('-').append(rejected.partition())
+                    .append('@').append(rejected.offset())
+                    .append(" - skipping bad message\n");
+        } else {
+            text.append(entry).append('\n');
+        }
+    }
+
+    // =============================
+    // COUNTERS
+    // =============================
+
+    /** Eventos aceitos no buffer. */
+    public long published() {
+        return buffer.published();
+    }
+
+    /** Eventos descartados com o buffer cheio (DROP) ou depois do close. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /** Vezes em que um produtor precisou esperar espaço (BLOCK). */
+    public long blocked() {
+        return blocked.sum();
+    }
+
+    /** Eventos já escritos na saída. */
+    public long written() {
+        return written;
+    }
+
+    /** Eventos no buffer esperando a escrita. */
+    public long pending() {
+        return Math.max(0, published() - written);
+    }
+
+    /** Para de aceitar eventos e espera a escrita do que já está no buffer. */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Rejected(String topic, int partition, long offset) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.mvbr.store.controller;
+
+import com.mvbr.store.consumer.archive.EventArchive;
+import com.mvbr.store.dto.ArchivedEventResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/archive")
+@ConditionalOnProperty(name = "store.archive.enabled", havingValue = "true")
+public class EventArchiveController {
+
+    private static final int MAX_LIMIT = 1_000;
+
+    private final EventArchive eventArchive;
+
+    public EventArchiveController(EventArchive eventArchive) {
+        this.eventArchive = eventArchive;
+    }
+
+    // ========================================================
+    // Eventos processados de um pagamento (aprovação, retries, notificações)
+    // ========================================================
+    // Os `limit` mais recentes, do mais antigo para o mais recente; só o que ainda está na retenção do arquivo.
+    @GetMapping("/payments/{paymentId}")
+    public List<ArchivedEventResponse> paymentEvents(@PathVariable String paymentId,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        return eventArchive.byPaymentId(paymentId, clamp(limit));
+    }
+
+    // Eventos do usuário em [from, to) (epoch millis), do mais recente para o mais antigo.
+    @GetMapping("/users/{userId}")
+    public List<ArchivedEventResponse> userEvents(@PathVariable String userId,
+                                                  @RequestParam(defaultValue = "0") long from,
+                                                  @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                                  @RequestParam(defaultValue = "100") int limit) {
+        return eventArchive.byUserId(userId, from, to, clamp(limit));
+    }
+
+    // ========================================================
+    // Range scan por período (todos os usuários)
+    // ========================================================
+    // Na ordem em que os eventos foram processados.
+    @GetMapping("/events")
+    public List<ArchivedEventResponse> events(@RequestParam long from,
+                                              @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                              @RequestParam(defaultValue = "100") int limit) {
+        return eventArchive.scan(from, to, clamp(limit));
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
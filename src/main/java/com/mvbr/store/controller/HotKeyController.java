@@ -0,0 +1,29 @@
+package com.mvbr.store.controller;
+
+import com.mvbr.store.dto.HotKeyReportResponse;
+import com.mvbr.store.producer.hotkey.HotKeyDetector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/hot-keys")
+public class HotKeyController {
+
+    private final List<HotKeyDetector> detectors;
+
+    public HotKeyController(List<HotKeyDetector> detectors) {
+        this.detectors = detectors;
+    }
+
+    // ========================================================
+    // Chaves quentes e carga por partição (por tópico)
+    // ========================================================
+    // Top-K userIds pelo count-min sketch e registros por partição na janela recente.
+    @GetMapping
+    public List<HotKeyReportResponse> hotKeys() {
+        return detectors.stream().map(HotKeyDetector::report).toList();
+    }
+}
@@ -0,0 +1,49 @@
+package com.mvbr.store.controller;
+
+import com.mvbr.store.consumer.aggregate.PaymentAggregateStore;
+import com.mvbr.store.dto.PaymentAggregateResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/payments/aggregates")
+public class PaymentAggregateController {
+
+    private final PaymentAggregateStore aggregateStore;
+
+    public PaymentAggregateController(PaymentAggregateStore aggregateStore) {
+        this.aggregateStore = aggregateStore;
+    }
+
+    // ========================================================
+    // Totais aprovados por usuário (uma linha por moeda)
+    // ========================================================
+    // Janela deslizante: últimos N minutos, em buckets de 1 minuto.
+    @GetMapping("/users/{userId}")
+    public List<PaymentAggregateResponse> userTotals(@PathVariable String userId,
+                                                     @RequestParam(defaultValue = "60") int minutes) {
+        return aggregateStore.userTotals(userId, minutes);
+    }
+
+    // Janelas fixas (tumbling) de `size` minutos, da mais recente para a mais antiga.
+    @GetMapping("/users/{userId}/windows")
+    public List<PaymentAggregateResponse> userWindows(@PathVariable String userId,
+                                                      @RequestParam(defaultValue = "5") int size,
+                                                      @RequestParam(defaultValue = "12") int count) {
+        return aggregateStore.userWindows(userId, size, count);
+    }
+
+    // ========================================================
+    // Totais aprovados por moeda (todos os usuários)
+    // ========================================================
+    @GetMapping("/currencies/{currency}")
+    public PaymentAggregateResponse currencyTotals(@PathVariable String currency,
+                                                   @RequestParam(defaultValue = "60") int minutes) {
+        return aggregateStore.currencyTotals(currency, minutes);
+    }
+}
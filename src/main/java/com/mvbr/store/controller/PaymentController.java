@@ -2,43 +2,161 @@ package com.mvbr.store.controller;
 
 import com.mvbr.store.dto.PaymentApprovedRequest;
 import com.mvbr.store.dto.PaymentNotificationRequest;
+import com.mvbr.store.dto.PaymentPublishResponse;
+import com.mvbr.store.dto.PaymentResponse;
 import com.mvbr.store.event.PaymentNotificationEvent;
-import com.mvbr.store.model.Payment;
+import com.mvbr.store.model.IllegalPaymentTransitionException;
+import com.mvbr.store.outbox.OutboxNotDurableException;
+import com.mvbr.store.producer.PaymentNotificationProducer;
+import com.mvbr.store.repository.PaymentNotFoundException;
+import com.mvbr.store.repository.PaymentRepository;
+import com.mvbr.store.service.BulkPaymentIngestionService;
+import com.mvbr.store.service.IdempotentPaymentIngress;
+import com.mvbr.store.service.PaymentPublication;
 import com.mvbr.store.service.PaymentService;
+import com.mvbr.store.service.PublishStatusRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final IdempotentPaymentIngress paymentIngress;
+    private final PublishStatusRegistry publishStatusRegistry;
+    private final BulkPaymentIngestionService bulkPaymentIngestionService;
+    private final PaymentRepository paymentRepository;
+    private final PaymentNotificationProducer paymentNotificationProducer;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService,
+                             IdempotentPaymentIngress paymentIngress,
+                             PublishStatusRegistry publishStatusRegistry,
+                             BulkPaymentIngestionService bulkPaymentIngestionService,
+                             PaymentRepository paymentRepository,
+                             PaymentNotificationProducer paymentNotificationProducer) {
         this.paymentService = paymentService;
+        this.paymentIngress = paymentIngress;
+        this.paymentRepository = paymentRepository;
+        this.publishStatusRegistry = publishStatusRegistry;
+        this.bulkPaymentIngestionService = bulkPaymentIngestionService;
+        this.paymentNotificationProducer = paymentNotificationProducer;
     }
 
     // ========================================================
     // 1. Pagamento aprovado — CRÍTICO
     // ========================================================
+    // Re-envios do mesmo paymentId (retry do cliente, clique duplo) passam pelo
+    // IdempotentPaymentIngress: mesma publicação, mesmo eventId, um registro no Kafka.
     @PostMapping("/approved")
     public String publishPaymentApproved(@RequestBody PaymentApprovedRequest req) {
 
-        var payment = new Payment(req.paymentId(), req.userId(), req.amount(), req.currency());
-
-        paymentService.approvePayment(payment);
+        paymentIngress.approvePayment(req.paymentId(), req.userId(), req.money());
 
         return "PaymentApprovedEvent enviado com sucesso!";
 
     }
 
+    // ========================================================
+    // 1.1 Pagamento aprovado — ASSÍNCRONO (responde com o ack)
+    // ========================================================
+    // A thread do Tomcat é liberada logo após o send; a resposta sai quando
+    // o broker confirmar (acks=all), com partition/offset do registro.
+    @PostMapping("/approved/async")
+    public CompletableFuture<ResponseEntity<PaymentPublishResponse>> publishPaymentApprovedAsync(
+            @RequestBody PaymentApprovedRequest req) {
+
+        var publication = paymentIngress.approvePayment(req.paymentId(), req.userId(), req.money());
+
+        return publishStatusRegistry.track(publication)
+                .thenApply(status -> "ACKED".equals(status.status())
+                        ? ResponseEntity.ok(status)
+                        : ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(status));
+    }
+
+    // ========================================================
+    // 1.2 Pagamento aprovado — 202 ACCEPTED + consulta por eventId
+    // ========================================================
+    @PostMapping("/approved/accepted")
+    public ResponseEntity<PaymentPublishResponse> publishPaymentApprovedAccepted(@RequestBody PaymentApprovedRequest req) {
+
+        PaymentPublication publication =
+                paymentIngress.approvePayment(req.paymentId(), req.userId(), req.money());
+        publishStatusRegistry.track(publication);
+
+        String eventId = publication.event().eventId();
+
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/api/payments/approved/" + eventId))
+                .body(publishStatusRegistry.find(eventId).orElseThrow());
+    }
+
+    @GetMapping("/approved/{eventId}")
+    public ResponseEntity<PaymentPublishResponse> getPublishStatus(@PathVariable String eventId) {
+        return ResponseEntity.of(publishStatusRegistry.find(eventId));
+    }
+
+    // ========================================================
+    // 1.3 Pagamento aprovado — BULK (NDJSON ou array JSON)
+    // ========================================================
+    // Um registro por linha na entrada, um resultado por linha na saída (mesma ordem).
+    @PostMapping(value = "/approved/bulk", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public void publishPaymentApprovedBulk(InputStream body, HttpServletResponse response) throws IOException {
+
+        response.setContentType("application/x-ndjson");
+
+        bulkPaymentIngestionService.ingest(body, response.getOutputStream());
+    }
+
+    // ========================================================
+    // 1.4 Consulta e cancelamento
+    // ========================================================
+    @GetMapping("/{paymentId}")
+    public ResponseEntity<PaymentResponse> getPayment(@PathVariable String paymentId) {
+        return ResponseEntity.of(paymentRepository.findById(paymentId).map(PaymentResponse::from));
+    }
+
+    @GetMapping("/users/{userId}")
+    public List<PaymentResponse> getUserPayments(@PathVariable String userId) {
+        return paymentRepository.findByUserId(userId).stream().map(PaymentResponse::from).toList();
+    }
+
+    // 404 se o paymentId não existe; 409 se já foi aprovado (ou cancelado)
+    @PostMapping("/{paymentId}/cancel")
+    public ResponseEntity<PaymentResponse> cancelPayment(@PathVariable String paymentId) {
+        if (paymentRepository.findById(paymentId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(PaymentResponse.from(paymentService.cancelPayment(paymentId)));
+        } catch (IllegalPaymentTransitionException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(paymentRepository.findById(paymentId).map(PaymentResponse::from).orElse(null));
+        }
+    }
+
     // ========================================================
     // 2. Notificação de pagamento — DEFAULT PRODUCER
     // ========================================================
+    // A chave é o userId, salgada pelo HotKeySalter quando o usuário está quente.
     @PostMapping("/notify")
     public String sendPaymentNotification(@RequestBody PaymentNotificationRequest req) {
 
@@ -46,14 +164,42 @@ public class PaymentController {
                 UUID.randomUUID().toString(),
                 req.paymentId(),
                 req.userId(),
-                req.amount(),
+                req.money(),
                 req.message(),
                 System.currentTimeMillis()
         );
 
-//        paymentNotificationProducer.sendPaymentNotification(event);
+        paymentNotificationProducer.sendPaymentNotification(event);
 
         return "PaymentNotificationEvent enviado com sucesso!";
     }
 
+    // ========================================================
+    // 3. Erros das regras de pagamento
+    // ========================================================
+    // Sem isso viram 500: transição recusada (ex.: aprovar um cancelado) → 409,
+    // paymentId desconhecido → 404, pedido inválido ou paymentId com outros dados → 400.
+    @ExceptionHandler(IllegalPaymentTransitionException.class)
+    public ResponseEntity<String> handleIllegalTransition(IllegalPaymentTransitionException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(PaymentNotFoundException.class)
+    public ResponseEntity<String> handlePaymentNotFound(PaymentNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+
+    // fsync do outbox não confirmou: o cliente repete (mesmo eventId, deduplicado downstream)
+    @ExceptionHandler(OutboxNotDurableException.class)
+    public ResponseEntity<String> handleNotDurable(OutboxNotDurableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidPayment(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
 }
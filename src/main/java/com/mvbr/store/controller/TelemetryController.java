@@ -0,0 +1,37 @@
+package com.mvbr.store.controller;
+
+import com.mvbr.store.telemetry.TelemetryEvent;
+import com.mvbr.store.telemetry.TelemetryLane;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/telemetry")
+public class TelemetryController {
+
+    private final TelemetryLane telemetryLane;
+
+    public TelemetryController(TelemetryLane telemetryLane) {
+        this.telemetryLane = telemetryLane;
+    }
+
+    // ========================================================
+    // Telemetria — FIRE-AND-FORGET
+    // ========================================================
+    // Só enfileira: 202 se aceito, 503 se a fila estava cheia (evento descartado).
+    @PostMapping
+    public ResponseEntity<Void> emit(@RequestBody TelemetryEvent event) {
+
+        TelemetryEvent stamped = event.timestamp() > 0
+                ? event
+                : new TelemetryEvent(event.type(), event.key(), event.attributes(), System.currentTimeMillis());
+
+        return telemetryLane.emit(stamped)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+}
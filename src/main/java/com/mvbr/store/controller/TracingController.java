@@ -0,0 +1,42 @@
+package com.mvbr.store.controller;
+
+import com.mvbr.store.dto.StageLatencyResponse;
+import com.mvbr.store.tracing.PaymentTracer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/tracing")
+public class TracingController {
+
+    private final PaymentTracer paymentTracer;
+
+    public TracingController(PaymentTracer paymentTracer) {
+        this.paymentTracer = paymentTracer;
+    }
+
+    // ========================================================
+    // Latência por trecho (pagamentos amostrados)
+    // ========================================================
+    // p50/p90/p99/max das últimas amostras de cada trecho, em microssegundos.
+    @GetMapping("/latency")
+    public List<StageLatencyResponse> latency() {
+        return paymentTracer.recorder().snapshot();
+    }
+
+    // 0 desliga; 0.01 = 1% dos requests
+    @PutMapping("/sample-rate")
+    public ResponseEntity<Double> setSampleRate(@RequestParam double rate) {
+        if (rate < 0 || rate > 1) {
+            return ResponseEntity.badRequest().body(paymentTracer.sampleRate());
+        }
+        paymentTracer.setSampleRate(rate);
+        return ResponseEntity.ok(paymentTracer.sampleRate());
+    }
+}
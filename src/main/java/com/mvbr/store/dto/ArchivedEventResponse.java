@@ -0,0 +1,10 @@
+package com.mvbr.store.dto;
+
+public record ArchivedEventResponse(
+        long position,        // posição no arquivo local
+        long archivedAt,      // epoch millis em que o consumer processou
+        String topic,
+        int partition,
+        long offset,
+        Object event          // PaymentApprovedEvent ou PaymentNotificationEvent
+) {}
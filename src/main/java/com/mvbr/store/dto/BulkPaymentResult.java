@@ -0,0 +1,11 @@
+package com.mvbr.store.dto;
+
+public record BulkPaymentResult(
+        long index,           // posição do registro no corpo (0-based)
+        String paymentId,
+        String eventId,
+        String status,        // ACKED | FAILED | REJECTED
+        Integer partition,
+        Long offset,
+        String error
+) {}
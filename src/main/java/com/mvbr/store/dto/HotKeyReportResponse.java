@@ -0,0 +1,19 @@
+package com.mvbr.store.dto;
+
+import java.util.List;
+
+public record HotKeyReportResponse(
+        String topic,
+        long records,                  // registros confirmados na janela (com decaimento)
+        double skew,                   // partição mais carregada / média (1.0 = equilibrado)
+        List<Long> partitionRecords,   // índice = partição
+        List<HotKey> hotKeys           // top-K, mais frequente primeiro
+) {
+
+    public record HotKey(
+            String key,
+            long estimate,             // count-min: nunca abaixo do real
+            double share,              // estimate / records
+            boolean hot                // acima de store.kafka.hot-keys.hot-share
+    ) {}
+}
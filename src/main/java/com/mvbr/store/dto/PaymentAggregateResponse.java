@@ -0,0 +1,12 @@
+package com.mvbr.store.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.mvbr.store.model.Money;
+
+public record PaymentAggregateResponse(
+        String userId,        // null nas consultas por moeda
+        long windowStart,     // epoch millis (inclusivo)
+        long windowEnd,       // epoch millis (exclusivo)
+        long count,
+        @JsonUnwrapped Money money        // JSON: "amount" + "currency"
+) {}
@@ -1,10 +1,22 @@
 package com.mvbr.store.dto;
 
-import java.math.BigDecimal;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.mvbr.store.model.Money;
 
 public record PaymentApprovedRequest(
         String paymentId,
         String userId,
-        BigDecimal amount,
-        String currency
-) {}
+        @JsonUnwrapped Money money        // JSON: "amount" + "currency"
+) {
+
+    // mesmo formato, sem o buffer de tokens do @JsonUnwrapped (caminho do bulk)
+    @JsonCreator
+    static PaymentApprovedRequest fromJson(@JsonProperty("paymentId") String paymentId,
+                                           @JsonProperty("userId") String userId,
+                                           @JsonProperty("amount") String amount,
+                                           @JsonProperty("currency") String currency) {
+        return new PaymentApprovedRequest(paymentId, userId, Money.parseOrNull(amount, currency));
+    }
+}
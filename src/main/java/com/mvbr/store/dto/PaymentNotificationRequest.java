@@ -1,8 +1,11 @@
 package com.mvbr.store.dto;
 
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.mvbr.store.model.Money;
+
 public record PaymentNotificationRequest(
         String paymentId,
         String userId,
-        double amount,
+        @JsonUnwrapped Money money,       // JSON: "amount" + "currency"
         String message
-) {}
\ No newline at end of file
+) {}
@@ -0,0 +1,10 @@
+package com.mvbr.store.dto;
+
+public record PaymentPublishResponse(
+        String eventId,
+        String paymentId,
+        String status,        // PENDING | ACKED | FAILED
+        Integer partition,
+        Long offset,
+        String error
+) {}
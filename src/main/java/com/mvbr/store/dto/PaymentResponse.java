@@ -0,0 +1,19 @@
+package com.mvbr.store.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.mvbr.store.model.Money;
+import com.mvbr.store.model.Payment;
+
+public record PaymentResponse(
+        String paymentId,
+        String userId,
+        @JsonUnwrapped Money money,       // JSON: "amount" + "currency"
+        String status,        // PENDING | APPROVED | CANCELED
+        long createdAt
+) {
+
+    public static PaymentResponse from(Payment payment) {
+        return new PaymentResponse(payment.getPaymentId(), payment.getUserId(), payment.getAmount(),
+                payment.getStatus().name(), payment.getCreatedAt());
+    }
+}
@@ -0,0 +1,12 @@
+package com.mvbr.store.dto;
+
+public record StageLatencyResponse(
+        String stage,
+        String description,
+        long samples,           // amostras no ring (no máximo o tamanho do ring)
+        long totalRecorded,     // desde a subida
+        double p50Micros,
+        double p90Micros,
+        double p99Micros,
+        double maxMicros
+) {}
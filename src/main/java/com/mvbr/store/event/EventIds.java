@@ -0,0 +1,50 @@
+package com.mvbr.store.event;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Gerador de eventId: UUID v7 (RFC 9562) — 48 bits de epoch em ms + 74 bits aleatórios.
+ *
+ * <p>Usa {@link ThreadLocalRandom} em vez do {@code SecureRandom} compartilhado do
+ * {@link UUID#randomUUID()} (que sincroniza e aloca o array de 16 bytes). Os ids ficam
+ * ordenados por tempo e continuam no formato canônico, então o
+ * {@link com.mvbr.store.consumer.dedup.EventIdDeduplicator} ainda os guarda como dois longs.
+ * Não servem como segredo/token: só identificam eventos.
+ */
+public final class EventIds {
+
+    private EventIds() {
+    }
+
+    public static String next() {
+        long epochMillis = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long msb = (epochMillis << 16)
+                | 0x7000L                                   // versão 7
+                | (random.nextLong() & 0x0FFFL);            // rand_a (12 bits)
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL)
+                | 0x8000000000000000L;                      // variante RFC (10xx)
+
+        return new UUID(msb, lsb).toString();
+    }
+
+    /**
+     * UUID v7 determinístico: o tempo vem de {@code epochMillis} e os bits "aleatórios" de um
+     * hash de {@code key}. Republicar o mesmo fato (ex.: a aprovação de um paymentId) gera o
+     * mesmo eventId, então o dedup do consumer descarta a cópia.
+     */
+    public static String of(String key, long epochMillis) {
+        UUID hash = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+
+        long msb = (epochMillis << 16)
+                | 0x7000L
+                | (hash.getMostSignificantBits() & 0x0FFFL);
+        long lsb = (hash.getLeastSignificantBits() & 0x3FFFFFFFFFFFFFFFL)
+                | 0x8000000000000000L;
+
+        return new UUID(msb, lsb).toString();
+    }
+}
@@ -5,14 +5,29 @@ package com.mvbr.store.event;
 // timestamp → ótima prática para rastreamento temporal
 // Simples, enxuto, versionável
 
-import java.math.BigDecimal;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.mvbr.store.model.Money;
 
 public record PaymentApprovedEvent(
         String eventId,
         String paymentId,
         String userId,
-        BigDecimal amount,
-        String currency,
+        @JsonUnwrapped Money money,       // JSON: "amount" + "currency"
         String status,
-        Long timestamp
-) {}
+        long timestamp
+) {
+
+    /** JSON achatado ({@code amount} + {@code currency}) sem o buffer de tokens do {@code @JsonUnwrapped}. */
+    @JsonCreator
+    static PaymentApprovedEvent fromJson(@JsonProperty("eventId") String eventId,
+                                         @JsonProperty("paymentId") String paymentId,
+                                         @JsonProperty("userId") String userId,
+                                         @JsonProperty("amount") String amount,
+                                         @JsonProperty("currency") String currency,
+                                         @JsonProperty("status") String status,
+                                         @JsonProperty("timestamp") long timestamp) {
+        return new PaymentApprovedEvent(eventId, paymentId, userId, Money.parseOrNull(amount, currency), status, timestamp);
+    }
+}
@@ -1,10 +1,28 @@
 package com.mvbr.store.event;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.mvbr.store.model.Money;
+
 public record PaymentNotificationEvent(
         String eventId,
         String paymentId,
         String userId,
-        double amount,
+        @JsonUnwrapped Money money,       // JSON: "amount" + "currency"
         String message,
         long timestamp
-) {}
\ No newline at end of file
+) {
+
+    /** JSON achatado ({@code amount} + {@code currency}) sem o buffer de tokens do {@code @JsonUnwrapped}. */
+    @JsonCreator
+    static PaymentNotificationEvent fromJson(@JsonProperty("eventId") String eventId,
+                                             @JsonProperty("paymentId") String paymentId,
+                                             @JsonProperty("userId") String userId,
+                                             @JsonProperty("amount") String amount,
+                                             @JsonProperty("currency") String currency,
+                                             @JsonProperty("message") String message,
+                                             @JsonProperty("timestamp") long timestamp) {
+        return new PaymentNotificationEvent(eventId, paymentId, userId, Money.parseOrNull(amount, currency), message, timestamp);
+    }
+}
@@ -0,0 +1,85 @@
+package com.mvbr.store.event.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Leitura do formato escrito por {@link BinaryWriter}.
+ */
+final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() {
+        checkAvailable(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    long readZigZagLong() {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        checkAvailable(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    BigDecimal readDecimal() {
+        long header = readVarLong() - 1;
+        if (header < 0) {
+            return null;
+        }
+
+        boolean big = (header & 1) == 1;
+        int zigZagScale = (int) (header >>> 1);
+        int scale = (zigZagScale >>> 1) ^ -(zigZagScale & 1);
+
+        if (big) {
+            int length = readVarInt();
+            checkAvailable(length);
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return new BigDecimal(new BigInteger(bytes), scale);
+        }
+
+        return BigDecimal.valueOf(readZigZagLong(), scale);
+    }
+
+    // length vem do próprio payload: comparado com o que sobra, não com position + length,
+    // que estoura int quando o campo está corrompido
+    private void checkAvailable(int length) {
+        if (length < 0 || length > buffer.length - position) {
+            throw new IllegalArgumentException("Truncated binary event");
+        }
+    }
+}
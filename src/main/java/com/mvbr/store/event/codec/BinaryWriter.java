@@ -0,0 +1,117 @@
+package com.mvbr.store.event.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Buffer de escrita do codec binário: varints, strings com prefixo de tamanho e decimais compactos.
+ */
+final class BinaryWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    void writeZigZagLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /** Tamanho + 1 (0 = null); strings ASCII são copiadas sem passar pelo encoder UTF-8. */
+    void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        int length = value.length();
+        int start = position;
+        ensureCapacity(5 + length);
+        writeVarInt(length + 1);
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                position = start;
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(utf8.length + 1);
+                writeBytes(utf8);
+                return;
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    /**
+     * Decimal = cabeçalho (0 = null; senão zigzag(scale) << 1 | big, + 1) + valor não escalado.
+     * O caso comum (unscaled cabe em um long) vira um varint de poucos bytes.
+     * Formato do layout 1 dos eventos; o layout 2 grava {@code Money} em unidades mínimas.
+     */
+    void writeDecimal(BigDecimal value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        BigInteger unscaled = value.unscaledValue();
+        int scale = value.scale();
+        boolean big = unscaled.bitLength() > 63;
+
+        long zigZagScale = ((scale << 1) ^ (scale >> 31)) & 0xFFFFFFFFL;
+        writeVarLong(((zigZagScale << 1) | (big ? 1 : 0)) + 1);
+
+        if (big) {
+            byte[] bytes = unscaled.toByteArray();
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        } else {
+            writeZigZagLong(unscaled.longValue());
+        }
+    }
+
+    void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /** Volta para o início reaproveitando o buffer; buffers que cresceram demais são descartados. */
+    void reset(int maxRetainedCapacity, int initialCapacity) {
+        position = 0;
+        if (buffer.length > maxRetainedCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
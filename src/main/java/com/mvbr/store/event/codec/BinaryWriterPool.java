@@ -0,0 +1,37 @@
+package com.mvbr.store.event.codec;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool de {@link BinaryWriter} para o encode não alocar (e crescer) um buffer por evento.
+ *
+ * <p>Um slot por faixa de thread id, sem lock: {@code acquire} tira o writer do slot e
+ * {@code release} devolve. Se o slot estiver vazio (outra thread usando), cria um writer
+ * novo, que é devolvido se houver espaço ou descartado. Funciona igual para platform e
+ * virtual threads, ao contrário de um {@code ThreadLocal}.
+ */
+final class BinaryWriterPool {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final int SLOTS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    private static final AtomicReferenceArray<BinaryWriter> POOL = new AtomicReferenceArray<>(SLOTS);
+
+    private BinaryWriterPool() {
+    }
+
+    static BinaryWriter acquire() {
+        BinaryWriter writer = POOL.getAndSet(slot(), null);
+        return writer != null ? writer : new BinaryWriter(INITIAL_CAPACITY);
+    }
+
+    static void release(BinaryWriter writer) {
+        writer.reset(MAX_RETAINED_CAPACITY, INITIAL_CAPACITY);
+        POOL.compareAndSet(slot(), null, writer);
+    }
+
+    private static int slot() {
+        return (int) (Thread.currentThread().threadId() & (SLOTS - 1));
+    }
+}
@@ -0,0 +1,28 @@
+package com.mvbr.store.event.codec;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header {@code schema-version} que decide o formato do payload.
+ * v1 = JSON (com header de tipo), v2 = {@link PaymentEventCodec binário}.
+ */
+public final class EventSchema {
+
+    public static final String HEADER = "schema-version";
+
+    public static final String JSON_V1 = "v1";
+    public static final String BINARY_V2 = "v2";
+
+    static final byte[] JSON_V1_BYTES = JSON_V1.getBytes(StandardCharsets.UTF_8);
+    static final byte[] BINARY_V2_BYTES = BINARY_V2.getBytes(StandardCharsets.UTF_8);
+
+    /** Headers prontos, compartilhados entre registros (o valor nunca é alterado). */
+    public static final Header JSON_V1_HEADER = new RecordHeader(HEADER, JSON_V1_BYTES);
+    public static final Header BINARY_V2_HEADER = new RecordHeader(HEADER, BINARY_V2_BYTES);
+
+    private EventSchema() {
+    }
+}
@@ -0,0 +1,157 @@
+package com.mvbr.store.event.codec;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.model.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Codec binário dos eventos de pagamento (schema-version v2).
+ *
+ * <p>Layout: [tipo][versão do layout][campos na ordem do record].
+ * O byte de tipo substitui o header {@code __TypeId__} do JSON; o byte de versão
+ * permite evoluir os campos sem trocar o header.
+ *
+ * <p>Layout 2: valor como {@link Money} (zigzag das unidades mínimas + código da moeda).
+ * O layout 1 (decimal com escala; notificação com double e sem moeda) ainda é lido para
+ * os aprovados já publicados; notificação v1 não tem moeda e é recusada.
+ */
+public final class PaymentEventCodec {
+
+    static final int TYPE_PAYMENT_APPROVED = 1;
+    static final int TYPE_PAYMENT_NOTIFICATION = 2;
+
+    static final int LAYOUT_V1 = 1;
+    static final int LAYOUT_V2 = 2;
+
+    private PaymentEventCodec() {
+    }
+
+    public static boolean supports(Object event) {
+        return event instanceof PaymentApprovedEvent || event instanceof PaymentNotificationEvent;
+    }
+
+    /** Codifica num buffer do {@link BinaryWriterPool}; a única alocação é o {@code byte[]} retornado. */
+    public static byte[] encode(Object event) {
+        BinaryWriter writer = BinaryWriterPool.acquire();
+        try {
+            switch (event) {
+                case PaymentApprovedEvent approved -> writeApproved(writer, approved);
+                case PaymentNotificationEvent notification -> writeNotification(writer, notification);
+                default -> throw new IllegalArgumentException("Unsupported event type: " + event.getClass().getName());
+            }
+
+            return writer.toByteArray();
+        } finally {
+            BinaryWriterPool.release(writer);
+        }
+    }
+
+    public static Object decode(byte[] data) {
+        BinaryReader reader = new BinaryReader(data);
+
+        int type = reader.readByte();
+        int layout = reader.readByte();
+        if (layout == LAYOUT_V1 && type == TYPE_PAYMENT_APPROVED) {
+            return readApprovedV1(reader);
+        }
+        if (layout != LAYOUT_V2) {
+            throw new IllegalArgumentException("Unsupported binary layout version " + layout + " for type " + type);
+        }
+
+        return switch (type) {
+            case TYPE_PAYMENT_APPROVED -> readApproved(reader);
+            case TYPE_PAYMENT_NOTIFICATION -> readNotification(reader);
+            default -> throw new IllegalArgumentException("Unknown binary event type: " + type);
+        };
+    }
+
+    // =============================
+    // PaymentApprovedEvent
+    // =============================
+
+    private static void writeApproved(BinaryWriter writer, PaymentApprovedEvent event) {
+        writer.writeByte(TYPE_PAYMENT_APPROVED);
+        writer.writeByte(LAYOUT_V2);
+        writer.writeString(event.eventId());
+        writer.writeString(event.paymentId());
+        writer.writeString(event.userId());
+        writeMoney(writer, event.money());
+        writer.writeString(event.status());
+        writer.writeVarLong(event.timestamp());
+    }
+
+    private static PaymentApprovedEvent readApproved(BinaryReader reader) {
+        return new PaymentApprovedEvent(
+                reader.readString(),
+                reader.readString(),
+                reader.readString(),
+                readMoney(reader),
+                reader.readString(),
+                reader.readVarLong()
+        );
+    }
+
+    /** Layout 1: decimal + moeda + status + byte de presença + timestamp. */
+    private static PaymentApprovedEvent readApprovedV1(BinaryReader reader) {
+        String eventId = reader.readString();
+        String paymentId = reader.readString();
+        String userId = reader.readString();
+        BigDecimal amount = reader.readDecimal();
+        String currency = reader.readString();
+        return new PaymentApprovedEvent(
+                eventId,
+                paymentId,
+                userId,
+                amount == null ? null : Money.of(amount, currency),
+                reader.readString(),
+                reader.readByte() == 0 ? 0L : reader.readVarLong()
+        );
+    }
+
+    // =============================
+    // PaymentNotificationEvent
+    // =============================
+
+    private static void writeNotification(BinaryWriter writer, PaymentNotificationEvent event) {
+        writer.writeByte(TYPE_PAYMENT_NOTIFICATION);
+        writer.writeByte(LAYOUT_V2);
+        writer.writeString(event.eventId());
+        writer.writeString(event.paymentId());
+        writer.writeString(event.userId());
+        writeMoney(writer, event.money());
+        writer.writeString(event.message());
+        writer.writeVarLong(event.timestamp());
+    }
+
+    private static PaymentNotificationEvent readNotification(BinaryReader reader) {
+        return new PaymentNotificationEvent(
+                reader.readString(),
+                reader.readString(),
+                reader.readString(),
+                readMoney(reader),
+                reader.readString(),
+                reader.readVarLong()
+        );
+    }
+
+    // =============================
+    // Money
+    // =============================
+
+    /** Código da moeda (null = sem valor) + zigzag das unidades mínimas. */
+    private static void writeMoney(BinaryWriter writer, Money money) {
+        if (money == null) {
+            writer.writeString(null);
+            return;
+        }
+        writer.writeString(money.currencyCode());
+        writer.writeZigZagLong(money.minorUnits());
+    }
+
+    private static Money readMoney(BinaryReader reader) {
+        String currency = reader.readString();
+        return currency == null ? null : Money.ofMinor(reader.readZigZagLong(), currency);
+    }
+}
@@ -0,0 +1,47 @@
+package com.mvbr.store.event.codec;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Escolhe o formato pelo header {@code schema-version}: v2 → codec binário,
+ * qualquer outro valor (ou ausente) → {@link JsonDeserializer} com as configs de sempre.
+ */
+public class VersionedEventDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return json.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        Header version = headers.lastHeader(EventSchema.HEADER);
+        if (version != null && Arrays.equals(version.value(), EventSchema.BINARY_V2_BYTES)) {
+            return PaymentEventCodec.decode(data);
+        }
+
+        return json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,80 @@
+package com.mvbr.store.event.codec;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+/**
+ * Serializer dos eventos de pagamento: binário (v2) quando habilitado, JSON (v1) caso contrário.
+ *
+ * <p>Grava o header {@code schema-version} com o formato realmente usado, então o
+ * {@link VersionedEventDeserializer} aceita os dois formatos durante o rollout.
+ * Tipos sem codec binário continuam indo por JSON.
+ */
+public class VersionedEventSerializer implements Serializer<Object> {
+
+    /** Liga o codec binário (default: false → JSON). */
+    public static final String BINARY_ENABLED = "store.codec.binary.enabled";
+
+    private final JsonSerializer<Object> json = new JsonSerializer<>();
+
+    private boolean binaryEnabled;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+        Object enabled = configs.get(BINARY_ENABLED);
+        this.binaryEnabled = enabled != null && Boolean.parseBoolean(enabled.toString());
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data instanceof byte[] raw) {
+            return raw;
+        }
+        return json.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+
+        // registro re-publicado como bytes (ex.: DLT de um valor que não desserializou)
+        if (data instanceof byte[] raw) {
+            return raw;
+        }
+
+        if (binaryEnabled && PaymentEventCodec.supports(data)) {
+            setSchemaVersion(headers, EventSchema.BINARY_V2_HEADER);
+            headers.remove(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+            return PaymentEventCodec.encode(data);
+        }
+
+        if (PaymentEventCodec.supports(data)) {
+            setSchemaVersion(headers, EventSchema.JSON_V1_HEADER);
+        }
+        return json.serialize(topic, headers, data);
+    }
+
+    private static void setSchemaVersion(Headers headers, Header version) {
+        Header current = headers.lastHeader(EventSchema.HEADER);
+        if (current == version) {
+            return;                                     // header compartilhado já presente
+        }
+        if (current != null) {
+            headers.remove(EventSchema.HEADER);
+        }
+        headers.add(version);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
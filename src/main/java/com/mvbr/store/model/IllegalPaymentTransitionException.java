@@ -0,0 +1,9 @@
+package com.mvbr.store.model;
+
+/** Mudança de status que o pagamento não aceita (ex.: aprovar um cancelado). */
+public class IllegalPaymentTransitionException extends IllegalStateException {
+
+    public IllegalPaymentTransitionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,267 @@
+package com.mvbr.store.model;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Valor monetário em ponto fixo: unidades mínimas da moeda num {@code long}
+ * (centavos para BRL, ienes para JPY) + a moeda ISO 4217.
+ *
+ * <p>A moeda é sempre a instância única de {@link Currency} do código; a busca pelo
+ * texto recebido (em qualquer caixa) passa por um cache, então não há {@code toUpperCase}
+ * nem validação repetida por pagamento. Soma, comparação e serialização são operações
+ * sobre {@code long}, sem {@link BigDecimal}.
+ *
+ * <p>Em JSON continua "achatado" como antes: {@code "amount": 10.50, "currency": "BRL"}
+ * (use {@code @JsonUnwrapped} no campo que guarda o {@code Money}).
+ */
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        fieldVisibility = JsonAutoDetect.Visibility.NONE)
+public final class Money implements Comparable<Money> {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    // texto recebido (ex.: "brl", "BRL") → Currency; só códigos válidos entram, então é limitado
+    private static final ConcurrentHashMap<String, Currency> CURRENCIES = new ConcurrentHashMap<>();
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    // =============================
+    // CRIAÇÃO
+    // =============================
+
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        if (currency == null)
+            throw new IllegalArgumentException("currency cannot be null or empty");
+
+        return new Money(minorUnits, currency);
+    }
+
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, currency(currencyCode));
+    }
+
+    /** Valor exato: casas decimais além das da moeda (ex.: 10.555 BRL) são recusadas. */
+    public static Money of(BigDecimal amount, String currencyCode) {
+        if (amount == null)
+            throw new IllegalArgumentException("amount cannot be null");
+
+        Currency currency = currency(currencyCode);
+        try {
+            return new Money(amount.setScale(scale(currency)).unscaledValue().longValueExact(), currency);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("amount " + amount.toPlainString() + " is not representable in "
+                    + currency.getCurrencyCode());
+        }
+    }
+
+    /**
+     * Lê o texto decimal ({@code "10"}, {@code "-10.5"}, {@code "10.50"}) direto para unidades
+     * mínimas; notação científica e afins caem no caminho do {@link BigDecimal}.
+     */
+    public static Money parse(CharSequence amount, String currencyCode) {
+        if (amount == null || amount.isEmpty())
+            throw new IllegalArgumentException("amount cannot be null");
+
+        Currency currency = currency(currencyCode);
+        int scale = scale(currency);
+
+        int length = amount.length();
+        int i = 0;
+        boolean negative = amount.charAt(0) == '-';
+        if (negative || amount.charAt(0) == '+') {
+            i++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;                          // -1 = ainda não passou do ponto
+        try {
+            for (; i < length; i++) {
+                char c = amount.charAt(i);
+                if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (c >= '0' && c <= '9') {
+                    if (decimals >= scale) {
+                        if (c != '0') {
+                            throw new IllegalArgumentException("amount " + amount + " is not representable in "
+                                    + currency.getCurrencyCode());
+                        }
+                        continue;                   // zeros além da escala da moeda
+                    }
+                    value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                    digits++;
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else {
+                    return of(new BigDecimal(amount.toString()), currencyCode);
+                }
+            }
+            if (digits == 0) {
+                throw new IllegalArgumentException("Invalid amount " + amount);
+            }
+            value = Math.multiplyExact(value, POWERS_OF_TEN[scale - Math.max(decimals, 0)]);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("amount " + amount + " is too large");
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid amount " + amount);
+        }
+
+        return new Money(negative ? -value : value, currency);
+    }
+
+    /** {@link #parse} que aceita valor ausente (campos opcionais de eventos e requests). */
+    public static Money parseOrNull(CharSequence amount, String currencyCode) {
+        return amount == null ? null : parse(amount, currencyCode);
+    }
+
+    /** Formato JSON: {@code amount} como número (o texto literal, sem passar por double). */
+    @JsonCreator
+    static Money fromJson(@JsonProperty("amount") String amount, @JsonProperty("currency") String currency) {
+        return parse(amount, currency);
+    }
+
+    /** Moeda ISO 4217 pelo código, em qualquer caixa; código desconhecido → {@link IllegalArgumentException}. */
+    public static Currency currency(String code) {
+        if (code == null || code.isBlank())
+            throw new IllegalArgumentException("currency cannot be null or empty");
+
+        Currency cached = CURRENCIES.get(code);
+        if (cached != null) {
+            return cached;
+        }
+
+        Currency currency;
+        try {
+            currency = Currency.getInstance(code.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown currency " + code);
+        }
+        CURRENCIES.putIfAbsent(code, currency);
+        return currency;
+    }
+
+    // =============================
+    // VALOR
+    // =============================
+
+    public long minorUnits() {
+        return minorUnits;
+    }
+
+    public Currency currency() {
+        return currency;
+    }
+
+    @JsonProperty("currency")
+    public String currencyCode() {
+        return currency.getCurrencyCode();
+    }
+
+    /** Casas decimais da moeda (pseudo-moedas como XAU ficam com 0). */
+    public int scale() {
+        return scale(currency);
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale());
+    }
+
+    /** Valor decimal sem a moeda, ex.: {@code "10.50"}, {@code "-0.05"}, {@code "1000"}. */
+    @JsonProperty("amount")
+    @JsonRawValue
+    public String amountText() {
+        return appendAmount(new StringBuilder(24)).toString();
+    }
+
+    public StringBuilder appendAmount(StringBuilder out) {
+        int scale = scale();
+        if (scale == 0) {
+            return out.append(minorUnits);
+        }
+
+        long abs = Math.abs(minorUnits);
+        if (minorUnits < 0) {
+            out.append('-');
+        }
+        if (abs < 0) {                                          // Long.MIN_VALUE
+            return out.append(toBigDecimal().abs().toPlainString());
+        }
+
+        long divisor = POWERS_OF_TEN[scale];
+        long fraction = abs % divisor;
+        out.append(abs / divisor).append('.');
+        for (long digit = divisor / 10; digit > 0; digit /= 10) {
+            out.append((char) ('0' + fraction / digit % 10));
+        }
+        return out;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (other.currency != currency)
+            throw new IllegalArgumentException("Currency mismatch: " + currencyCode() + " vs " + other.currencyCode());
+    }
+
+    private static int scale(Currency currency) {
+        return Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    // =============================
+    // IGUALDADE / ORDEM
+    // =============================
+
+    /** Ordena por moeda e depois por valor (consistente com {@link #equals}). */
+    @Override
+    public int compareTo(Money other) {
+        if (other.currency != currency) {
+            return currencyCode().compareTo(other.currencyCode());
+        }
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits && currency == money.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return appendAmount(new StringBuilder(28)).append(' ').append(currencyCode()).toString();
+    }
+}
@@ -1,21 +1,39 @@
 package com.mvbr.store.model;
 
-import java.math.BigDecimal;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Payment {
 
+    // transições de status por CAS: aprovar e cancelar o mesmo pagamento ao mesmo tempo
+    // → exatamente uma das duas vence
+    private static final AtomicReferenceFieldUpdater<Payment, PaymentStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Payment.class, PaymentStatus.class, "status");
+
     private final String paymentId;
     private final String userId;
-    private final BigDecimal amount;
-    private final String currency;
-    private PaymentStatus status;
+    private final Money amount;
+    private volatile PaymentStatus status;
     private final long createdAt;
 
+    // ack do broker para o evento de aprovação; null = ainda não publicado, em andamento,
+    // falhou ou desconhecido (restaurado de snapshot) — nesses casos a re-aprovação republica
+    private volatile RecordMetadata approvalAck;
+
     public Payment(String paymentId,
                    String userId,
-                   BigDecimal amount,
-                   String currency) {
+                   Money amount) {
+        this(paymentId, userId, amount, PaymentStatus.PENDING, System.currentTimeMillis());
+    }
+
+    /** Restaura um pagamento (snapshot do repositório) com status e data originais. */
+    public Payment(String paymentId,
+                   String userId,
+                   Money amount,
+                   PaymentStatus status,
+                   long createdAt) {
 
         if (paymentId == null || paymentId.isBlank())
             throw new IllegalArgumentException("paymentId cannot be null or empty");
@@ -23,18 +41,14 @@ public class Payment {
         if (userId == null || userId.isBlank())
             throw new IllegalArgumentException("userId cannot be null or empty");
 
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0)
+        if (amount == null || !amount.isPositive())
             throw new IllegalArgumentException("amount must be greater than zero");
 
-        if (currency == null || currency.isBlank())
-            throw new IllegalArgumentException("currency cannot be null or empty");
-
         this.paymentId = paymentId;
         this.userId = userId;
         this.amount = amount;
-        this.currency = currency.toUpperCase();
-        this.status = PaymentStatus.PENDING;
-        this.createdAt = System.currentTimeMillis();
+        this.status = Objects.requireNonNull(status, "status");
+        this.createdAt = createdAt;
     }
 
     // =======================================
@@ -46,17 +60,31 @@ public class Payment {
         return this.paymentId != null &&
                 this.userId != null &&
                 this.amount != null &&
-                this.amount.compareTo(BigDecimal.ZERO) > 0 &&
-                this.currency != null &&
-                !this.currency.isBlank();
+                this.amount.isPositive();
     }
 
-    /** Executa uma aprovação explícita, usada pelo service */
+    /** Executa uma aprovação explícita, usada pelo service (só a partir de PENDING) */
     public void markApproved() {
-        if (status == PaymentStatus.CANCELED)
-            throw new IllegalStateException("Cannot approve a canceled payment");
+        if (!STATUS.compareAndSet(this, PaymentStatus.PENDING, PaymentStatus.APPROVED)) {
+            if (status == PaymentStatus.CANCELED)
+                throw new IllegalPaymentTransitionException("Cannot approve a canceled payment");
+
+            throw new IllegalPaymentTransitionException("Payment already approved");
+        }
+    }
 
-        this.status = PaymentStatus.APPROVED;
+    /**
+     * PENDING → APPROVED, ou nada se já estava aprovado (re-envio depois de uma publicação que
+     * falhou); só um cancelado é recusado. Devolve se o status mudou agora.
+     */
+    public boolean ensureApproved() {
+        if (STATUS.compareAndSet(this, PaymentStatus.PENDING, PaymentStatus.APPROVED)) {
+            return true;
+        }
+        if (status == PaymentStatus.CANCELED) {
+            throw new IllegalPaymentTransitionException("Cannot approve a canceled payment");
+        }
+        return false;
     }
 
     // =======================================
@@ -64,16 +92,38 @@ public class Payment {
     // =======================================
 
     public void cancel() {
-        if (status == PaymentStatus.APPROVED)
-            throw new IllegalStateException("Cannot cancel an approved payment");
+        if (!STATUS.compareAndSet(this, PaymentStatus.PENDING, PaymentStatus.CANCELED)) {
+            if (status == PaymentStatus.APPROVED)
+                throw new IllegalPaymentTransitionException("Cannot cancel an approved payment");
+
+            throw new IllegalPaymentTransitionException("Payment already canceled");
+        }
+    }
+
+    /** O broker confirmou o evento de aprovação (ver {@link #getApprovalAck()}). */
+    public void approvalAcked(RecordMetadata metadata) {
+        this.approvalAck = Objects.requireNonNull(metadata, "metadata");
+    }
+
+    /** Posição do evento de aprovação confirmado; null se não houve ack (ainda). */
+    public RecordMetadata getApprovalAck() {
+        return approvalAck;
+    }
+
+    /** APPROVED ou CANCELED: não muda mais. */
+    public boolean isTerminal() {
+        return status != PaymentStatus.PENDING;
+    }
 
-        this.status = PaymentStatus.CANCELED;
+    /** Mesmos dados de pedido (re-envio), ignorando status e data. */
+    public boolean sameRequestAs(String userId, Money amount) {
+        return this.userId.equals(userId) && this.amount.equals(amount);
     }
 
     public String getPaymentId() { return paymentId; }
     public String getUserId() { return userId; }
-    public BigDecimal getAmount() { return amount; }
-    public String getCurrency() { return currency; }
+    public Money getAmount() { return amount; }
+    public String getCurrency() { return amount.currencyCode(); }
     public PaymentStatus getStatus() { return status; }
     public long getCreatedAt() { return createdAt; }
 
@@ -0,0 +1,20 @@
+package com.mvbr.store.outbox;
+
+/**
+ * O evento foi gravado no segmento, mas o fsync não confirmou a tempo (ou a espera foi
+ * interrompida): não há garantia de que sobreviva a um crash. O relay ainda pode publicá-lo;
+ * o cliente deve repetir a requisição — o mesmo eventId é deduplicado pelos consumers.
+ */
+public class OutboxNotDurableException extends RuntimeException {
+
+    private final String eventId;
+
+    public OutboxNotDurableException(String eventId, Throwable cause) {
+        super("Event " + eventId + " not confirmed on disk; retry the request", cause);
+        this.eventId = eventId;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+}
@@ -0,0 +1,333 @@
+package com.mvbr.store.outbox;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.codec.PaymentEventCodec;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.storage.LogCheckpoint;
+import com.mvbr.store.storage.SegmentedLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Outbox transacional local para {@link PaymentApprovedEvent}.
+ *
+ * <p>O request só espera o evento chegar ao disco: {@link #append} grava no
+ * {@link SegmentedLog} e aguarda o fsync, que é feito em grupo por uma thread de flush
+ * (todos os appends que chegaram durante um fsync entram no próximo). Se o fsync não sair em
+ * {@code durable-timeout}, o append lança {@link OutboxNotDurableException} (503): o evento está
+ * no segmento e o relay ainda pode publicá-lo, mas não há garantia de que sobreviva a um crash,
+ * então o cliente repete — com o mesmo eventId, deduplicado pelos consumers.
+ *
+ * <p>Uma thread de relay lê os eventos já em disco em lotes e envia pelo
+ * {@link PaymentApprovedProducer} com no máximo um evento em voo por userId (a chave do
+ * registro): o próximo evento do usuário só sai depois do ack do anterior, então uma falha não
+ * deixa um evento mais novo do mesmo usuário chegar antes dela. Usuários diferentes seguem em
+ * paralelo. O checkpoint avança até o primeiro evento não confirmado do lote; a próxima tentativa
+ * recomeça dele e pula os que já foram confirmados depois dele. Depois de um crash, o relay
+ * recomeça do checkpoint: eventos gravados e não confirmados são reenviados com o mesmo eventId
+ * (os consumers deduplicam).
+ */
+@Component
+@ConditionalOnProperty(name = "store.outbox.enabled", havingValue = "true")
+public class PaymentOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutbox.class);
+
+    private static final Duration JOIN_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(130);     // > delivery.timeout.ms
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(10);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final PaymentApprovedProducer producer;
+    private final SegmentedLog eventLog;
+    private final LogCheckpoint checkpoint;
+    private final int relayBatchSize;
+    private final Duration durableTimeout;
+
+    private final Object appendLock = new Object();
+    private final Queue<DurableWaiter> durableWaiters = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<SendResult<String, Object>>> ackWaiters = new ConcurrentHashMap<>();
+
+    private volatile long durablePosition;
+    private volatile long relayedPosition;
+    private volatile boolean running = true;
+
+    private final Counter durableTimeouts;
+
+    private final Thread flusher;
+    private final Thread relay;
+
+    @Autowired
+    public PaymentOutbox(PaymentApprovedProducer producer,
+                         @Value("${store.outbox.directory:./data/outbox}") Path directory,
+                         @Value("${store.outbox.segment-bytes:67108864}") int segmentBytes,
+                         @Value("${store.outbox.relay-batch-size:1000}") int relayBatchSize,
+                         @Value("${store.outbox.durable-timeout:5s}") Duration durableTimeout,
+                         MeterRegistry meterRegistry) {
+        this(producer, new SegmentedLog(directory, segmentBytes), directory, relayBatchSize, durableTimeout, meterRegistry);
+    }
+
+    PaymentOutbox(PaymentApprovedProducer producer, SegmentedLog eventLog, Path directory, int relayBatchSize,
+                  Duration durableTimeout, MeterRegistry meterRegistry) {
+        this.producer = producer;
+        this.eventLog = eventLog;
+        this.checkpoint = new LogCheckpoint(directory.resolve("relay.checkpoint"));
+        this.relayBatchSize = relayBatchSize;
+        this.durableTimeout = durableTimeout;
+        this.durablePosition = eventLog.writePosition();
+        this.relayedPosition = checkpoint.load();
+
+        Gauge.builder("store.outbox.backlog.bytes", this, PaymentOutbox::backlogBytes)
+                .description("Bytes written to the outbox and not yet acked by Kafka")
+                .register(meterRegistry);
+        this.durableTimeouts = Counter.builder("store.outbox.durable.timeouts")
+                .description("Appends rejected as not durable because the group fsync took too long")
+                .register(meterRegistry);
+
+        this.flusher = Thread.ofPlatform().name("outbox-flusher").daemon().start(this::flushLoop);
+        this.relay = Thread.ofPlatform().name("outbox-relay").daemon().start(this::relayLoop);
+    }
+
+    /**
+     * Grava o evento no outbox e volta quando ele estiver em disco. O future retornado completa
+     * quando o relay receber o ack do Kafka. Se o fsync não confirmar em {@code durable-timeout}
+     * (ou a espera for interrompida) lança {@link OutboxNotDurableException}: o evento está só no
+     * segmento mapeado e o cliente deve repetir.
+     */
+    public CompletableFuture<SendResult<String, Object>> append(PaymentApprovedEvent event) {
+
+        byte[] payload = PaymentEventCodec.encode(event);
+
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        CompletableFuture<SendResult<String, Object>> ack = new CompletableFuture<>();
+        long position;
+
+        synchronized (appendLock) {
+            position = eventLog.append(payload);
+            ackWaiters.put(position, ack);
+            durableWaiters.add(new DurableWaiter(eventLog.writePosition(), durable));
+        }
+        LockSupport.unpark(flusher);
+
+        try {
+            durable.get(durableTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new OutboxNotDurableException(event.eventId(), ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            // o registro está no segmento e o relay ainda pode publicá-lo, mas sem garantia de disco
+            durableTimeouts.increment();
+            log.warn("Outbox fsync slower than {}; event {} rejected as not durable", durableTimeout, event.eventId());
+            throw new OutboxNotDurableException(event.eventId(), ex);
+        }
+
+        return ack;
+    }
+
+    /** Bytes em disco ainda não confirmados pelo Kafka (inclui framing). */
+    public long backlogBytes() {
+        return Math.max(0, eventLog.writePosition() - relayedPosition);
+    }
+
+    // =============================
+    // FLUSH (group commit)
+    // =============================
+
+    private void flushLoop() {
+        while (running) {
+            if (eventLog.writePosition() == durablePosition) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                long flushed = eventLog.flush();
+                durablePosition = flushed;
+
+                DurableWaiter waiter;
+                while ((waiter = durableWaiters.peek()) != null && waiter.end() <= flushed) {
+                    durableWaiters.poll();
+                    waiter.future().complete(null);
+                }
+                LockSupport.unpark(relay);
+            } catch (RuntimeException ex) {
+                log.error("Outbox fsync failed", ex);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // =============================
+    // RELAY (outbox → Kafka)
+    // =============================
+
+    private void relayLoop() {
+        long next = relayedPosition;
+        long backoffMillis = 100;
+        // confirmados depois do primeiro não confirmado: a próxima tentativa não os reenvia
+        Set<Long> ackedAhead = new HashSet<>();
+
+        while (running) {
+            List<OutboxEntry> batch = new ArrayList<>(relayBatchSize);
+            long after = eventLog.read(next, durablePosition, relayBatchSize,
+                    (position, payload) -> batch.add(new OutboxEntry(position, (PaymentApprovedEvent) PaymentEventCodec.decode(payload))));
+
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            boolean[] acked = new boolean[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                acked[i] = ackedAhead.contains(batch.get(i).position());
+            }
+            send(batch, acked);
+
+            int firstUnacked = 0;
+            while (firstUnacked < batch.size() && acked[firstUnacked]) {
+                firstUnacked++;
+            }
+            ackedAhead.clear();
+            for (int i = firstUnacked + 1; i < batch.size(); i++) {
+                if (acked[i]) {
+                    ackedAhead.add(batch.get(i).position());
+                }
+            }
+
+            long resumeAt = firstUnacked == batch.size() ? after : batch.get(firstUnacked).position();
+            if (resumeAt != next) {
+                next = resumeAt;
+                checkpoint.save(next);
+                relayedPosition = next;
+                eventLog.deleteSegmentsBefore(next);
+            }
+
+            if (firstUnacked == batch.size()) {
+                backoffMillis = 100;
+            } else {
+                log.warn("Outbox relay: {} of {} events unacknowledged, retrying from the first one",
+                        batch.size() - firstUnacked - ackedAhead.size(), batch.size());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+                backoffMillis = Math.min(backoffMillis * 2, MAX_RETRY_BACKOFF.toMillis());
+            }
+        }
+    }
+
+    /**
+     * Envia os eventos ainda não confirmados do lote, um em voo por userId: o próximo do usuário
+     * sai quando o anterior confirma, e uma falha bloqueia o resto do usuário neste lote (volta
+     * na próxima tentativa, atrás do que falhou). Marca em {@code acked} o que foi confirmado e
+     * completa o ack do cliente.
+     */
+    private void send(List<OutboxEntry> batch, boolean[] acked) {
+
+        Map<String, ArrayDeque<Integer>> byUser = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!acked[i]) {
+                byUser.computeIfAbsent(userOf(batch.get(i)), user -> new ArrayDeque<>()).add(i);
+            }
+        }
+
+        BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+        for (ArrayDeque<Integer> pending : byUser.values()) {
+            dispatch(batch, pending.peek(), completions);
+            inFlight++;
+        }
+
+        long deadline = System.nanoTime() + SEND_TIMEOUT.toNanos();
+        while (inFlight > 0) {
+            Completion done;
+            try {
+                done = completions.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (done == null) {
+                return;                                 // o que ficou em voo conta como não confirmado
+            }
+            inFlight--;
+            if (done.error() != null) {
+                continue;                               // usuário bloqueado até a próxima tentativa
+            }
+
+            acked[done.index()] = true;
+            CompletableFuture<SendResult<String, Object>> waiter = ackWaiters.remove(batch.get(done.index()).position());
+            if (waiter != null) {
+                waiter.complete(done.result());
+            }
+
+            ArrayDeque<Integer> pending = byUser.get(userOf(batch.get(done.index())));
+            pending.poll();
+            if (!pending.isEmpty()) {
+                dispatch(batch, pending.peek(), completions);
+                inFlight++;
+            }
+        }
+    }
+
+    private void dispatch(List<OutboxEntry> batch, int index, BlockingQueue<Completion> completions) {
+        try {
+            producer.producePaymentApproved(batch.get(index).event())
+                    .whenComplete((result, ex) -> completions.add(new Completion(index, result, ex)));
+        } catch (RuntimeException ex) {
+            completions.add(new Completion(index, null, ex));
+        }
+    }
+
+    private static String userOf(OutboxEntry entry) {
+        return Objects.requireNonNullElse(entry.event().userId(), "");
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        LockSupport.unpark(relay);
+        flusher.join(JOIN_TIMEOUT.toMillis());
+        relay.join(JOIN_TIMEOUT.toMillis());
+        eventLog.close();
+        checkpoint.close();
+    }
+
+    private record DurableWaiter(long end, CompletableFuture<Void> future) {
+    }
+
+    private record OutboxEntry(long position, PaymentApprovedEvent event) {
+    }
+
+    private record Completion(int index, SendResult<String, Object> result, Throwable error) {
+    }
+}
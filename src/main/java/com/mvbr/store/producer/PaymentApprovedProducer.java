@@ -1,13 +1,19 @@
 package com.mvbr.store.producer;
 
 import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.codec.EventSchema;
+import com.mvbr.store.tracing.PaymentTracer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeader;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class PaymentApprovedProducer {
@@ -16,25 +22,43 @@ public class PaymentApprovedProducer {
     // 1 - CRITICAL PRODUCER
     // =============================
 
+    private static final String TOPIC = "payment.approved.v1";
+
+    // Headers constantes: criados uma vez e compartilhados por todos os registros
+    private static final List<Header> HEADERS = List.of(
+            new RecordHeader("event-type", "PAYMENT_APPROVED".getBytes(StandardCharsets.UTF_8)),
+            new RecordHeader("service", "payment-service".getBytes(StandardCharsets.UTF_8)),
+            EventSchema.JSON_V1_HEADER              // o serializer troca por v2 no modo binário
+    );
+
     private final KafkaTemplate<String, Object> template;
+    private final PaymentTracer tracer;
 
-    public PaymentApprovedProducer(@Qualifier("criticalKafkaTemplate") KafkaTemplate<String, Object> template) {
+    public PaymentApprovedProducer(@Qualifier("criticalKafkaTemplate") KafkaTemplate<String, Object> template,
+                                   PaymentTracer tracer) {
         this.template = template;
+        this.tracer = tracer;
     }
 
-    public void producePaymentApproved(PaymentApprovedEvent event) {
+    /** O future completa com o ack do broker (acks=all) → partition/offset em {@link SendResult#getRecordMetadata()}. */
+    public CompletableFuture<SendResult<String, Object>> producePaymentApproved(PaymentApprovedEvent event) {
+
+        // amostrado → headers trace-* com os checkpoints; senão os headers compartilhados
+        PaymentTracer.Stamp trace = tracer.sending(event);
 
         ProducerRecord<String, Object> record = new ProducerRecord<>(
-                "payment.approved.v1",
+                TOPIC,
+                null,                 // partição pelo hash da chave
                 event.userId(),       // ordering garantido por userId
-                event                 // payload
+                event,                // payload
+                trace == null ? HEADERS : trace.headers(HEADERS)
         );
 
-        record.headers().add(new RecordHeader("event-type", "PAYMENT_APPROVED".getBytes(StandardCharsets.UTF_8)));
-        record.headers().add(new RecordHeader("service", "payment-service".getBytes(StandardCharsets.UTF_8)));
-        record.headers().add(new RecordHeader("schema-version", "v1".getBytes(StandardCharsets.UTF_8)));
-
-        template.send(record);
+        CompletableFuture<SendResult<String, Object>> ack = template.send(record);
+        if (trace != null) {
+            ack.thenRun(() -> tracer.acked(trace));
+        }
+        return ack;
     }
 
 }
@@ -1,6 +1,7 @@
 package com.mvbr.store.producer;
 
 import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.producer.hotkey.HotKeySalter;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
@@ -13,15 +14,19 @@ public class PaymentNotificationProducer {
     // =============================
 
     private final KafkaTemplate<String, Object> template;
+    private final HotKeySalter keySalter;
 
-    public PaymentNotificationProducer(@Qualifier("defaultKafkaTemplate") KafkaTemplate<String, Object> template) {
+    public PaymentNotificationProducer(@Qualifier("defaultKafkaTemplate") KafkaTemplate<String, Object> template,
+                                       @Qualifier("notificationKeySalter") HotKeySalter keySalter) {
         this.template = template;
+        this.keySalter = keySalter;
     }
 
     public void sendPaymentNotification(PaymentNotificationEvent event) {
 
         // A chave será userId → envia todas as notificações de um usuário
         // para a mesma partição → mantém ordenação
-        template.send("payment.notification.v1", event.userId(), event);
+        // (com salting ligado, um usuário quente é espalhado e o consumer junta de volta)
+        template.send("payment.notification.v1", keySalter.keyFor(event.userId()), event);
     }
 }
\ No newline at end of file
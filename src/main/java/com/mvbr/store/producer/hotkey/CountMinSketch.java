@@ -0,0 +1,69 @@
+package com.mvbr.store.producer.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch de chaves: estimativa de frequência em memória fixa, nunca abaixo do real.
+ *
+ * <p>{@code depth} linhas de {@code width} contadores; cada chave incrementa um contador por
+ * linha e a estimativa é o menor deles (colisões só inflam). Os índices saem de um único hash
+ * de 64 bits ({@code h1 + i·h2}), então a chave é hasheada uma vez por registro. Com
+ * {@code width} 4096 o erro fica em ~0,07% do total da janela.
+ *
+ * <p>Sem lock: contadores atômicos. {@link #halve()} concorrente com {@link #add} pode perder
+ * um incremento, o que não importa para detectar chaves quentes.
+ */
+class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    CountMinSketch(int depth, int width) {
+        int size = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new AtomicLongArray(depth * size);
+    }
+
+    /** Conta uma ocorrência e devolve a estimativa atualizada. */
+    long add(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * (mask + 1) + ((h1 + row * h2) & mask);
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        return estimate;
+    }
+
+    long estimate(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * (mask + 1) + ((h1 + row * h2) & mask)));
+        }
+        return estimate;
+    }
+
+    /** Divide todos os contadores por 2 (decaimento da janela). */
+    void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    // hashCode da String (em cache) espalhado para 64 bits (finalizador do SplitMix64)
+    private static long hash(String key) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,177 @@
+package com.mvbr.store.producer.hotkey;
+
+import com.mvbr.store.dto.HotKeyReportResponse;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.ProducerListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chaves quentes e carga por partição de um tópico, a partir dos acks do {@code KafkaTemplate}.
+ *
+ * <p>Registrado como {@link ProducerListener} do template: cada registro confirmado do tópico
+ * conta a chave num {@link CountMinSketch} e a partição de destino real (a do
+ * {@link RecordMetadata}, então salting e partitioner customizado entram na conta). As
+ * {@code topK} chaves com maior estimativa ficam num mapa pequeno; uma chave é quente quando
+ * passa de {@code hotShare} dos registros da janela (e de {@code minRecords}).
+ *
+ * <p>Janela com decaimento: a cada {@code window} todos os contadores são divididos por 2,
+ * então o relatório reflete o tráfego recente e uma chave que esfriou sai do top-K.
+ *
+ * <p>Roda na thread de I/O do producer: um hash, {@code depth} incrementos atômicos e, só para
+ * chaves candidatas ao top-K, um lock curto.
+ */
+public class HotKeyDetector implements ProducerListener<String, Object> {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    private static final int MAX_PARTITIONS = 256;
+    private static final int DECAY_CHECK_MASK = 1023;             // olha o relógio a cada 1024 registros
+
+    private final String topic;
+    private final int topK;
+    private final double hotShare;
+    private final long minRecords;
+    private final long windowMillis;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final ConcurrentHashMap<String, Long> top = new ConcurrentHashMap<>();
+    private volatile long floor;                                  // menor estimativa do top-K quando cheio
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLongArray partitions = new AtomicLongArray(MAX_PARTITIONS);
+    private volatile int partitionCount;
+    private volatile long nextDecay;
+
+    public HotKeyDetector(String topic, int topK, double hotShare, long minRecords, Duration window) {
+        if (topK < 1) {
+            throw new IllegalArgumentException("topK must be positive: " + topK);
+        }
+        this.topic = topic;
+        this.topK = topK;
+        this.hotShare = hotShare;
+        this.minRecords = minRecords;
+        this.windowMillis = window.toMillis();
+        this.nextDecay = System.currentTimeMillis() + windowMillis;
+    }
+
+    @Override
+    public void onSuccess(ProducerRecord<String, Object> record, RecordMetadata metadata) {
+        if (!topic.equals(record.topic())) {
+            return;                                   // o template também publica em retry/DLT
+        }
+        record(HotKeySalter.unsalt(record.key()), metadata.partition());
+    }
+
+    void record(String key, int partition) {
+        if ((records.incrementAndGet() & DECAY_CHECK_MASK) == 0) {
+            decayIfDue(System.currentTimeMillis());
+        }
+
+        if (partition >= 0 && partition < MAX_PARTITIONS) {
+            partitions.incrementAndGet(partition);
+            if (partition >= partitionCount) {
+                partitionCount = partition + 1;
+            }
+        }
+
+        if (key == null) {
+            return;
+        }
+        long estimate = sketch.add(key);
+        if (top.computeIfPresent(key, (k, previous) -> estimate) != null || estimate <= floor) {
+            return;
+        }
+        synchronized (top) {
+            top.put(key, estimate);
+            if (top.size() > topK) {
+                top.entrySet().stream()
+                        .min(Map.Entry.comparingByValue())
+                        .ifPresent(coldest -> top.remove(coldest.getKey()));
+            }
+            floor = top.size() >= topK ? top.values().stream().mapToLong(Long::longValue).min().orElse(0) : 0;
+        }
+    }
+
+    /** Chave acima de {@code hotShare} dos registros da janela (usado pelo {@link HotKeySalter}). */
+    public boolean isHot(String key) {
+        Long estimate = top.get(key);
+        return estimate != null && estimate >= hotThreshold();
+    }
+
+    private long hotThreshold() {
+        return Math.max(minRecords, (long) (records.get() * hotShare));
+    }
+
+    void decayIfDue(long nowMillis) {
+        long due = nextDecay;
+        if (nowMillis < due) {
+            return;
+        }
+        synchronized (top) {
+            if (nextDecay != due) {
+                return;                               // outra thread já fez o decaimento
+            }
+            sketch.halve();
+            records.getAndUpdate(count -> count >>> 1);
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.getAndUpdate(i, count -> count >>> 1);
+            }
+            top.replaceAll((key, estimate) -> estimate >>> 1);
+            top.values().removeIf(estimate -> estimate == 0);
+            floor = floor >>> 1;
+            nextDecay = nowMillis + windowMillis;
+        }
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    /** Partição mais carregada / média das partições vistas; 1.0 = equilibrado, 0 sem registros. */
+    public double skew() {
+        int count = partitionCount;
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            long load = partitions.get(i);
+            total += load;
+            max = Math.max(max, load);
+        }
+        return total == 0 ? 0 : max / ((double) total / count);
+    }
+
+    /** Fração dos registros da janela que foi da chave mais quente. */
+    public double topShare() {
+        long total = records.get();
+        long hottest = top.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        return total == 0 ? 0 : Math.min(1.0, (double) hottest / total);
+    }
+
+    public HotKeyReportResponse report() {
+        long total = records.get();
+        long threshold = hotThreshold();
+
+        List<Long> load = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            load.add(partitions.get(i));
+        }
+
+        List<HotKeyReportResponse.HotKey> hotKeys = top.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .map(entry -> new HotKeyReportResponse.HotKey(entry.getKey(), entry.getValue(),
+                        total == 0 ? 0 : Math.min(1.0, (double) entry.getValue() / total),
+                        entry.getValue() >= threshold))
+                .toList();
+
+        return new HotKeyReportResponse(topic, total, skew(), load, hotKeys);
+    }
+}
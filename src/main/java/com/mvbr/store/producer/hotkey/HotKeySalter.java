@@ -0,0 +1,63 @@
+package com.mvbr.store.producer.hotkey;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Salting opcional das chaves quentes ({@code store.kafka.hot-keys.salting.enabled=true}).
+ *
+ * <p>Quando o {@link HotKeyDetector} marca um userId como quente, a chave do registro vira
+ * {@code userId#salt-N} com N sorteado entre {@code buckets}: o particionador padrão espalha
+ * o usuário por várias partições, e as demais chaves continuam onde estavam (nada de
+ * reparticionar o tópico). O payload mantém o userId original.
+ *
+ * <p>O preço é a ordem por usuário: registros do mesmo usuário em partições diferentes podem
+ * ser consumidos fora de ordem. Por isso só é usado no tópico de notificações. O consumer junta
+ * as chaves de volta com {@link #unsalt}, então dentro de um lote o usuário continua serializado.
+ */
+public class HotKeySalter {
+
+    public static final String SEPARATOR = "#salt-";
+
+    private final HotKeyDetector detector;
+    private final boolean enabled;
+    private final int buckets;
+    private final Counter salted;
+
+    public HotKeySalter(HotKeyDetector detector, boolean enabled, int buckets, MeterRegistry meterRegistry) {
+        if (buckets < 2) {
+            throw new IllegalArgumentException("buckets must be at least 2: " + buckets);
+        }
+        this.detector = detector;
+        this.enabled = enabled;
+        this.buckets = buckets;
+        this.salted = Counter.builder("store.producer.hotkey.salted")
+                .tag("topic", detector.topic())
+                .description("Records whose hot key was salted to spread it across partitions")
+                .register(meterRegistry);
+    }
+
+    /** Chave do registro: o userId, ou o userId com salt se o modo estiver ligado e a chave quente. */
+    public String keyFor(String userId) {
+        if (!enabled || userId == null || !detector.isHot(userId)) {
+            return userId;
+        }
+        salted.increment();
+        return userId + SEPARATOR + ThreadLocalRandom.current().nextInt(buckets);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** A chave original; chaves sem salt voltam como estão. */
+    public static String unsalt(String key) {
+        if (key == null) {
+            return null;
+        }
+        int salt = key.lastIndexOf(SEPARATOR);
+        return salt < 0 ? key : key.substring(0, salt);
+    }
+}
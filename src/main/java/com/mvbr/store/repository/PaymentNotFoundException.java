@@ -0,0 +1,9 @@
+package com.mvbr.store.repository;
+
+/** paymentId que não está no repositório (nunca registrado ou já descartado). */
+public class PaymentNotFoundException extends IllegalArgumentException {
+
+    public PaymentNotFoundException(String paymentId) {
+        super("Unknown paymentId " + paymentId);
+    }
+}
@@ -0,0 +1,383 @@
+package com.mvbr.store.repository;
+
+import com.mvbr.store.model.Money;
+import com.mvbr.store.model.Payment;
+import com.mvbr.store.model.PaymentStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Repositório em memória de {@link Payment}, dividido em shards pelo hash do paymentId.
+ *
+ * <p>Cada shard tem seu lock, seu mapa e sua fila de pagamentos já finalizados; requests de
+ * paymentIds diferentes quase nunca disputam o mesmo lock. A transição de status não usa o
+ * lock: é um CAS no próprio {@link Payment}, então aprovar e cancelar o mesmo pagamento ao
+ * mesmo tempo tem exatamente um vencedor.
+ *
+ * <p>Memória limitada: cada shard guarda até {@code capacity / shards} pagamentos; acima
+ * disso, descarta os finalizados (APPROVED/CANCELED) mais antigos. PENDING nunca é
+ * descartado — com o shard cheio só de PENDING, novos registros são recusados.
+ *
+ * <p>Índice secundário por userId. Snapshot em disco opcional (periódico e no shutdown).
+ */
+@Repository
+public class PaymentRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentRepository.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x50415932;        // "PAY2" (valor em unidades mínimas)
+
+    private final Shard[] shards;
+    private final int mask;
+    private final int capacityPerShard;
+
+    private final ConcurrentHashMap<String, Set<String>> byUserId = new ConcurrentHashMap<>();
+
+    private final Path snapshotFile;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    public PaymentRepository(@Value("${store.payments.shards:64}") int shards,
+                             @Value("${store.payments.capacity:1000000}") int capacity,
+                             @Value("${store.payments.snapshot.enabled:false}") boolean snapshotEnabled,
+                             @Value("${store.payments.snapshot.directory:./data/payments}") Path snapshotDirectory,
+                             @Value("${store.payments.snapshot.interval:60s}") Duration snapshotInterval) {
+
+        int count = Integer.highestOneBit(Math.max(1, shards - 1)) << 1;
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.mask = count - 1;
+        this.capacityPerShard = Math.max(1, capacity / count);
+
+        if (snapshotEnabled) {
+            this.snapshotFile = snapshotDirectory.resolve("payments.snapshot");
+            load();
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("payment-snapshot").daemon().factory());
+            this.snapshotScheduler.scheduleWithFixedDelay(this::snapshot,
+                    snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotFile = null;
+            this.snapshotScheduler = null;
+        }
+    }
+
+    // =============================
+    // ESCRITA
+    // =============================
+
+    /**
+     * Registra o pagamento ou devolve o já registrado com o mesmo paymentId
+     * (re-envio do mesmo pedido). Dados diferentes para o mesmo id são recusados.
+     */
+    public Payment register(Payment payment) {
+        Shard shard = shard(payment.getPaymentId());
+        Payment stored;
+
+        shard.lock.lock();
+        try {
+            stored = shard.payments.get(payment.getPaymentId());
+            if (stored == null) {
+                insert(shard, payment);
+                return payment;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+
+        return requireSameRequest(stored, payment.getUserId(), payment.getAmount());
+    }
+
+    /** Como {@link #register}, mas só cria o {@link Payment} se o paymentId ainda não existe. */
+    public Payment findOrRegister(String paymentId, String userId, Money amount) {
+        if (paymentId == null || paymentId.isBlank()) {
+            throw new IllegalArgumentException("paymentId cannot be null or empty");
+        }
+        Shard shard = shard(paymentId);
+        Payment stored;
+
+        shard.lock.lock();
+        try {
+            stored = shard.payments.get(paymentId);
+            if (stored == null) {
+                Payment payment = new Payment(paymentId, userId, amount);
+                insert(shard, payment);
+                return payment;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+
+        return requireSameRequest(stored, userId, amount);
+    }
+
+    private void insert(Shard shard, Payment payment) {
+        if (shard.payments.size() >= capacityPerShard && !shard.evictOne(this::unindex)) {
+            throw new IllegalStateException("Payment repository is full of pending payments");
+        }
+        shard.payments.put(payment.getPaymentId(), payment);
+        index(payment);
+        if (payment.isTerminal()) {
+            shard.terminated.add(payment.getPaymentId());
+        }
+    }
+
+    private static Payment requireSameRequest(Payment stored, String userId, Money amount) {
+        if (!stored.sameRequestAs(userId, amount)) {
+            throw new IllegalArgumentException("paymentId " + stored.getPaymentId() + " already exists with different data");
+        }
+        return stored;
+    }
+
+    /** PENDING → APPROVED; {@link IllegalStateException} se já aprovado ou cancelado. */
+    public Payment approve(String paymentId) {
+        return transition(require(paymentId), Payment::markApproved);
+    }
+
+    /** Mesmo que {@link #approve(String)} para o pagamento devolvido por {@link #register}/{@link #findOrRegister}. */
+    public Payment approve(Payment stored) {
+        return transition(stored, Payment::markApproved);
+    }
+
+    /**
+     * Como {@link #approve(Payment)}, mas um pagamento já aprovado volta como está: o pedido
+     * pode ser repetido enquanto a publicação não tiver ack. Cancelado → {@link IllegalStateException}.
+     */
+    public Payment approveIdempotent(Payment stored) {
+        if (stored.ensureApproved()) {              // re-aprovação não muda nada nem entra de novo na fila
+            enqueueTerminated(stored);
+        }
+        return stored;
+    }
+
+    /** PENDING → CANCELED; {@link IllegalStateException} se já aprovado ou cancelado. */
+    public Payment cancel(String paymentId) {
+        return transition(require(paymentId), Payment::cancel);
+    }
+
+    private Payment require(String paymentId) {
+        return findById(paymentId)
+                .orElseThrow(() -> new PaymentNotFoundException(paymentId));
+    }
+
+    private Payment transition(Payment payment, Consumer<Payment> change) {
+        change.accept(payment);                     // CAS no Payment, fora do lock do shard
+        enqueueTerminated(payment);
+        return payment;
+    }
+
+    /** Chamar só quando o CAS mudou o status: cada finalizado entra uma vez na fila. */
+    private void enqueueTerminated(Payment payment) {
+        String paymentId = payment.getPaymentId();
+        Shard shard = shard(paymentId);
+        shard.lock.lock();
+        try {
+            // só finalizados que já estão na fila são descartados, então ele ainda está no mapa
+            if (shard.payments.get(paymentId) == payment) {
+                shard.terminated.add(paymentId);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // =============================
+    // LEITURA
+    // =============================
+
+    public Optional<Payment> findById(String paymentId) {
+        Shard shard = shard(paymentId);
+        shard.lock.lock();
+        try {
+            return Optional.ofNullable(shard.payments.get(paymentId));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public List<Payment> findByUserId(String userId) {
+        Set<String> ids = byUserId.get(userId);
+        if (ids == null) {
+            return List.of();
+        }
+        List<Payment> payments = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            findById(id).ifPresent(payments::add);
+        }
+        return payments;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                size += shard.payments.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /** Entradas na fila de descarte de finalizados (inclui ids já descartados por outro caminho). */
+    int terminatedQueueSize() {
+        int size = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                size += shard.terminated.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    // =============================
+    // ÍNDICE POR USER
+    // =============================
+
+    private void index(Payment payment) {
+        byUserId.compute(payment.getUserId(), (user, ids) -> {
+            Set<String> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            set.add(payment.getPaymentId());
+            return set;
+        });
+    }
+
+    private void unindex(Payment payment) {
+        byUserId.computeIfPresent(payment.getUserId(), (user, ids) -> {
+            ids.remove(payment.getPaymentId());
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private Shard shard(String paymentId) {
+        int h = paymentId.hashCode();
+        return shards[(h ^ (h >>> 16)) & mask];
+    }
+
+    // =============================
+    // SNAPSHOT
+    // =============================
+
+    /** Grava todos os pagamentos (um shard por vez, sem parar os outros). */
+    public void snapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                for (Shard shard : shards) {
+                    List<Payment> copy;
+                    shard.lock.lock();
+                    try {
+                        copy = new ArrayList<>(shard.payments.values());
+                    } finally {
+                        shard.lock.unlock();
+                    }
+                    for (Payment payment : copy) {
+                        out.writeBoolean(true);
+                        out.writeUTF(payment.getPaymentId());
+                        out.writeUTF(payment.getUserId());
+                        out.writeLong(payment.getAmount().minorUnits());
+                        out.writeUTF(payment.getCurrency());
+                        out.writeByte(payment.getStatus().ordinal());
+                        out.writeLong(payment.getCreatedAt());
+                    }
+                }
+                out.writeBoolean(false);
+            }
+
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Could not write payment snapshot: {}", ex.toString());
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a payment snapshot");
+            }
+            PaymentStatus[] statuses = PaymentStatus.values();
+            while (in.readBoolean()) {
+                String paymentId = in.readUTF();
+                String userId = in.readUTF();
+                long minorUnits = in.readLong();
+                register(new Payment(paymentId, userId, Money.ofMinor(minorUnits, in.readUTF()),
+                        statuses[in.readByte()], in.readLong()));
+                loaded++;
+            }
+            log.info("Loaded {} payments from {}", loaded, snapshotFile);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Stopped loading payment snapshot {} after {} payments: {}", snapshotFile, loaded, ex.toString());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            snapshot();
+        }
+    }
+
+    /** Um shard: mapa por paymentId + ordem de finalização (candidatos a descarte). */
+    private static final class Shard {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, Payment> payments = new HashMap<>();
+        final ArrayDeque<String> terminated = new ArrayDeque<>();
+
+        /** Descarta o finalizado mais antigo; false se não há nenhum. Chamar com o lock. */
+        boolean evictOne(Consumer<Payment> onEvict) {
+            String id;
+            while ((id = terminated.poll()) != null) {
+                Payment payment = payments.get(id);
+                if (payment != null && payment.isTerminal()) {
+                    payments.remove(id);
+                    onEvict.accept(payment);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.mvbr.store.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.ValueInstantiationException;
+import com.mvbr.store.dto.BulkPaymentResult;
+import com.mvbr.store.dto.PaymentApprovedRequest;
+import com.mvbr.store.outbox.OutboxNotDurableException;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Ingestão em massa de pagamentos aprovados (NDJSON ou array JSON).
+ *
+ * <p>Lê um registro por vez, dispara o envio sem esperar o ack e só bloqueia quando há
+ * {@link #MAX_IN_FLIGHT} envios pendentes. Os resultados saem como NDJSON na mesma ordem da
+ * entrada, então a memória não depende do tamanho do arquivo.
+ *
+ * <p>Um registro inválido (JSON quebrado, campo com tipo errado, valor inválido) vira uma linha
+ * {@code REJECTED} e a leitura continua. No NDJSON cada linha é um registro, então depois de uma
+ * linha quebrada o parser recomeça na seguinte. No array não há como achar o próximo elemento
+ * depois de um erro de sintaxe: o elemento sai como {@code REJECTED} e a leitura para ali, com
+ * os resultados de todos os anteriores já escritos.
+ */
+@Service
+public class BulkPaymentIngestionService {
+
+    static final int MAX_IN_FLIGHT = 1024;
+
+    private final IdempotentPaymentIngress paymentIngress;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader requestReader;
+
+    public BulkPaymentIngestionService(IdempotentPaymentIngress paymentIngress, ObjectMapper objectMapper) {
+        this.paymentIngress = paymentIngress;
+        this.objectMapper = objectMapper;
+        // "{...} lixo" na mesma linha é uma linha inválida, não um registro válido
+        this.requestReader = objectMapper.readerFor(PaymentApprovedRequest.class)
+                .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+    }
+
+    public void ingest(InputStream body, OutputStream out) throws IOException {
+
+        ArrayDeque<Pending> inFlight = new ArrayDeque<>(MAX_IN_FLIGHT);
+        BufferedInputStream input = new BufferedInputStream(body);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+
+            generator.setRootValueSeparator(null);
+
+            if (firstNonWhitespace(input) == '[') {
+                ingestArray(input, inFlight, generator);
+            } else {
+                ingestLines(input, inFlight, generator);
+            }
+
+            while (!inFlight.isEmpty()) {
+                writeNext(inFlight, generator);
+            }
+            generator.flush();
+        }
+    }
+
+    private void ingestLines(InputStream input, ArrayDeque<Pending> inFlight, JsonGenerator generator) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            Pending pending;
+            try {
+                pending = submit(index, requestReader.readValue(line));
+            } catch (JsonProcessingException ex) {
+                pending = rejected(index, ex);
+            }
+            index++;
+            enqueue(pending, inFlight, generator);
+        }
+    }
+
+    private void ingestArray(InputStream input, ArrayDeque<Pending> inFlight, JsonGenerator generator) throws IOException {
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+
+            parser.nextToken();                                  // START_ARRAY
+            long index = 0;
+            try {
+                JsonToken token = parser.nextToken();
+                while (token != null && token != JsonToken.END_ARRAY) {
+
+                    // o elemento inteiro vira árvore antes do bind: erro de tipo/valor não
+                    // deixa o parser no meio do objeto
+                    TreeNode element = parser.readValueAsTree();
+                    Pending pending;
+                    try {
+                        pending = submit(index, requestReader.readValue(requestReader.treeAsTokens(element)));
+                    } catch (JsonProcessingException ex) {
+                        pending = rejected(index, ex);
+                    }
+                    index++;
+                    enqueue(pending, inFlight, generator);
+
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException ex) {
+                // sintaxe quebrada: daqui em diante não dá para separar os elementos
+                enqueue(rejected(index, ex), inFlight, generator);
+            }
+        }
+    }
+
+    private void enqueue(Pending pending, ArrayDeque<Pending> inFlight, JsonGenerator generator) throws IOException {
+        if (inFlight.size() == MAX_IN_FLIGHT) {
+            writeNext(inFlight, generator);
+        }
+        inFlight.add(pending);
+    }
+
+    private Pending submit(long index, PaymentApprovedRequest req) {
+        try {
+            PaymentPublication publication =
+                    paymentIngress.approvePayment(req.paymentId(), req.userId(), req.money());
+            return new Pending(index, req.paymentId(), publication.event().eventId(),
+                    publication.ack().thenApply(SendResult::getRecordMetadata), null);
+        } catch (OutboxNotDurableException ex) {
+            // não é rejeição de negócio: a linha sai FAILED e pode ser reenviada
+            return new Pending(index, req.paymentId(), ex.getEventId(), CompletableFuture.failedFuture(ex), null);
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            return new Pending(index, req.paymentId(), null, null, ex.getMessage());
+        }
+    }
+
+    private static Pending rejected(long index, JsonProcessingException ex) {
+        // amount/currency inválidos: a mensagem útil é a do Money, não a do Jackson
+        String message = ex instanceof ValueInstantiationException && ex.getCause() != null
+                ? ex.getCause().getMessage()
+                : ex.getOriginalMessage();
+        return new Pending(index, null, null, null, message);
+    }
+
+    // descarta o espaço inicial e devolve o primeiro byte sem consumi-lo (-1 = corpo vazio)
+    private static int firstNonWhitespace(BufferedInputStream input) throws IOException {
+        while (true) {
+            input.mark(1);
+            int b = input.read();
+            if (b == -1 || !Character.isWhitespace(b)) {
+                input.reset();
+                return b;
+            }
+        }
+    }
+    /** Escreve o resultado mais antigo; faz flush antes de bloquear esperando um ack. */
+    private void writeNext(ArrayDeque<Pending> inFlight, JsonGenerator generator) throws IOException {
+
+        Pending head = inFlight.poll();
+
+        if (head.ack() != null && !head.ack().isDone()) {
+            generator.flush();
+        }
+
+        generator.writeObject(head.toResult());
+        generator.writeRaw('\n');
+    }
+
+    private record Pending(long index,
+                           String paymentId,
+                           String eventId,
+                           CompletableFuture<RecordMetadata> ack,
+                           String rejection) {
+
+        BulkPaymentResult toResult() {
+            if (ack == null) {
+                return new BulkPaymentResult(index, paymentId, null, "REJECTED", null, null, rejection);
+            }
+            try {
+                RecordMetadata metadata = ack.join();
+                return new BulkPaymentResult(index, paymentId, eventId, "ACKED", metadata.partition(), metadata.offset(), null);
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                return new BulkPaymentResult(index, paymentId, eventId, "FAILED", null, null, cause.getMessage());
+            }
+        }
+    }
+}
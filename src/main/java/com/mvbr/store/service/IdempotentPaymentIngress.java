@@ -0,0 +1,188 @@
+package com.mvbr.store.service;
+
+import com.mvbr.store.model.Money;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Idempotência na entrada por paymentId: retries e cliques duplos do cliente não geram
+ * um eventId (nem um registro no Kafka) novo.
+ *
+ * <p>Pedidos concorrentes para o mesmo paymentId compartilham uma única chamada a
+ * {@link PaymentService#approvePayment} (single-flight) e recebem a mesma
+ * {@link PaymentPublication}, com o mesmo ack. Depois do ack, a publicação fica em cache
+ * por {@code ttl} e os re-envios são respondidos sem tocar no Kafka. Se o ack falhar, a
+ * entrada sai do cache e o próximo pedido volta a passar pelo {@link PaymentService}.
+ *
+ * <p>Guarda no máximo {@code capacity} publicações confirmadas; as mais antigas saem primeiro.
+ */
+@Component
+public class IdempotentPaymentIngress {
+
+    private final PaymentService paymentService;
+    private final long ttlNanos;
+    private final int capacity;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // ordem de confirmação = ordem de expiração (TTL fixo)
+    private final Queue<Expiry> expiryOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+
+    public IdempotentPaymentIngress(PaymentService paymentService,
+                                    @Value("${store.ingress.idempotency.ttl:10m}") Duration ttl,
+                                    @Value("${store.ingress.idempotency.capacity:100000}") int capacity,
+                                    MeterRegistry meterRegistry) {
+        this.paymentService = paymentService;
+        this.ttlNanos = ttl.toNanos();
+        this.capacity = capacity;
+
+        FunctionCounter.builder("store.ingress.published", this, IdempotentPaymentIngress::published)
+                .description("Approval requests that reached PaymentService")
+                .register(meterRegistry);
+        FunctionCounter.builder("store.ingress.collapsed", this, IdempotentPaymentIngress::collapsed)
+                .description("Duplicate approval requests that joined an in-flight publish")
+                .register(meterRegistry);
+        FunctionCounter.builder("store.ingress.cached", this, IdempotentPaymentIngress::cached)
+                .description("Duplicate approval requests answered from the acked cache")
+                .register(meterRegistry);
+        Gauge.builder("store.ingress.entries", entries, ConcurrentHashMap::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Mesmo contrato de {@link PaymentService#approvePayment}, mas um paymentId já em andamento
+     * ou confirmado há menos de {@code ttl} devolve a publicação existente. O mesmo paymentId
+     * com userId/valor diferentes lança {@link IllegalArgumentException}.
+     */
+    public PaymentPublication approvePayment(String paymentId, String userId, Money amount) {
+
+        if (paymentId == null) {
+            return paymentService.approvePayment(null, userId, amount);
+        }
+
+        evictExpired(System.nanoTime());
+
+        Entry entry = new Entry();
+        Entry existing;
+        while ((existing = entries.putIfAbsent(paymentId, entry)) != null) {
+            if (!existing.isExpired(System.nanoTime())) {
+                (existing.isAcked() ? cached : collapsed).increment();
+                return matching(await(existing), paymentId, userId, amount);
+            }
+            entries.remove(paymentId, existing);
+        }
+
+        PaymentPublication publication;
+        try {
+            publication = paymentService.approvePayment(paymentId, userId, amount);
+        } catch (RuntimeException ex) {
+            // recusa (já aprovado, cancelado, dados diferentes): não fica em cache
+            entries.remove(paymentId, entry);
+            entry.publication.completeExceptionally(ex);
+            throw ex;
+        }
+        published.increment();
+        entry.publication.complete(publication);
+
+        publication.ack().whenComplete((result, ex) -> {
+            if (ex != null) {
+                entries.remove(paymentId, entry);
+                return;
+            }
+            entry.expiresAt = System.nanoTime() + ttlNanos;
+            expiryOrder.add(new Expiry(paymentId, entry));
+            evictOverflow();
+        });
+
+        return publication;
+    }
+
+    public long published() {
+        return published.sum();
+    }
+
+    public long collapsed() {
+        return collapsed.sum();
+    }
+
+    public long cached() {
+        return cached.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Espera a chamada em andamento; a recusa dela é relançada para este pedido também. */
+    private static PaymentPublication await(Entry entry) {
+        try {
+            return entry.publication.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private static PaymentPublication matching(PaymentPublication publication, String paymentId,
+                                               String userId, Money amount) {
+        if (!Objects.equals(publication.event().userId(), userId)
+                || !Objects.equals(publication.event().money(), amount)) {
+            throw new IllegalArgumentException("Payment " + paymentId + " was already submitted with different data");
+        }
+        return publication;
+    }
+
+    private void evictExpired(long now) {
+        Expiry head;
+        while ((head = expiryOrder.peek()) != null && head.entry().isExpired(now)) {
+            if (expiryOrder.remove(head)) {
+                entries.remove(head.paymentId(), head.entry());
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        while (entries.size() > capacity) {
+            Expiry oldest = expiryOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest.paymentId(), oldest.entry());
+        }
+    }
+
+    /** Uma publicação por paymentId; {@code expiresAt} só é definido depois do ack. */
+    private static final class Entry {
+
+        final CompletableFuture<PaymentPublication> publication = new CompletableFuture<>();
+        volatile long expiresAt;
+
+        boolean isAcked() {
+            return expiresAt != 0;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+
+    private record Expiry(String paymentId, Entry entry) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.mvbr.store.service;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Evento publicado + o ack do broker ainda em andamento.
+ * O eventId já está disponível antes do ack (usado no modo 202 + consulta de status).
+ */
+public record PaymentPublication(
+        PaymentApprovedEvent event,
+        CompletableFuture<SendResult<String, Object>> ack
+) {}
@@ -1,52 +1,100 @@
 package com.mvbr.store.service;
 
+import com.mvbr.store.event.EventIds;
 import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
 import com.mvbr.store.model.Payment;
+import com.mvbr.store.outbox.OutboxNotDurableException;
+import com.mvbr.store.outbox.PaymentOutbox;
 import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.repository.PaymentRepository;
+import com.mvbr.store.tracing.PaymentTracer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class PaymentService {
 
-    // repository ????????
-
+    private final PaymentRepository paymentRepository;
     private final PaymentApprovedProducer paymentApprovedProducer;
+    private final PaymentTracer paymentTracer;
+
+    // store.outbox.enabled=true → o evento vai para o outbox local e o relay publica
+    @Nullable
+    private final PaymentOutbox paymentOutbox;
 
-    public PaymentService(PaymentApprovedProducer paymentApprovedProducer) {
+    public PaymentService(PaymentRepository paymentRepository,
+                          PaymentApprovedProducer paymentApprovedProducer,
+                          PaymentTracer paymentTracer,
+                          @Nullable PaymentOutbox paymentOutbox) {
+        this.paymentRepository = paymentRepository;
         this.paymentApprovedProducer = paymentApprovedProducer;
+        this.paymentTracer = paymentTracer;
+        this.paymentOutbox = paymentOutbox;
     }
 
-    public void approvePayment(Payment payment) {
+    /**
+     * Busca (ou registra) o pagamento e faz PENDING → APPROVED por CAS.
+     * Re-aprovação com os mesmos dados: se o broker já confirmou o evento, devolve o mesmo ack
+     * sem publicar; senão (publicação falhou, em andamento ou desconhecida) publica de novo o
+     * mesmo evento (mesmo eventId, derivado do paymentId) — o status muda antes do ack, então
+     * o cliente precisa poder repetir o pedido, e o dedup do consumer descarta a cópia. Aprovação de um cancelado lança {@link IllegalStateException};
+     * o mesmo paymentId com dados diferentes lança {@link IllegalArgumentException}; com o
+     * outbox ligado, um fsync que não confirma a tempo lança {@link OutboxNotDurableException}.
+     */
+    public PaymentPublication approvePayment(String paymentId, String userId, Money amount) {
 
         // ============================
         // Regras de negócio aqui
         // ============================
-        if (!payment.isValid()) {
-            throw new IllegalArgumentException("Invalid payment");
-        }
-
-        payment.markApproved();
+        Payment payment = paymentRepository.approveIdempotent(
+                paymentRepository.findOrRegister(paymentId, userId, amount));
 
         // =======================================
         // Agora constrói o evento COMPLETO
         // =======================================
         PaymentApprovedEvent event = new PaymentApprovedEvent(
-                UUID.randomUUID().toString(),      // eventId
+                eventId(payment),                  // eventId (UUID v7, o mesmo a cada re-aprovação)
                 payment.getPaymentId(),            // paymentId
                 payment.getUserId(),               // userId
-                payment.getAmount(),               // amount (BigDecimal)
-                payment.getCurrency(),             // currency (String)
+                payment.getAmount(),               // amount (Money: unidades mínimas + moeda)
                 payment.getStatus().name(),        // status (ex: "APPROVED")
-                System.currentTimeMillis()         // timestamp (Long)
+                System.currentTimeMillis()         // timestamp (long)
         );
 
+        RecordMetadata acked = payment.getApprovalAck();
+        if (acked != null) {
+            // já confirmado pelo broker: o mesmo registro, sem publicar de novo
+            return new PaymentPublication(event, CompletableFuture.completedFuture(
+                    new SendResult<>(new ProducerRecord<>(acked.topic(), event.userId(), event), acked)));
+        }
+
+        paymentTracer.eventBuilt(event);       // checkpoint (só requests amostrados)
+
         // =======================================
-        // dispara o evento
+        // dispara o evento (sem esperar o ack)
         // =======================================
-        paymentApprovedProducer.producePaymentApproved(event);
+        CompletableFuture<SendResult<String, Object>> ack = paymentOutbox != null
+                ? paymentOutbox.append(event)      // commit local (fsync) agora; o ack do Kafka chega pelo relay
+                : paymentApprovedProducer.producePaymentApproved(event);
+        ack.thenAccept(result -> payment.approvalAcked(result.getRecordMetadata()));
+
+        return new PaymentPublication(event, ack);
+
+    }
+
+    private static String eventId(Payment payment) {
+        return EventIds.of("approved:" + payment.getPaymentId(), payment.getCreatedAt());
+    }
 
+    /** PENDING → CANCELED; pagamento aprovado não pode ser cancelado. */
+    public Payment cancelPayment(String paymentId) {
+        return paymentRepository.cancel(paymentId);
     }
 
 }
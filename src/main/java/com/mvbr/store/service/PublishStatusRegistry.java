@@ -0,0 +1,76 @@
+package com.mvbr.store.service;
+
+import com.mvbr.store.dto.PaymentPublishResponse;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Status das publicações por eventId, para o modo 202 + consulta.
+ * Guarda no máximo {@link #CAPACITY} entradas; as mais antigas saem primeiro.
+ */
+@Component
+public class PublishStatusRegistry {
+
+    static final int CAPACITY = 100_000;
+
+    private final ConcurrentHashMap<String, PaymentPublishResponse> statuses = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Registra como PENDING e atualiza para ACKED/FAILED quando o ack chegar.
+     * O future retornado completa (sempre normalmente) com o status final.
+     * Uma publicação já registrada (re-envio do mesmo paymentId) mantém o status atual,
+     * exceto FAILED: a re-aprovação publica o mesmo eventId de novo e volta para PENDING.
+     */
+    public CompletableFuture<PaymentPublishResponse> track(PaymentPublication publication) {
+
+        String eventId = publication.event().eventId();
+        String paymentId = publication.event().paymentId();
+
+        PaymentPublishResponse pending = new PaymentPublishResponse(eventId, paymentId, "PENDING", null, null, null);
+        PaymentPublishResponse previous = statuses.putIfAbsent(eventId, pending);
+        if (previous == null) {
+            insertionOrder.add(eventId);
+            evictOverflow();
+        } else if ("FAILED".equals(previous.status())) {
+            statuses.replace(eventId, previous, pending);
+        }
+
+        return publication.ack().handle((result, ex) -> {
+            PaymentPublishResponse status = ex == null
+                    ? acked(eventId, paymentId, result.getRecordMetadata())
+                    : failed(eventId, paymentId, ex);
+            statuses.replace(eventId, pending, status);
+            return status;
+        });
+    }
+
+    public Optional<PaymentPublishResponse> find(String eventId) {
+        return Optional.ofNullable(statuses.get(eventId));
+    }
+
+    private static PaymentPublishResponse acked(String eventId, String paymentId, RecordMetadata metadata) {
+        return new PaymentPublishResponse(eventId, paymentId, "ACKED", metadata.partition(), metadata.offset(), null);
+    }
+
+    private static PaymentPublishResponse failed(String eventId, String paymentId, Throwable ex) {
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        return new PaymentPublishResponse(eventId, paymentId, "FAILED", null, null, cause.getMessage());
+    }
+
+    private void evictOverflow() {
+        while (statuses.size() > CAPACITY) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            statuses.remove(oldest);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mvbr.store.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Posição de um {@link SegmentedLog} até onde os registros já foram consumidos
+ * (outbox: confirmados pelo Kafka; spill da telemetria: reenviados).
+ * Um long em um arquivo de 8 bytes, sobrescrito + fsync a cada lote.
+ */
+public class LogCheckpoint implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    public LogCheckpoint(Path file) {
+        try {
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open log checkpoint " + file, ex);
+        }
+    }
+
+    public synchronized long load() {
+        try {
+            if (channel.size() < Long.BYTES) {
+                return 0;
+            }
+            buffer.clear();
+            channel.read(buffer, 0);
+            return buffer.flip().getLong();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public synchronized void save(long position) {
+        try {
+            buffer.clear().putLong(position).flip();
+            channel.write(buffer, 0);
+            channel.force(false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
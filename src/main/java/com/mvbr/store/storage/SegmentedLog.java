@@ -0,0 +1,278 @@
+package com.mvbr.store.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Log append-only em segmentos de tamanho fixo mapeados em memória.
+ *
+ * <p>Cada registro é gravado como {@code [tamanho:int][crc32c:int][payload]}. A posição de um
+ * registro é global: {@code base do segmento + offset dentro dele}; o arquivo de cada segmento
+ * se chama {@code <base>.log}. Um tamanho 0 (ou falta de espaço para o cabeçalho) marca o fim
+ * dos dados do segmento, e a leitura segue para o próximo.
+ *
+ * <p>Um único escritor por vez ({@link #append} é sincronizado); leituras podem acontecer em
+ * paralelo e só enxergam o que está abaixo de {@link #writePosition()}. {@link #flush()} faz o
+ * fsync do que foi escrito desde o último flush.
+ */
+public class SegmentedLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private Segment active;
+    private volatile long writePosition;
+
+    // flush tem lock próprio: o fsync não bloqueia quem está fazendo append
+    private final Object flushLock = new Object();
+    private long flushedPosition;
+
+    public SegmentedLog(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                    String name = file.getFileName().toString();
+                    long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                    segments.put(base, Segment.open(file, base, segmentBytes));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open log at " + directory, ex);
+        }
+
+        if (segments.isEmpty()) {
+            this.active = createSegment(0);
+            this.writePosition = 0;
+        } else {
+            this.active = segments.lastEntry().getValue();
+            this.writePosition = active.base + recover(active);
+        }
+        this.flushedPosition = writePosition;
+    }
+
+    /** Grava o payload e devolve a posição do registro. */
+    public synchronized long append(byte[] payload) {
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a segment");
+        }
+
+        int offset = (int) (writePosition - active.base);
+        if (offset + size > segmentBytes) {
+            active = createSegment(active.base + segmentBytes);
+            offset = 0;
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        active.buffer.put(offset + HEADER_BYTES, payload);
+        active.buffer.putInt(offset + 4, (int) crc.getValue());
+        active.buffer.putInt(offset, payload.length);
+
+        long position = active.base + offset;
+        writePosition = position + size;
+        return position;
+    }
+
+    /** fsync de tudo que foi escrito até agora; devolve a posição garantida em disco. */
+    public long flush() {
+        synchronized (flushLock) {
+            long target = writePosition;
+            long from = Math.max(flushedPosition, startPosition());
+            for (Segment segment : segments.tailMap(segments.floorKey(from)).values()) {
+                long start = Math.max(from, segment.base);
+                long end = Math.min(target, segment.base + segmentBytes);
+                if (end > start) {
+                    segment.buffer.force((int) (start - segment.base), (int) (end - start));
+                }
+            }
+            flushedPosition = target;
+            return target;
+        }
+    }
+
+    public long writePosition() {
+        return writePosition;
+    }
+
+    /** Posição do registro mais antigo ainda em disco. */
+    public long startPosition() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Lê registros a partir de {@code from} (inclusive) até {@code limit} (exclusive), no máximo
+     * {@code maxRecords}. Devolve a posição seguinte ao último registro lido.
+     */
+    public long read(long from, long limit, int maxRecords, RecordVisitor visitor) {
+        long position = Math.max(from, startPosition());
+        int count = 0;
+
+        while (count < maxRecords && position < limit) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            Segment segment = entry.getValue();
+            int offset = (int) (position - segment.base);
+
+            int length = offset + HEADER_BYTES > segmentBytes ? 0 : segment.buffer.getInt(offset);
+            if (length == 0) {
+                position = segment.base + segmentBytes;
+                continue;
+            }
+
+            visitor.visit(position, payloadAt(segment, offset, length));
+            position += HEADER_BYTES + length;
+            count++;
+        }
+
+        return position;
+    }
+
+    /** Lê um único registro pela posição devolvida por {@link #append}. */
+    public byte[] readAt(long position) {
+        if (position < startPosition() || position >= writePosition) {
+            throw new IllegalArgumentException("Position " + position + " is outside the log");
+        }
+        Segment segment = segments.floorEntry(position).getValue();
+        int offset = (int) (position - segment.base);
+        return payloadAt(segment, offset, segment.buffer.getInt(offset));
+    }
+
+    /** Apaga os segmentos que terminam antes de {@code position} (o ativo nunca é apagado). */
+    public void deleteSegmentsBefore(long position) {
+        for (Segment segment : List.copyOf(segments.headMap(active.base).values())) {
+            if (segment.base + segmentBytes <= position) {
+                delete(segment);
+            }
+        }
+    }
+
+    /** Apaga os segmentos (exceto o ativo) cujo arquivo não é alterado desde {@code cutoffMillis}. */
+    public void deleteSegmentsModifiedBefore(long cutoffMillis) {
+        for (Segment segment : List.copyOf(segments.headMap(active.base).values())) {
+            try {
+                if (Files.getLastModifiedTime(segment.path).toMillis() < cutoffMillis) {
+                    delete(segment);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private byte[] payloadAt(Segment segment, int offset, int length) {
+        if (length < 0 || offset + HEADER_BYTES + length > segmentBytes) {
+            throw new IllegalStateException("Corrupted record at " + (segment.base + offset));
+        }
+
+        byte[] payload = new byte[length];
+        segment.buffer.get(offset + HEADER_BYTES, payload);
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        if ((int) crc.getValue() != segment.buffer.getInt(offset + 4)) {
+            throw new IllegalStateException("CRC mismatch at " + (segment.base + offset));
+        }
+        return payload;
+    }
+
+    /**
+     * Encontra o fim dos dados válidos do segmento ativo depois de um crash e zera o resto,
+     * para que registros parcialmente escritos nunca sejam lidos.
+     */
+    private int recover(Segment segment) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            try {
+                payloadAt(segment, offset, length);
+            } catch (IllegalStateException corrupted) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+
+        byte[] zeros = new byte[64 * 1024];
+        for (int i = offset; i < segmentBytes; i += zeros.length) {
+            segment.buffer.put(i, zeros, 0, Math.min(zeros.length, segmentBytes - i));
+        }
+        segment.buffer.force();
+        return offset;
+    }
+
+    private Segment createSegment(long base) {
+        Path file = directory.resolve(String.format("%020d%s", base, SUFFIX));
+        try {
+            Segment segment = Segment.open(file, base, segmentBytes);
+            segments.put(base, segment);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not create segment " + file, ex);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.base);
+        segment.close();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(long position, byte[] payload);
+    }
+
+    private record Segment(Path path, long base, FileChannel channel, MappedByteBuffer buffer) {
+
+        static Segment open(Path path, long base, int segmentBytes) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            return new Segment(path, base, channel, buffer);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // o mapeamento continua válido até ser coletado
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.mvbr.store.telemetry;
+
+import java.util.Map;
+
+/**
+ * Evento de telemetria (alto volume, baixo valor): perder alguns é aceitável,
+ * bloquear a thread de quem emite não é.
+ */
+public record TelemetryEvent(
+        String type,                       // ex: "page-view", "checkout-step"
+        String key,                        // chave do registro (partição); pode ser null
+        Map<String, String> attributes,
+        long timestamp
+) {}
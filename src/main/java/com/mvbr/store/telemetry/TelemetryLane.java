@@ -0,0 +1,266 @@
+package com.mvbr.store.telemetry;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mvbr.store.concurrent.MpscRingBuffer;
+import com.mvbr.store.storage.LogCheckpoint;
+import com.mvbr.store.storage.SegmentedLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lane fire-and-forget de telemetria sobre o producer rápido (acks=0, linger 50ms).
+ *
+ * <p>{@link #emit} só enfileira o evento num {@link MpscRingBuffer} e nunca bloqueia: com a
+ * fila cheia o evento é descartado (e contado). Uma única thread drena a fila e chama o
+ * {@code send}. O template roda com {@code max.block.ms=0}, então com o buffer de envio
+ * cheio (ou sem metadata do tópico) o {@code send} falha na hora em vez de segurar a thread:
+ * o evento vai para um {@link SegmentedLog} local (spill) e é reenviado quando a fila esvazia
+ * e o producer volta a aceitar. O spill tem tamanho máximo; acima dele o evento é descartado.
+ *
+ * <p>O spill não faz fsync por evento: um crash pode perder o que ainda não foi para o disco.
+ */
+public class TelemetryLane implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetryLane.class);
+
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // depois de um spill, espera antes de tentar reenviar (o buffer do producer precisa esvaziar)
+    private static final long REPLAY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final KafkaTemplate<String, Object> template;
+    private final String topic;
+    private final ObjectMapper objectMapper;
+
+    private final MpscRingBuffer<TelemetryEvent> buffer;
+
+    private final SegmentedLog spill;
+    private final LogCheckpoint spillCheckpoint;
+    private final long maxSpillBytes;
+    private volatile long replayPosition;
+    private volatile long lastSpillNanos;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private volatile long sent;
+
+    private volatile boolean running = true;
+    private final Thread sender;
+
+    public TelemetryLane(KafkaTemplate<String, Object> template,
+                         String topic,
+                         int capacity,
+                         Path spillDirectory,
+                         int spillSegmentBytes,
+                         long maxSpillBytes,
+                         ObjectMapper objectMapper) {
+        this.template = template;
+        this.topic = topic;
+        this.objectMapper = objectMapper;
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.spill = new SegmentedLog(spillDirectory, spillSegmentBytes);
+        this.spillCheckpoint = new LogCheckpoint(spillDirectory.resolve("replay.checkpoint"));
+        this.maxSpillBytes = maxSpillBytes;
+        this.replayPosition = spillCheckpoint.load();
+        this.lastSpillNanos = System.nanoTime() - REPLAY_BACKOFF_NANOS;
+        this.sender = Thread.ofPlatform().name("telemetry-sender").daemon().start(this::sendLoop);
+    }
+
+    /** Enfileira o evento; false se foi descartado (fila cheia ou lane fechada). Nunca bloqueia. */
+    public boolean emit(TelemetryEvent event) {
+        if (running && buffer.offer(event)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    // =============================
+    // SENDER
+    // =============================
+
+    private void sendLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int count = drain();
+            if (count > 0) {
+                sent += count;
+            } else if (stopping) {
+                return;
+            } else if (!replay()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private int drain() {
+        int count = 0;
+        TelemetryEvent event;
+        while (count < MAX_BATCH && (event = buffer.poll()) != null) {
+            if (!send(event)) {
+                spill(event);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /** false se o producer recusou na hora (buffer cheio, sem metadata); o evento não foi enviado. */
+    private boolean send(TelemetryEvent event) {
+        CompletableFuture<SendResult<String, Object>> future;
+        try {
+            future = template.send(topic, event.key(), event);
+        } catch (RuntimeException ex) {
+            log.debug("Telemetry send rejected", ex);
+            return false;
+        }
+        if (future.isCompletedExceptionally()) {
+            return false;
+        }
+        // falha depois de aceito (batch expirado): volta para o spill também
+        future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                spill(event);
+            }
+        });
+        return true;
+    }
+
+    // =============================
+    // SPILL (disco local)
+    // =============================
+
+    private void spill(TelemetryEvent event) {
+        if (spillBacklogBytes() >= maxSpillBytes) {
+            dropped.increment();
+            return;
+        }
+        try {
+            spill.append(objectMapper.writeValueAsBytes(event));
+            spilled.increment();
+            lastSpillNanos = System.nanoTime();
+        } catch (JsonProcessingException | RuntimeException ex) {
+            log.warn("Could not spill telemetry event {}", event.type(), ex);
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Reenvia um lote do spill, na ordem em que foi gravado. Para no primeiro evento recusado
+     * pelo producer (continua no spill para a próxima tentativa). true se enviou algum.
+     */
+    private boolean replay() {
+        long from = replayPosition;
+        long limit = spill.writePosition();
+        if (from >= limit || System.nanoTime() - lastSpillNanos < REPLAY_BACKOFF_NANOS) {
+            return false;
+        }
+
+        List<SpilledEvent> batch = new ArrayList<>(MAX_BATCH);
+        long after = spill.read(from, limit, MAX_BATCH, (position, payload) -> batch.add(new SpilledEvent(position, payload)));
+
+        // posição até onde o spill já foi consumido: o próximo registro, ou o fim do lote
+        long next = after;
+        int count = 0;
+        for (SpilledEvent entry : batch) {
+            TelemetryEvent event = decode(entry);
+            if (event == null) {
+                continue;
+            }
+            if (!send(event)) {
+                next = entry.position();
+                lastSpillNanos = System.nanoTime();
+                break;
+            }
+            count++;
+        }
+
+        if (next != from) {
+            spillCheckpoint.save(next);
+            replayPosition = next;
+            spill.deleteSegmentsBefore(next);
+        }
+        replayed.add(count);
+        return count > 0;
+    }
+
+    private TelemetryEvent decode(SpilledEvent entry) {
+        try {
+            return objectMapper.readValue(entry.payload(), TelemetryEvent.class);
+        } catch (IOException ex) {
+            log.warn("Discarding unreadable spilled telemetry event at {}", entry.position(), ex);
+            dropped.increment();
+            return null;
+        }
+    }
+
+    // =============================
+    // COUNTERS
+    // =============================
+
+    /** Eventos aceitos na fila. */
+    public long accepted() {
+        return buffer.published();
+    }
+
+    /** Eventos entregues ao producer (ou ao spill) pela thread de envio. */
+    public long sent() {
+        return sent;
+    }
+
+    /** Eventos descartados: fila cheia, spill cheio ou lane fechada. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /** Eventos gravados no spill porque o producer não aceitou. */
+    public long spilled() {
+        return spilled.sum();
+    }
+
+    /** Eventos do spill reenviados ao producer. */
+    public long replayed() {
+        return replayed.sum();
+    }
+
+    /** Eventos na fila esperando a thread de envio. */
+    public long pending() {
+        return Math.max(0, accepted() - sent);
+    }
+
+    /** Bytes no spill ainda não reenviados (inclui framing). */
+    public long spillBacklogBytes() {
+        return Math.max(0, spill.writePosition() - replayPosition);
+    }
+
+    /** Para de aceitar eventos, envia o que está na fila e fecha o spill (o resto é reenviado na próxima subida). */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(sender);
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        template.flush();
+        spill.close();
+        spillCheckpoint.close();
+    }
+
+    private record SpilledEvent(long position, byte[] payload) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.mvbr.store.tracing;
+
+import com.mvbr.store.dto.StageLatencyResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Últimas amostras de latência de cada {@link TraceStage}, em rings de tamanho fixo.
+ *
+ * <p>Gravar é um {@code getAndIncrement} + um {@code set} no slot, sem lock e sem alocação:
+ * quando o ring dá a volta, a amostra mais antiga é sobrescrita. A leitura copia o ring
+ * e calcula os percentis na hora (pode misturar uma amostra em escrita, o que não importa
+ * para um resumo de latência).
+ */
+public class LatencyFlightRecorder {
+
+    private final Ring[] rings = new Ring[TraceStage.values().length];
+
+    public LatencyFlightRecorder(int samplesPerStage) {
+        int size = Integer.highestOneBit(Math.max(2, samplesPerStage - 1)) << 1;
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new Ring(size);
+        }
+    }
+
+    /** Latências negativas (relógios de máquinas diferentes) são descartadas. */
+    public void record(TraceStage stage, long nanos) {
+        if (nanos >= 0) {
+            rings[stage.ordinal()].record(nanos);
+        }
+    }
+
+    public StageLatencyResponse snapshot(TraceStage stage) {
+        Ring ring = rings[stage.ordinal()];
+        long total = ring.next.get();
+        int samples = (int) Math.min(total, ring.values.length());
+
+        long[] values = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            values[i] = ring.values.get(i);
+        }
+        Arrays.sort(values);
+
+        return new StageLatencyResponse(stage.name(), stage.description(), samples, total,
+                micros(percentile(values, 0.50)),
+                micros(percentile(values, 0.90)),
+                micros(percentile(values, 0.99)),
+                micros(samples == 0 ? 0 : values[samples - 1]));
+    }
+
+    public List<StageLatencyResponse> snapshot() {
+        List<StageLatencyResponse> stages = new ArrayList<>(rings.length);
+        for (TraceStage stage : TraceStage.values()) {
+            stages.add(snapshot(stage));
+        }
+        return stages;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000.0;
+    }
+
+    private static final class Ring {
+
+        final AtomicLongArray values;
+        final AtomicLong next = new AtomicLong();
+        final int mask;
+
+        Ring(int size) {
+            this.values = new AtomicLongArray(size);
+            this.mask = size - 1;
+        }
+
+        void record(long nanos) {
+            values.set((int) (next.getAndIncrement() & mask), nanos);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.mvbr.store.tracing;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracing amostrado do caminho de um pagamento aprovado, com checkpoints em nanos.
+ *
+ * <ol>
+ *   <li>{@link #begin()}: HTTP recebido (thread do request; decide a amostragem);</li>
+ *   <li>{@link #eventBuilt}: evento montado no {@code PaymentService};</li>
+ *   <li>{@link #sending}: {@code send} no producer (direto ou pelo relay do outbox) — os três
+ *       checkpoints vão para os headers {@code trace-*} do registro;</li>
+ *   <li>{@link #acked}: ack do broker;</li>
+ *   <li>{@link #handled}: no consumer, com o instante em que o lote chegou do poll.</li>
+ * </ol>
+ *
+ * <p>Os checkpoints usam um relógio em nanos desde a época ({@code nanoTime} ancorado no
+ * {@code currentTimeMillis} na subida), comparável entre producer e consumer do mesmo host.
+ * As latências vão para o {@link LatencyFlightRecorder}.
+ *
+ * <p>Com {@code sample-rate} 0 o custo é uma leitura volátil por checkpoint; com
+ * {@code store.tracing.enabled=false}, nem isso (o consumer não olha os headers).
+ */
+@Component
+public class PaymentTracer {
+
+    public static final String RECEIVED_HEADER = "trace-received";
+    public static final String BUILT_HEADER = "trace-built";
+    public static final String SENT_HEADER = "trace-sent";
+
+    // limite de eventos amostrados esperando o send (um bulk amostrado não enche a memória)
+    private static final int MAX_PENDING = 10_000;
+
+    private static final long BASE_EPOCH_NANOS = System.currentTimeMillis() * 1_000_000L;
+    private static final long BASE_NANO_TIME = System.nanoTime();
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private volatile double sampleRate;
+    private final LatencyFlightRecorder recorder;
+
+    // evento amostrado que não chegou ao send (falhou entre o build e o send, ou o outbox
+    // ainda não publicou) sai do pending depois de pendingTtl, na limpeza feita quando enche
+    private final ConcurrentHashMap<String, Stamp> pending = new ConcurrentHashMap<>();
+    private final long pendingTtlNanos;
+    private volatile long nextSweepNanos;
+
+    public PaymentTracer(@Value("${store.tracing.enabled:true}") boolean enabled,
+                         @Value("${store.tracing.sample-rate:0.0}") double sampleRate,
+                         @Value("${store.tracing.samples-per-stage:4096}") int samplesPerStage,
+                         @Value("${store.tracing.pending-ttl:2m}") Duration pendingTtl) {
+        this.enabled = enabled;
+        this.recorder = new LatencyFlightRecorder(samplesPerStage);
+        this.pendingTtlNanos = pendingTtl.toNanos();
+        setSampleRate(sampleRate);
+    }
+
+    /** Tracer desligado (benchmarks/testes que montam o serviço na mão). */
+    public static PaymentTracer disabled() {
+        return new PaymentTracer(false, 0, 2, Duration.ZERO);
+    }
+
+    /** Nanos desde a época, com a resolução do {@code nanoTime}. */
+    public static long now() {
+        return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANO_TIME);
+    }
+
+    // =============================
+    // PRODUCER SIDE
+    // =============================
+
+    /** HTTP recebido. true se o request foi amostrado: chamar {@link #end()} ao terminar. */
+    public boolean begin() {
+        double rate = sampleRate;
+        if (rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate) {
+            return false;
+        }
+        CURRENT.set(now());
+        return true;
+    }
+
+    public void end() {
+        CURRENT.remove();
+    }
+
+    /** Evento montado; só guarda se o request desta thread foi amostrado. */
+    public void eventBuilt(PaymentApprovedEvent event) {
+        if (sampleRate <= 0) {
+            return;
+        }
+        Long received = CURRENT.get();
+        if (received == null) {
+            return;
+        }
+        long built = now();
+        if (pending.size() >= MAX_PENDING && !expirePending(built)) {
+            return;
+        }
+        pending.put(event.eventId(), new Stamp(received, built, 0));
+        recorder.record(TraceStage.SERVICE, built - received);
+    }
+
+    /** Descarta os pendentes mais velhos que {@code pendingTtl}; no máximo uma limpeza a cada ttl/4. */
+    private boolean expirePending(long now) {
+        if (now < nextSweepNanos) {
+            return false;
+        }
+        nextSweepNanos = now + pendingTtlNanos / 4;
+        pending.values().removeIf(stamp -> now - stamp.built() > pendingTtlNanos);
+        return pending.size() < MAX_PENDING;
+    }
+
+    /** O evento vai para o {@code send}; null se não foi amostrado. */
+    public Stamp sending(PaymentApprovedEvent event) {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Stamp built = pending.remove(event.eventId());
+        if (built == null) {
+            return null;
+        }
+        Stamp stamp = new Stamp(built.received(), built.built(), now());
+        recorder.record(TraceStage.PUBLISH_QUEUE, stamp.sent() - stamp.built());
+        return stamp;
+    }
+
+    public void acked(Stamp stamp) {
+        recorder.record(TraceStage.PRODUCER_ACK, now() - stamp.sent());
+    }
+
+    // =============================
+    // CONSUMER SIDE
+    // =============================
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** Registro processado; {@code polledNanos} = {@link #now()} quando o lote chegou. */
+    public void handled(ConsumerRecord<?, ?> record, long polledNanos) {
+        if (!enabled) {
+            return;
+        }
+        Header sent = record.headers().lastHeader(SENT_HEADER);
+        if (sent == null) {
+            return;
+        }
+        long handled = now();
+        recorder.record(TraceStage.DELIVERY, polledNanos - decode(sent));
+        recorder.record(TraceStage.HANDLER, handled - polledNanos);
+
+        Header received = record.headers().lastHeader(RECEIVED_HEADER);
+        if (received != null) {
+            recorder.record(TraceStage.END_TO_END, handled - decode(received));
+        }
+    }
+
+    // =============================
+    // QUERY / CONFIG
+    // =============================
+
+    public LatencyFlightRecorder recorder() {
+        return recorder;
+    }
+
+    public double sampleRate() {
+        return sampleRate;
+    }
+
+    /** 0 desliga a amostragem; 1 amostra todos os requests. */
+    public void setSampleRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + rate);
+        }
+        this.sampleRate = enabled ? rate : 0;
+    }
+
+    private static long decode(Header header) {
+        byte[] value = header.value();
+        return value != null && value.length == Long.BYTES ? ByteBuffer.wrap(value).getLong() : 0;
+    }
+
+    private static Header header(String key, long nanos) {
+        return new RecordHeader(key, ByteBuffer.allocate(Long.BYTES).putLong(nanos).array());
+    }
+
+    /** Checkpoints de um evento amostrado (nanos desde a época; 0 = ainda não passou). */
+    public record Stamp(long received, long built, long sent) {
+
+        /** Os headers fixos do producer + os três checkpoints. */
+        public List<Header> headers(List<Header> base) {
+            List<Header> headers = new ArrayList<>(base.size() + 3);
+            headers.addAll(base);
+            headers.add(header(RECEIVED_HEADER, received));
+            headers.add(header(BUILT_HEADER, built));
+            headers.add(header(SENT_HEADER, sent));
+            return headers;
+        }
+    }
+}
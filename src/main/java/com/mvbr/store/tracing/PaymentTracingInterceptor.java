@@ -0,0 +1,46 @@
+package com.mvbr.store.tracing;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Checkpoint "HTTP recebido" dos POSTs de pagamento aprovado ({@code PaymentController}).
+ * A decisão de amostragem fica na thread do request até o handler retornar.
+ */
+public class PaymentTracingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String TRACED = PaymentTracingInterceptor.class.getName() + ".traced";
+
+    private final PaymentTracer tracer;
+
+    public PaymentTracingInterceptor(PaymentTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if ("POST".equals(request.getMethod()) && tracer.begin()) {
+            request.setAttribute(TRACED, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    // modo assíncrono: o handler já retornou e a thread volta para o Tomcat
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        end(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        end(request);
+    }
+
+    private void end(HttpServletRequest request) {
+        if (request.getAttribute(TRACED) != null) {
+            request.removeAttribute(TRACED);
+            tracer.end();
+        }
+    }
+}
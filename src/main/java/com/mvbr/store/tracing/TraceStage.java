@@ -0,0 +1,22 @@
+package com.mvbr.store.tracing;
+
+/** Trechos medidos entre os checkpoints de um pagamento amostrado. */
+public enum TraceStage {
+
+    SERVICE("HTTP received -> event built"),
+    PUBLISH_QUEUE("event built -> producer send (outbox wait included)"),
+    PRODUCER_ACK("producer send -> broker ack (accumulator + broker)"),
+    DELIVERY("producer send -> consumer poll (broker + fetch)"),
+    HANDLER("consumer poll -> handled (listener queue + handler)"),
+    END_TO_END("HTTP received -> handled");
+
+    private final String description;
+
+    TraceStage(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+}
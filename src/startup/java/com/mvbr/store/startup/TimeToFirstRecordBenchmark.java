@@ -0,0 +1,298 @@
+package com.mvbr.store.startup;
+
+import com.mvbr.store.consumer.retry.ApprovedRetryTopics;
+import com.mvbr.store.event.EventIds;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.codec.VersionedEventSerializer;
+import com.mvbr.store.model.Money;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tempo do lançamento da JVM até o primeiro registro consumido do {@code payment.approved.v1},
+ * contra um Kafka embedded (KRaft) que roda neste processo.
+ *
+ * <p>A cada execução um evento é publicado antes de a aplicação subir (o group já tem offset
+ * commitado, então o consumer começa nele) e a aplicação é lançada numa JVM nova. O relógio
+ * para quando o offset commitado do {@code payment-service-approved-group} passa do evento:
+ * o listener crítico só commita depois de processar o lote. A leitura do offset é feita a cada
+ * {@link #POLL_INTERVAL}, que é a resolução da medida. A aplicação é encerrada com SIGTERM,
+ * o que faz o consumer sair do group sem esperar o session timeout na execução seguinte.
+ *
+ * <p>Modos ({@code startup.modes}):
+ * <ul>
+ *   <li>baseline: {@code java -jar} do fat jar, containers subindo no refresh (um a um)</li>
+ *   <li>parallel: fat jar com {@code store.kafka.listeners.lazy-startup=true}</li>
+ *   <li>aot: jar extraído com {@code -Dspring.aot.enabled=true} + lazy-startup</li>
+ *   <li>aot-cds: aot + {@code -XX:SharedArchiveFile} do training run</li>
+ * </ul>
+ *
+ * <p>Relatório (min/mediana/max por modo) no stdout e em {@code startup.report-dir}, com o log
+ * de cada execução. Com {@code startup.budget}, o build falha se a mediana do último modo
+ * passar dele. Roda no profile {@code fast-startup}: {@code ./mvnw -Pfast-startup verify}.
+ */
+public final class TimeToFirstRecordBenchmark {
+
+    private static final String GROUP = "payment-service-approved-group";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+    private static final Money AMOUNT = Money.parse("10.00", "BRL");
+
+    private TimeToFirstRecordBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Settings settings = Settings.fromSystemProperties();
+        Files.createDirectories(settings.reportDir());
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, 3, ApprovedRetryTopics.MAIN);
+        broker.afterPropertiesSet();
+
+        Map<Mode, List<Long>> results = new LinkedHashMap<>();
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()));
+             KafkaProducer<String, Object> producer = producer(broker.getBrokersAsString())) {
+
+            commitEndOffsets(admin);
+
+            for (Mode mode : settings.modes()) {
+                if (!mode.available(settings)) {
+                    System.out.printf("Skipping %s: %s not found (run ./mvnw -Pfast-startup package)%n",
+                            mode.name, mode.requiredFile(settings));
+                    continue;
+                }
+                List<Long> millis = new ArrayList<>();
+                for (int run = -settings.warmup(); run < settings.runs(); run++) {
+                    long elapsed = measure(mode, run, settings, broker.getBrokersAsString(), admin, producer);
+                    if (run >= 0) {
+                        millis.add(elapsed);
+                        System.out.printf("%-10s run %d: %d ms%n", mode.name, run + 1, elapsed);
+                    }
+                }
+                results.put(mode, millis);
+            }
+        } finally {
+            broker.destroy();
+        }
+
+        report(settings, results);
+    }
+
+    // =============================
+    // EXECUÇÃO
+    // =============================
+
+    private static long measure(Mode mode, int run, Settings settings, String bootstrapServers,
+                                Admin admin, KafkaProducer<String, Object> producer) throws Exception {
+
+        long before = committed(admin);
+        PaymentApprovedEvent event = new PaymentApprovedEvent(EventIds.next(), "startup-" + EventIds.next(),
+                "startup-user", AMOUNT, "APPROVED", System.currentTimeMillis());
+        producer.send(new ProducerRecord<>(ApprovedRetryTopics.MAIN, event.userId(), event)).get();
+
+        Path data = Files.createTempDirectory("store-startup");
+        Path log = settings.reportDir().resolve(mode.name + "-" + (run < 0 ? "warmup" + (-run) : "run" + (run + 1)) + ".log");
+        ProcessBuilder builder = new ProcessBuilder(mode.command(settings, bootstrapServers, data))
+                .directory((mode.aot ? settings.appDir() : data).toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+
+        long started = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long deadline = started + settings.timeout().toNanos();
+            while (committed(admin) <= before) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode.name + " exited with " + process.exitValue() + ", see " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new TimeoutException(mode.name + " consumed nothing in " + settings.timeout() + ", see " + log);
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            return (System.nanoTime() - started) / 1_000_000;
+        } finally {
+            stop(process);
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    /** Soma dos offsets commitados pelo group no tópico principal. */
+    private static long committed(Admin admin) throws ExecutionException, InterruptedException {
+        Map<TopicPartition, OffsetAndMetadata> offsets =
+                admin.listConsumerGroupOffsets(GROUP).partitionsToOffsetAndMetadata().get();
+        long total = 0;
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet()) {
+            if (entry.getKey().topic().equals(ApprovedRetryTopics.MAIN) && entry.getValue() != null) {
+                total += entry.getValue().offset();
+            }
+        }
+        return total;
+    }
+
+    // o consumer usa auto.offset.reset=latest: sem offset commitado, o evento publicado antes
+    // da subida seria pulado. Commitando o fim do tópico uma vez, toda execução começa nele
+    private static void commitEndOffsets(Admin admin) throws ExecutionException, InterruptedException {
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        for (int partition = 0; partition < 3; partition++) {
+            latest.put(new TopicPartition(ApprovedRetryTopics.MAIN, partition), OffsetSpec.latest());
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        admin.listOffsets(latest).all().get()
+                .forEach((partition, info) -> offsets.put(partition, new OffsetAndMetadata(info.offset())));
+        admin.alterConsumerGroupOffsets(GROUP, offsets).all().get();
+    }
+
+    private static KafkaProducer<String, Object> producer(String bootstrapServers) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, VersionedEventSerializer.class);
+        return new KafkaProducer<>(config);
+    }
+
+    // =============================
+    // RELATÓRIO
+    // =============================
+
+    private static void report(Settings settings, Map<Mode, List<Long>> results) throws IOException {
+        Path csv = settings.reportDir().resolve("time-to-first-record.csv");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(csv))) {
+            out.println("mode,run,millis");
+            results.forEach((mode, millis) -> {
+                for (int i = 0; i < millis.size(); i++) {
+                    out.println(mode.name + "," + (i + 1) + "," + millis.get(i));
+                }
+            });
+        }
+
+        System.out.println();
+        System.out.println("JVM launch -> first record consumed on " + ApprovedRetryTopics.MAIN + " (ms)");
+        System.out.printf("%-10s %8s %8s %8s%n", "mode", "min", "median", "max");
+        long lastMedian = -1;
+        for (Map.Entry<Mode, List<Long>> entry : results.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            lastMedian = sorted[sorted.length / 2];
+            System.out.printf("%-10s %8d %8d %8d%n", entry.getKey().name, sorted[0], lastMedian, sorted[sorted.length - 1]);
+        }
+        System.out.println("Report: " + csv);
+
+        if (settings.budget() != null && lastMedian > settings.budget().toMillis()) {
+            throw new IllegalStateException("Median time to first record " + lastMedian
+                    + " ms is over the budget of " + settings.budget().toMillis() + " ms");
+        }
+    }
+
+    // =============================
+    // MODOS
+    // =============================
+
+    private enum Mode {
+
+        BASELINE("baseline", false, false, false),
+        PARALLEL("parallel", false, false, true),
+        AOT("aot", true, false, true),
+        AOT_CDS("aot-cds", true, true, true);
+
+        final String name;
+        final boolean aot;
+        final boolean cds;
+        final boolean lazyStartup;
+
+        Mode(String name, boolean aot, boolean cds, boolean lazyStartup) {
+            this.name = name;
+            this.aot = aot;
+            this.cds = cds;
+            this.lazyStartup = lazyStartup;
+        }
+
+        static Mode of(String name) {
+            return Arrays.stream(values()).filter(mode -> mode.name.equals(name)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Unknown mode " + name + " (baseline, parallel, aot, aot-cds)"));
+        }
+
+        /** AOT roda o jar extraído (com lib/ ao lado, como o CDS exige); os outros, o fat jar. */
+        Path requiredFile(Settings settings) {
+            if (cds) {
+                return settings.appDir().resolve("application.jsa");
+            }
+            return aot ? settings.appDir().resolve(settings.jar().getFileName()) : settings.jar();
+        }
+
+        boolean available(Settings settings) {
+            return Files.exists(requiredFile(settings));
+        }
+
+        List<String> command(Settings settings, String bootstrapServers, Path data) {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            if (cds) {
+                command.add("-XX:SharedArchiveFile=application.jsa");
+            }
+            if (aot) {
+                command.add("-Dspring.aot.enabled=true");
+            }
+            command.add("-jar");
+            command.add(aot ? settings.jar().getFileName().toString() : settings.jar().toAbsolutePath().toString());
+
+            command.add("--spring.kafka.bootstrap-servers=" + bootstrapServers);
+            command.add("--server.port=0");
+            command.add("--store.kafka.listeners.lazy-startup=" + lazyStartup);
+            command.add("--store.outbox.directory=" + data.resolve("outbox"));
+            command.add("--store.aggregates.directory=" + data.resolve("aggregates"));
+            command.add("--store.archive.directory=" + data.resolve("archive"));
+            command.add("--store.payments.snapshot.directory=" + data.resolve("payments"));
+            command.add("--store.telemetry.spill.directory=" + data.resolve("telemetry-spill"));
+            return command;
+        }
+    }
+
+    private record Settings(Path jar, Path appDir, List<Mode> modes, int runs, int warmup,
+                            Duration timeout, Duration budget, Path reportDir) {
+
+        static Settings fromSystemProperties() {
+            String budget = System.getProperty("startup.budget", "").trim();
+            return new Settings(
+                    Path.of(System.getProperty("startup.jar", "target/store-0.0.1-SNAPSHOT.jar")),
+                    Path.of(System.getProperty("startup.app-dir", "target/fast-startup")),
+                    Arrays.stream(System.getProperty("startup.modes", "baseline,parallel,aot,aot-cds").split(","))
+                            .map(String::trim).filter(s -> !s.isEmpty()).map(Mode::of).toList(),
+                    Integer.parseInt(System.getProperty("startup.runs", "5")),
+                    Integer.parseInt(System.getProperty("startup.warmup", "1")),
+                    DurationStyle.detectAndParse(System.getProperty("startup.timeout", "120s")),
+                    budget.isEmpty() ? null : DurationStyle.detectAndParse(budget),
+                    Path.of(System.getProperty("startup.report-dir", "target/startup-test")));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.mvbr.store;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+
+/**
+ * {@link MockProducer} + {@link KafkaTemplate} para testes sem broker.
+ *
+ * <p>O {@link MockProducerFactory} devolve sempre o mesmo producer e o KafkaTemplate o fecha
+ * depois de cada send; o producer daqui ignora o close para o segundo send não falhar.
+ */
+public final class MockKafka {
+
+	private MockKafka() {
+	}
+
+	/** {@code autoComplete=false}: cada send espera {@code completeNext()/errorNext()}. */
+	public static MockProducer<String, Object> producer(boolean autoComplete) {
+		return new MockProducer<>(autoComplete, new StringSerializer(), (topic, value) -> new byte[0]) {
+			@Override
+			public void close(Duration timeout) {
+			}
+		};
+	}
+
+	public static KafkaTemplate<String, Object> template(MockProducer<String, Object> producer) {
+		return new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+	}
+}
@@ -3,7 +3,8 @@ package com.mvbr.store;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// sem broker no teste: não tenta criar os tópicos de retry/DLT na subida
+@SpringBootTest(properties = "spring.kafka.admin.auto-create=false")
 class StoreApplicationTests {
 
 	@Test
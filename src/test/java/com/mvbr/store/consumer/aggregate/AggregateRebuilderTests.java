@@ -0,0 +1,122 @@
+package com.mvbr.store.consumer.aggregate;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AggregateRebuilderTests {
+
+	private static final String TOPIC = "payment.approved.v1";
+	private static final TopicPartition P0 = new TopicPartition(TOPIC, 0);
+	private static final TopicPartition P1 = new TopicPartition(TOPIC, 1);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void timedOutPartitionStaysRebuildingAndTheRetryResumesWhereItStopped() throws Exception {
+		// snapshot vazio nos offsets 0; o group já commitou 2 nas duas partições
+		PaymentAggregateStore previous = newStore();
+		previous.markConsumed(P0, 0);
+		previous.markConsumed(P1, 0);
+		previous.snapshot();
+
+		// P1@1 só aparece a partir da segunda tentativa: a primeira estoura o tempo em P1
+		long now = System.currentTimeMillis();
+		List<ConsumerRecord<String, Object>> log = new CopyOnWriteArrayList<>(List.of(
+				record(P0, 0, now), record(P0, 1, now), record(P1, 0, now)));
+		AtomicInteger attempts = new AtomicInteger();
+		List<Map<TopicPartition, Long>> offsetsBeforeRetry = new CopyOnWriteArrayList<>();
+		List<Boolean> rebuildingBeforeRetry = new CopyOnWriteArrayList<>();
+
+		PaymentAggregateStore store = newStore();
+		ConsumerFactory<String, Object> factory = new ConsumerFactory<>() {
+			@Override
+			public Consumer<String, Object> createConsumer(String groupId, String clientIdPrefix, String clientIdSuffix,
+					Properties properties) {
+				if (attempts.incrementAndGet() == 2) {
+					offsetsBeforeRetry.add(store.consumedOffsets());
+					rebuildingBeforeRetry.add(store.isRebuilding());
+					log.add(record(P1, 1, now));
+				}
+				return reader(log);
+			}
+
+			@Override
+			public boolean isAutoCommit() {
+				return false;
+			}
+		};
+
+		new AggregateRebuilder(factory, store, Duration.ofMinutes(60), Duration.ofMillis(300), Duration.ofMillis(50));
+
+		await(() -> !store.isRebuilding());
+
+		// depois do timeout: P0 completo e marcado, P1 sem avançar e o store ainda em rebuild
+		assertThat(rebuildingBeforeRetry).containsExactly(true);
+		assertThat(offsetsBeforeRetry.getFirst()).containsEntry(P0, 2L).containsEntry(P1, 0L);
+
+		// o retry só releu P1@1: cada evento somado uma vez
+		assertThat(attempts).hasValue(2);
+		assertThat(store.consumedOffsets()).containsEntry(P0, 2L).containsEntry(P1, 2L);
+		assertThat(store.currencyTotals("BRL", 60).count()).isEqualTo(4);
+	}
+
+	private static MockConsumer<String, Object> reader(List<ConsumerRecord<String, Object>> log) {
+		MockConsumer<String, Object> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+			@Override
+			public synchronized Map<TopicPartition, OffsetAndMetadata> committed(Set<TopicPartition> partitions,
+					Duration timeout) {
+				return Map.of(P0, new OffsetAndMetadata(2), P1, new OffsetAndMetadata(2));
+			}
+		};
+		Node node = new Node(0, "localhost", 9092);
+		consumer.updatePartitions(TOPIC, List.of(
+				new PartitionInfo(TOPIC, 0, node, new Node[]{node}, new Node[]{node}),
+				new PartitionInfo(TOPIC, 1, node, new Node[]{node}, new Node[]{node})));
+		consumer.schedulePollTask(() -> log.stream()
+				.filter(record -> consumer.assignment().contains(new TopicPartition(record.topic(), record.partition())))
+				.forEach(consumer::addRecord));
+		return consumer;
+	}
+
+	private static ConsumerRecord<String, Object> record(TopicPartition tp, long offset, long timestamp) {
+		PaymentApprovedEvent event = new PaymentApprovedEvent("evt-" + tp.partition() + "-" + offset, "p", "user-1",
+				Money.parse("1.00", "BRL"), "APPROVED", timestamp);
+		return new ConsumerRecord<>(tp.topic(), tp.partition(), offset, "user-1", event);
+	}
+
+	private PaymentAggregateStore newStore() {
+		return new PaymentAggregateStore(Duration.ofMinutes(60), dir, Duration.ofHours(1));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("timed out").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.mvbr.store.consumer.aggregate;
+
+import com.mvbr.store.dto.PaymentAggregateResponse;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PaymentAggregateStoreTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void sumsPerUserAndCurrencyInsideTheWindow() {
+		PaymentAggregateStore store = newStore();
+		long now = System.currentTimeMillis();
+
+		store.record(event("user-1", "10.50", "BRL", now));
+		store.record(event("user-1", "4.50", "BRL", now - 3 * 60_000));
+		store.record(event("user-1", "1000", "JPY", now));
+		store.record(event("user-2", "7.00", "BRL", now));
+		store.record(event("user-1", "99.00", "BRL", now - 2 * 60 * 60_000));    // fora da retenção
+
+		assertThat(store.userTotals("user-1", 60))
+				.extracting(PaymentAggregateResponse::count, PaymentAggregateResponse::money)
+				.containsExactlyInAnyOrder(
+						tuple(2L, Money.parse("15.00", "BRL")),
+						tuple(1L, Money.parse("1000", "JPY")));
+		assertThat(store.userTotals("user-1", 1)).extracting(PaymentAggregateResponse::count).containsOnly(1L);
+		assertThat(store.userTotals("nobody", 60)).isEmpty();
+
+		PaymentAggregateResponse brl = store.currencyTotals("brl", 60);
+		assertThat(brl.count()).isEqualTo(3);
+		assertThat(brl.money()).isEqualTo(Money.parse("22.00", "BRL"));
+
+		List<PaymentAggregateResponse> windows = store.userWindows("user-1", 60, 1);
+		assertThat(windows).extracting(PaymentAggregateResponse::windowEnd)
+				.allSatisfy(end -> assertThat(end - windows.getFirst().windowStart()).isEqualTo(60 * 60_000L));
+	}
+
+	@Test
+	void snapshotRestoresTotalsAndOffsets() {
+		PaymentAggregateStore store = newStore();
+		long now = System.currentTimeMillis();
+		store.record(event("user-1", "10.00", "BRL", now));
+		store.record(event("user-2", "2.50", "USD", now));
+		store.markConsumed(List.of(new ConsumerRecord<>("payment.approved.v1", 1, 41L, "user-1", "v")));
+		store.snapshot();
+
+		PaymentAggregateStore restored = newStore();
+		assertThat(restored.loadSnapshot()).isTrue();
+
+		assertThat(restored.userTotals("user-1", 60)).singleElement()
+				.satisfies(row -> assertThat(row.money()).isEqualTo(Money.parse("10.00", "BRL")));
+		assertThat(restored.currencyTotals("USD", 60).count()).isEqualTo(1);
+		assertThat(restored.consumedOffsets()).containsEntry(new TopicPartition("payment.approved.v1", 1), 42L);
+
+		// continua somando depois de restaurado
+		restored.record(event("user-1", "5.00", "BRL", now));
+		assertThat(restored.userTotals("user-1", 60).getFirst().money().minorUnits()).isEqualTo(1500);
+	}
+
+	@Test
+	void usersOutsideEveryLiveBucketLeaveTheDictionary() {
+		PaymentAggregateStore store = newStore();
+		long now = System.currentTimeMillis();
+		store.record(event("user-old", "1.00", "BRL", now - 30 * 60_000));
+		store.record(event("user-1", "2.00", "BRL", now));
+		store.record(event("user-1", "3.00", "USD", now - 30 * 60_000));
+		store.snapshot();
+
+		// com retenção de 10 minutos, o bucket de 30 minutos atrás já expirou
+		PaymentAggregateStore restored = new PaymentAggregateStore(Duration.ofMinutes(10), dir, Duration.ofHours(1));
+		assertThat(restored.loadSnapshot()).isTrue();
+		assertThat(restored.dictionarySize()).isEqualTo(1);
+		assertThat(restored.userTotals("user-old", 10)).isEmpty();
+
+		// o índice liberado é reusado sem herdar os totais do usuário anterior
+		restored.record(event("user-2", "4.00", "BRL", now));
+		assertThat(restored.dictionarySize()).isEqualTo(2);
+		assertThat(restored.userTotals("user-2", 10)).singleElement()
+				.satisfies(row -> assertThat(row.money()).isEqualTo(Money.parse("4.00", "BRL")));
+		assertThat(restored.userTotals("user-1", 10)).singleElement()
+				.satisfies(row -> assertThat(row.money()).isEqualTo(Money.parse("2.00", "BRL")));
+	}
+
+	private PaymentAggregateStore newStore() {
+		return new PaymentAggregateStore(Duration.ofMinutes(60), dir, Duration.ofHours(1));
+	}
+
+	private static PaymentApprovedEvent event(String user, String amount, String currency, long timestamp) {
+		return new PaymentApprovedEvent("evt", "p", user, Money.parse(amount, currency), "APPROVED", timestamp);
+	}
+}
@@ -0,0 +1,110 @@
+package com.mvbr.store.consumer.archive;
+
+import com.mvbr.store.dto.ArchivedEventResponse;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.model.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventArchiveTests {
+
+	private static final Money AMOUNT = Money.parse("10.50", "BRL");
+
+	@TempDir
+	Path dir;
+
+	private long offset;
+
+	@Test
+	void pointLookupsFollowTheChainOfEachKey() {
+		EventArchive archive = newArchive(1 << 20, Duration.ofDays(7));
+		archive.archive(record("payment.approved.v1", "u-1"), approved("e-1", "p-1", "u-1"));
+		archive.archive(record("payment.notification.v1", "u-1"), notification("e-2", "p-1", "u-1"));
+		archive.archive(record("payment.approved.v1", "u-1"), approved("e-3", "p-2", "u-1"));
+		archive.archive(record("payment.approved.v1", "u-2"), approved("e-4", "p-3", "u-2"));
+
+		assertThat(eventIds(archive.byPaymentId("p-1", 10))).containsExactly("e-1", "e-2");
+		assertThat(archive.byPaymentId("p-1", 10).get(1).topic()).isEqualTo("payment.notification.v1");
+		assertThat(eventIds(archive.byPaymentId("p-1", 1))).containsExactly("e-2");
+		assertThat(eventIds(archive.byUserId("u-1", 0, Long.MAX_VALUE, 10))).containsExactly("e-3", "e-2", "e-1");
+		assertThat(eventIds(archive.byUserId("u-1", 0, Long.MAX_VALUE, 1))).containsExactly("e-3");
+		assertThat(archive.byPaymentId("p-404", 10)).isEmpty();
+
+		archive.close();
+	}
+
+	@Test
+	void rebuildsTheIndexesOnRestartAndScansByTime() {
+		EventArchive archive = newArchive(512, Duration.ofDays(7));
+		long before = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			archive.archive(record("payment.approved.v1", "u-" + (i % 3)), approved("e-" + i, "p-" + i, "u-" + (i % 3)));
+		}
+		archive.close();
+
+		EventArchive reopened = newArchive(512, Duration.ofDays(7));
+		assertThat(eventIds(reopened.byPaymentId("p-7", 10))).containsExactly("e-7");
+		assertThat(reopened.byUserId("u-1", 0, Long.MAX_VALUE, 100)).hasSize(7);
+		assertThat(eventIds(reopened.scan(before, Long.MAX_VALUE, 5))).containsExactly("e-0", "e-1", "e-2", "e-3", "e-4");
+		assertThat(reopened.scan(Long.MAX_VALUE - 1, Long.MAX_VALUE, 5)).isEmpty();
+		reopened.close();
+	}
+
+	@Test
+	void retentionDeletesOldSegmentsAndTheirKeys() throws Exception {
+		EventArchive archive = newArchive(512, Duration.ofHours(1));
+		for (int i = 0; i < 20; i++) {
+			archive.archive(record("payment.approved.v1", "u-1"), approved("e-" + i, "p-" + i, "u-1"));
+		}
+
+		FileTime old = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofHours(2).toMillis());
+		try (Stream<Path> segments = Files.list(dir)) {
+			for (Path segment : segments.toList()) {
+				Files.setLastModifiedTime(segment, old);
+			}
+		}
+		archive.enforceRetention();
+
+		assertThat(archive.byPaymentId("p-0", 10)).isEmpty();
+		assertThat(eventIds(archive.byPaymentId("p-19", 10))).containsExactly("e-19");
+		assertThat(archive.byUserId("u-1", 0, Long.MAX_VALUE, 100)).hasSizeBetween(1, 19);
+		archive.close();
+	}
+
+	private EventArchive newArchive(int segmentBytes, Duration retention) {
+		return new EventArchive(dir, segmentBytes, retention, Duration.ofHours(1), 16, new SimpleMeterRegistry());
+	}
+
+	private ConsumerRecord<String, Object> record(String topic, String key) {
+		return new ConsumerRecord<>(topic, 0, offset++, key, null);
+	}
+
+	private static PaymentApprovedEvent approved(String eventId, String paymentId, String userId) {
+		return new PaymentApprovedEvent(eventId, paymentId, userId, AMOUNT, "APPROVED", 0L);
+	}
+
+	private static PaymentNotificationEvent notification(String eventId, String paymentId, String userId) {
+		return new PaymentNotificationEvent(eventId, paymentId, userId, AMOUNT, "approved", 0L);
+	}
+
+	private static List<String> eventIds(List<ArchivedEventResponse> events) {
+		return events.stream()
+				.map(event -> event.event() instanceof PaymentApprovedEvent approved
+						? approved.eventId()
+						: ((PaymentNotificationEvent) event.event()).eventId())
+				.toList();
+	}
+
+}
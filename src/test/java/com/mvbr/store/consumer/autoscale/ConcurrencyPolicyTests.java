@@ -0,0 +1,63 @@
+package com.mvbr.store.consumer.autoscale;
+
+import com.mvbr.store.consumer.autoscale.ConcurrencyPolicy.Action;
+import com.mvbr.store.consumer.autoscale.ConcurrencyPolicy.Decision;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyPolicyTests {
+
+	private final ConcurrencyPolicy policy = new ConcurrencyPolicy(16, 1024, 10_000, 100, 200, 1_000, 8, 30_000);
+
+	@Test
+	void followsLagWithinBounds() {
+		assertThat(policy.decide(64, false, 0, 50_000, 5)).isEqualTo(new Decision(128, false, Action.SCALE_UP));
+		assertThat(policy.decide(1024, false, 0, 50_000, 5)).isEqualTo(new Decision(1024, false, Action.HOLD));
+		assertThat(policy.decide(64, false, 0, 1_000, 5)).isEqualTo(new Decision(64, false, Action.HOLD));
+		assertThat(policy.decide(64, false, 0, 10, 5)).isEqualTo(new Decision(56, false, Action.SCALE_DOWN));
+		assertThat(policy.decide(16, false, 0, 0, 0)).isEqualTo(new Decision(16, false, Action.HOLD));
+
+		// sem leitura de lag ainda: não reduz
+		assertThat(policy.decide(64, false, 0, -1, 5)).isEqualTo(new Decision(64, false, Action.HOLD));
+	}
+
+	@Test
+	void backsOffOnLatencyAndShedsAboveTheShedLimit() {
+		assertThat(policy.decide(512, false, 0, 50_000, 300)).isEqualTo(new Decision(256, false, Action.SCALE_DOWN));
+		assertThat(policy.decide(512, false, 0, 50_000, 5_000)).isEqualTo(new Decision(256, true, Action.SHED));
+		assertThat(policy.decide(16, true, 0, 50_000, 5_000)).isEqualTo(new Decision(16, true, Action.SCALE_DOWN));
+
+		// downstream normalizou: volta a buscar antes de voltar a crescer
+		assertThat(policy.decide(256, true, 0, 50_000, 0)).isEqualTo(new Decision(256, false, Action.RESUME));
+	}
+
+	@Test
+	void pausedWithZeroCompletionsHoldsUntilTheMinimumPause() {
+		// pausado, nada termina: sem amostra não é recuperação
+		assertThat(policy.decide(256, true, 10_000, 50_000, Double.NaN)).isEqualTo(new Decision(256, true, Action.HOLD));
+		assertThat(policy.decide(256, true, 29_999, 50_000, Double.NaN)).isEqualTo(new Decision(256, true, Action.HOLD));
+
+		// passou a pausa mínima: volta para testar o downstream
+		assertThat(policy.decide(256, true, 30_000, 50_000, Double.NaN)).isEqualTo(new Decision(256, false, Action.RESUME));
+
+		// ainda lento na primeira amostra depois de voltar: pausa de novo
+		assertThat(policy.decide(256, false, 0, 50_000, 5_000)).isEqualTo(new Decision(128, true, Action.SHED));
+
+		// uma amostra real normal antes da pausa mínima já basta
+		assertThat(policy.decide(256, true, 10_000, 50_000, 5)).isEqualTo(new Decision(256, false, Action.RESUME));
+
+		// sem pausa, intervalo sem amostra é só lag
+		assertThat(policy.decide(64, false, 0, 50_000, Double.NaN)).isEqualTo(new Decision(128, false, Action.SCALE_UP));
+	}
+
+	@Test
+	void rejectsInvalidBounds() {
+		assertThatThrownBy(() -> new ConcurrencyPolicy(0, 10, 100, 10, 200, 1_000, 1, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new ConcurrencyPolicy(16, 8, 100, 10, 200, 1_000, 1, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
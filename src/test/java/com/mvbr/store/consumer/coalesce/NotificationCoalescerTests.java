@@ -0,0 +1,249 @@
+package com.mvbr.store.consumer.coalesce;
+
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.model.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationCoalescerTests {
+
+	private static final Money AMOUNT = Money.parse("10.50", "BRL");
+	private static final TopicPartition P0 = new TopicPartition("payment.notification.v1", 0);
+	private static final TopicPartition P1 = new TopicPartition("payment.notification.v1", 1);
+	private static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+	private final List<Batch> delivered = new CopyOnWriteArrayList<>();
+	private final List<String> processed = new CopyOnWriteArrayList<>();
+	private final Consumer<PaymentNotificationEvent> markProcessed = event -> processed.add(event.eventId());
+	private final List<TopicPartition> paused = new CopyOnWriteArrayList<>();
+	private long offset;
+	private final NotificationCoalescer.PartitionPauser pauser = new NotificationCoalescer.PartitionPauser() {
+		@Override
+		public void pause(Collection<TopicPartition> partitions) {
+			paused.addAll(partitions);
+		}
+
+		@Override
+		public void resume(Collection<TopicPartition> partitions) {
+			paused.removeAll(partitions);
+		}
+	};
+
+	@Test
+	void deliversOneOrderedBatchPerUserWhenTheWindowCloses() {
+		NotificationCoalescer coalescer = newCoalescer(LONG_WINDOW, 50, 1000);
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-2", "u-2"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-3", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-4", "u-1"), markProcessed);
+
+		coalescer.flushDue(System.nanoTime());
+		assertThat(delivered).isEmpty();
+
+		coalescer.flushDue(System.nanoTime() + LONG_WINDOW.toNanos());
+		assertThat(delivered).containsExactlyInAnyOrder(
+				new Batch("u-1", List.of("e-1", "e-3", "e-4")),
+				new Batch("u-2", List.of("e-2")));
+		assertThat(coalescer.pending()).isZero();
+		assertThat(processed).containsExactlyInAnyOrder("e-1", "e-2", "e-3", "e-4");
+
+		coalescer.close();
+	}
+
+	@Test
+	void fullBatchIsDeliveredRightAwayAndRepeatedEventIdsAreMerged() {
+		NotificationCoalescer coalescer = newCoalescer(LONG_WINDOW, 3, 1000);
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-2", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-3", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-4", "u-1"), markProcessed);
+
+		assertThat(delivered).containsExactly(new Batch("u-1", List.of("e-1", "e-2", "e-3")));
+		assertThat(coalescer.pending()).isEqualTo(1);
+
+		coalescer.close();
+		assertThat(delivered).last().isEqualTo(new Batch("u-1", List.of("e-4")));
+	}
+
+	@Test
+	void revokeFlushesOnlyUsersOfThePartition() {
+		NotificationCoalescer coalescer = newCoalescer(LONG_WINDOW, 50, 1000);
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P1, offset++, notification("e-2", "u-2"), markProcessed);
+
+		coalescer.flush(List.of(P1));
+
+		assertThat(delivered).containsExactly(new Batch("u-2", List.of("e-2")));
+		assertThat(coalescer.pending()).isEqualTo(1);
+
+		coalescer.close();
+	}
+
+	@Test
+	void commitStopsAtTheFirstNotificationStillBufferedInEachPartition() {
+		NotificationCoalescer coalescer = newCoalescer(LONG_WINDOW, 50, 1000);
+		coalescer.offer(P0, 0, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P0, 1, notification("e-2", "u-2"), markProcessed);
+		coalescer.offer(P1, 0, notification("e-3", "u-3"), markProcessed);
+		coalescer.offer(P1, 1, notification("e-4", "u-3"), markProcessed);
+
+		// o consumer já leu até P0@2 (P0@2 era duplicado) e P1@2
+		List<Map<TopicPartition, OffsetAndMetadata>> commits = new CopyOnWriteArrayList<>();
+		MockConsumer<String, Object> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+			@Override
+			public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+				commits.add(Map.copyOf(offsets));
+			}
+		};
+		consumer.assign(List.of(P0, P1));
+		consumer.seek(P0, 3);
+		consumer.seek(P1, 2);
+
+		// nada entregue: nenhuma partição passa da primeira notificação no buffer
+		coalescer.commitDelivered(consumer, consumer.assignment());
+		assertThat(commits).last().isEqualTo(Map.of(P0, new OffsetAndMetadata(0), P1, new OffsetAndMetadata(0)));
+
+		// revoke de P1 entrega u-3 e commita P1 inteira; P0 continua presa em e-1
+		coalescer.flush(List.of(P1));
+		coalescer.commitDelivered(consumer, consumer.assignment());
+		assertThat(commits).last().isEqualTo(Map.of(P0, new OffsetAndMetadata(0), P1, new OffsetAndMetadata(2)));
+
+		// janela fechada: tudo entregue, P0 vai até a posição do consumer
+		coalescer.flushDue(System.nanoTime() + LONG_WINDOW.toNanos());
+		coalescer.commitDelivered(consumer, consumer.assignment());
+		assertThat(commits).last().isEqualTo(Map.of(P0, new OffsetAndMetadata(3), P1, new OffsetAndMetadata(2)));
+
+		coalescer.close();
+	}
+
+	@Test
+	void bufferStaysBoundedUnderABurstOfDistinctUsers() {
+		NotificationCoalescer coalescer = newCoalescer(LONG_WINDOW, 4, 8);
+		for (int i = 0; i < 100; i++) {
+			coalescer.offer(P0, offset++, notification("e-" + i, "u-" + i), markProcessed);
+			assertThat(coalescer.pending()).isLessThanOrEqualTo(8);
+		}
+
+		coalescer.close();
+		assertThat(delivered.stream().mapToInt(batch -> batch.eventIds().size()).sum()).isEqualTo(100);
+	}
+
+	@Test
+	void failedBatchStaysBufferedAndIsRetriedInOrderAfterTheBackoff() {
+		AtomicInteger failures = new AtomicInteger(2);
+		NotificationCoalescer coalescer = new NotificationCoalescer((userId, notifications) -> {
+			if (failures.getAndDecrement() > 0) {
+				throw new IllegalStateException("downstream unavailable");
+			}
+			delivered.add(Batch.of(userId, notifications));
+		}, Duration.ZERO, 1, 10, Duration.ofHours(1), Duration.ofHours(8), pauser,
+				new SimpleMeterRegistry());
+
+		// e-1 falha; e-2 entra atrás dele e espera o backoff em vez de passar na frente
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-2", "u-1"), markProcessed);
+		assertThat(delivered).isEmpty();
+		assertThat(processed).isEmpty();
+		assertThat(coalescer.pending()).isEqualTo(2);
+
+		// janela vencida, mas dentro do backoff: nada é tentado
+		long start = System.nanoTime();
+		coalescer.flushDue(start);
+		assertThat(failures.get()).isEqualTo(1);
+
+		// segunda falha dobra o backoff (2h)
+		coalescer.flushDue(start + Duration.ofHours(1).toNanos());
+		assertThat(failures.get()).isZero();
+		coalescer.flushDue(start + Duration.ofHours(2).toNanos());
+		assertThat(delivered).isEmpty();
+
+		// a terceira tentativa entrega tudo, um lote por vez e na ordem
+		coalescer.flushDue(start + Duration.ofHours(4).toNanos());
+		assertThat(coalescer.pending()).isZero();
+		assertThat(delivered).containsExactly(new Batch("u-1", List.of("e-1")), new Batch("u-1", List.of("e-2")));
+		assertThat(processed).containsExactly("e-1", "e-2");
+
+		coalescer.close();
+	}
+
+	@Test
+	void fullBufferOfFailingBatchesPausesTheSourcePartitionsUntilTheRetriesDrainIt() {
+		AtomicInteger failures = new AtomicInteger(3);
+		NotificationCoalescer coalescer = new NotificationCoalescer((userId, notifications) -> {
+			if (failures.getAndDecrement() > 0) {
+				throw new IllegalStateException("downstream unavailable");
+			}
+			delivered.add(Batch.of(userId, notifications));
+		}, LONG_WINDOW, 1, 2, Duration.ofHours(1), Duration.ofHours(1), pauser, new SimpleMeterRegistry());
+
+		// u-1 e u-2 falham e ficam em backoff; com o terceiro o buffer passa do limite e o offer
+		// volta na hora com as partições pausadas, sem esperar os retries
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.offer(P1, offset++, notification("e-2", "u-2"), markProcessed);
+		coalescer.offer(P0, offset++, notification("e-3", "u-3"), markProcessed);
+		assertThat(coalescer.pending()).isEqualTo(3);
+		assertThat(paused).containsExactlyInAnyOrder(P0, P1);
+
+		// dentro do backoff nada muda
+		long start = System.nanoTime();
+		coalescer.flushDue(start);
+		assertThat(paused).containsExactlyInAnyOrder(P0, P1);
+
+		// o retry esvazia o buffer e as partições voltam
+		coalescer.flushDue(start + Duration.ofHours(2).toNanos());
+		assertThat(coalescer.pending()).isZero();
+		assertThat(paused).isEmpty();
+		assertThat(processed).containsExactlyInAnyOrder("e-1", "e-2", "e-3");
+
+		coalescer.close();
+	}
+
+	@Test
+	void undeliverableBatchIsDroppedAtShutdownWithoutMarkingIt() {
+		NotificationCoalescer coalescer = new NotificationCoalescer((userId, notifications) -> {
+			throw new IllegalStateException("downstream unavailable");
+		}, LONG_WINDOW, 50, 100, Duration.ofSeconds(1), Duration.ofSeconds(30), pauser,
+				new SimpleMeterRegistry());
+
+		coalescer.offer(P0, offset++, notification("e-1", "u-1"), markProcessed);
+		coalescer.close();
+
+		assertThat(coalescer.pending()).isZero();
+		assertThat(processed).isEmpty();
+	}
+
+	private NotificationCoalescer newCoalescer(Duration window, int maxBatch, int maxBuffered) {
+		return new NotificationCoalescer((userId, notifications) -> delivered.add(Batch.of(userId, notifications)),
+				window, maxBatch, maxBuffered, Duration.ofSeconds(1), Duration.ofSeconds(30), pauser,
+				new SimpleMeterRegistry());
+	}
+
+	private static PaymentNotificationEvent notification(String eventId, String userId) {
+		return new PaymentNotificationEvent(eventId, "p-" + eventId, userId, AMOUNT, "approved", System.currentTimeMillis());
+	}
+
+	private record Batch(String userId, List<String> eventIds) {
+
+		static Batch of(String userId, List<PaymentNotificationEvent> notifications) {
+			List<String> eventIds = new ArrayList<>();
+			notifications.forEach(notification -> eventIds.add(notification.eventId()));
+			return new Batch(userId, eventIds);
+		}
+	}
+}
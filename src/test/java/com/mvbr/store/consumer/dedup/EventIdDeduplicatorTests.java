@@ -0,0 +1,70 @@
+package com.mvbr.store.consumer.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventIdDeduplicatorTests {
+
+	@Test
+	void detectsProcessedIdsAndCountsHitsAndMisses() {
+		EventIdDeduplicator deduplicator = new EventIdDeduplicator(1_000, Duration.ofMinutes(10));
+		String uuid = UUID.randomUUID().toString();
+
+		assertThat(deduplicator.isDuplicate(uuid)).isFalse();
+		deduplicator.markProcessed(uuid);
+		deduplicator.markProcessed("not-a-uuid");
+
+		assertThat(deduplicator.isDuplicate(uuid)).isTrue();
+		assertThat(deduplicator.isDuplicate(uuid.toUpperCase())).isTrue();
+		assertThat(deduplicator.isDuplicate("not-a-uuid")).isTrue();
+		assertThat(deduplicator.isDuplicate(UUID.randomUUID().toString())).isFalse();
+
+		assertThat(deduplicator.hits()).isEqualTo(3);
+		assertThat(deduplicator.misses()).isEqualTo(2);
+	}
+
+	@Test
+	void keepsOneFullGenerationAndForgetsOlderOnes() {
+		EventIdDeduplicator deduplicator = new EventIdDeduplicator(100, Duration.ofMinutes(10));
+		String first = UUID.randomUUID().toString();
+		deduplicator.markProcessed(first);
+
+		for (int i = 0; i < 150; i++) {
+			deduplicator.markProcessed(UUID.randomUUID().toString());
+		}
+		assertThat(deduplicator.isDuplicate(first)).isTrue();
+
+		for (int i = 0; i < 100; i++) {
+			deduplicator.markProcessed(UUID.randomUUID().toString());
+		}
+		assertThat(deduplicator.isDuplicate(first)).isFalse();
+		assertThat(deduplicator.size()).isLessThanOrEqualTo(200);
+	}
+
+	@Test
+	void recycledGenerationsAreClearedBeforeReuse() {
+		EventIdDeduplicator deduplicator = new EventIdDeduplicator(100, Duration.ofMinutes(10));
+		String[] firstOfGeneration = new String[20];
+
+		for (int generation = 0; generation < firstOfGeneration.length; generation++) {
+			for (int i = 0; i < 100; i++) {
+				String id = UUID.randomUUID().toString();
+				if (i == 0) {
+					firstOfGeneration[generation] = id;
+				}
+				deduplicator.markProcessed(id);
+			}
+			if (generation >= 2) {
+				// a tabela dessa geração já foi reaproveitada: nada dela pode sobrar
+				assertThat(deduplicator.isDuplicate(firstOfGeneration[generation - 2])).isFalse();
+			}
+			assertThat(deduplicator.isDuplicate(firstOfGeneration[generation])).isTrue();
+			assertThat(deduplicator.size()).isLessThanOrEqualTo(200);
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.mvbr.store.consumer.parallel;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyOrderedBatchProcessorTests {
+
+	private final KeyOrderedBatchProcessor processor = new KeyOrderedBatchProcessor("test", 64);
+
+	@AfterEach
+	void close() {
+		processor.close();
+	}
+
+	@Test
+	void keepsOrderPerKey() {
+		List<ConsumerRecord<String, Integer>> records = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			records.add(new ConsumerRecord<>("t", 0, i, "user-" + (i % 7), i));
+		}
+
+		ConcurrentHashMap<String, List<Integer>> seen = new ConcurrentHashMap<>();
+		processor.process(records, r -> seen
+				.computeIfAbsent(r.key(), k -> Collections.synchronizedList(new ArrayList<>()))
+				.add(r.value()));
+
+		assertThat(seen).hasSize(7);
+		seen.values().forEach(values -> assertThat(values).isSorted());
+		assertThat(seen.values().stream().mapToInt(List::size).sum()).isEqualTo(300);
+	}
+
+	@Test
+	void failsAtFirstFailedRecordAndSkipsLaterRecordsOfSameKey() {
+		List<ConsumerRecord<String, Integer>> records = List.of(
+				new ConsumerRecord<>("t", 0, 0, "a", 0),
+				new ConsumerRecord<>("t", 0, 1, "b", 1),
+				new ConsumerRecord<>("t", 0, 2, "a", 2),
+				new ConsumerRecord<>("t", 0, 3, "b", 3));
+
+		List<Integer> processed = new CopyOnWriteArrayList<>();
+
+		assertThatThrownBy(() -> processor.process(records, r -> {
+			if (r.value() == 1) {
+				throw new IllegalStateException("boom");
+			}
+			processed.add(r.value());
+		}))
+				.isInstanceOf(BatchListenerFailedException.class)
+				.satisfies(ex -> assertThat(((BatchListenerFailedException) ex).getRecord()).isSameAs(records.get(1)));
+
+		assertThat(processed).containsExactlyInAnyOrder(0, 2);
+	}
+
+	@Test
+	void resizedLimitCapsParallelism() {
+		List<ConsumerRecord<String, Integer>> records = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			records.add(new ConsumerRecord<>("t", 0, i, "user-" + i, i));
+		}
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+
+		processor.setMaxInFlight(2);
+		processor.process(records, r -> {
+			peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+			LockSupport.parkNanos(1_000_000);
+			running.decrementAndGet();
+		});
+
+		assertThat(peak.get()).isLessThanOrEqualTo(2);
+		assertThat(processor.completedRecords()).isEqualTo(50);
+
+		processor.setMaxInFlight(64);
+		assertThat(processor.maxInFlight()).isEqualTo(64);
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.mvbr.store.consumer.retry;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApprovedRetryTopicsTests {
+
+	@Test
+	void routesThroughEveryTierAndEndsInTheDlt() {
+		assertThat(ApprovedRetryTopics.nextDestination(ApprovedRetryTopics.MAIN)).isEqualTo(ApprovedRetryTopics.RETRY_1S);
+		assertThat(ApprovedRetryTopics.nextDestination(ApprovedRetryTopics.RETRY_1S)).isEqualTo(ApprovedRetryTopics.RETRY_10S);
+		assertThat(ApprovedRetryTopics.nextDestination(ApprovedRetryTopics.RETRY_10S)).isEqualTo(ApprovedRetryTopics.RETRY_60S);
+		assertThat(ApprovedRetryTopics.nextDestination(ApprovedRetryTopics.RETRY_60S)).isEqualTo(ApprovedRetryTopics.DLT);
+		assertThat(ApprovedRetryTopics.nextDestination(ApprovedRetryTopics.DLT)).isEqualTo(ApprovedRetryTopics.DLT);
+
+		assertThat(ApprovedRetryTopics.delayOf(ApprovedRetryTopics.RETRY_10S)).isEqualTo(Duration.ofSeconds(10));
+		assertThat(ApprovedRetryTopics.delayOf(ApprovedRetryTopics.DLT)).isZero();
+	}
+
+	@Test
+	void dueTimeComesFromTheHeaderOrFallsBackToTimestampPlusDelay() {
+		RecordHeaders headers = new RecordHeaders();
+		headers.add(new RecordHeader(ApprovedRetryTopics.NOT_BEFORE_HEADER, "5000".getBytes(StandardCharsets.US_ASCII)));
+
+		assertThat(ApprovedRetryTopics.notBefore(record(ApprovedRetryTopics.RETRY_60S, 1_000, headers))).isEqualTo(5_000);
+		assertThat(ApprovedRetryTopics.notBefore(record(ApprovedRetryTopics.RETRY_60S, 1_000, new RecordHeaders())))
+				.isEqualTo(61_000);
+	}
+
+	private static ConsumerRecord<String, String> record(String topic, long timestamp, RecordHeaders headers) {
+		return new ConsumerRecord<>(topic, 0, 0L, timestamp, TimestampType.CREATE_TIME, 0, 0, "user-1", "v",
+				headers, Optional.empty());
+	}
+}
@@ -0,0 +1,92 @@
+package com.mvbr.store.consumer.sink;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferEventSinkTests {
+
+	@Test
+	void writesEveryEventFromConcurrentProducersWhenBlocking() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RingBufferEventSink sink = new RingBufferEventSink(16, RingBufferEventSink.OverflowPolicy.BLOCK,
+				new PrintStream(bytes, false, StandardCharsets.UTF_8));
+
+		List<Thread> producers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int thread = t;
+			producers.add(Thread.ofPlatform().start(() -> {
+				for (int i = 0; i < 1_000; i++) {
+					sink.processed(event("user-" + thread, i));
+				}
+			}));
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		sink.rejected("payment.approved.v1", 2, 42);
+		sink.close();
+
+		String output = bytes.toString(StandardCharsets.UTF_8);
+		assertThat(sink.published()).isEqualTo(4_001);
+		assertThat(sink.written()).isEqualTo(4_001);
+		assertThat(sink.dropped()).isZero();
+		assertThat(output.split("PAYMENT APPROVED EVENT RECEIVED", -1)).hasSize(4_001);
+		assertThat(output).contains("payment.approved.v1-2@42");
+
+		// ordem preservada por produtor
+		assertThat(output.indexOf("paymentId: user-3-0\n")).isLessThan(output.indexOf("paymentId: user-3-999\n"));
+	}
+
+	@Test
+	void dropsAndCountsWhenTheWriterCannotKeepUp() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		OutputStream stalled = new OutputStream() {
+			@Override
+			public void write(int b) {
+				await(release);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				await(release);
+			}
+		};
+		RingBufferEventSink sink = new RingBufferEventSink(8, RingBufferEventSink.OverflowPolicy.DROP,
+				new PrintStream(stalled, false, StandardCharsets.UTF_8));
+
+		for (int i = 0; i < 100; i++) {
+			sink.processed(event("user", i));
+		}
+
+		assertThat(sink.dropped()).isPositive();
+		assertThat(sink.published() + sink.dropped()).isEqualTo(100);
+
+		release.countDown();
+		sink.close();
+		assertThat(sink.written()).isEqualTo(sink.published());
+	}
+
+	private static PaymentApprovedEvent event(String user, int i) {
+		return new PaymentApprovedEvent("evt-" + i, user + "-" + i, user, Money.ofMinor(1000, "BRL"),
+				"APPROVED", 1L);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
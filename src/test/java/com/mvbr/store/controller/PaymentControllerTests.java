@@ -0,0 +1,149 @@
+package com.mvbr.store.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mvbr.store.MockKafka;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.producer.PaymentNotificationProducer;
+import com.mvbr.store.producer.hotkey.HotKeyDetector;
+import com.mvbr.store.producer.hotkey.HotKeySalter;
+import com.mvbr.store.repository.PaymentRepository;
+import com.mvbr.store.service.BulkPaymentIngestionService;
+import com.mvbr.store.service.IdempotentPaymentIngress;
+import com.mvbr.store.service.PaymentService;
+import com.mvbr.store.service.PublishStatusRegistry;
+import com.mvbr.store.tracing.PaymentTracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PaymentControllerTests {
+
+	@TempDir
+	Path dir;
+
+	private MockProducer<String, Object> mockProducer;
+	private MockMvc mvc;
+
+	@BeforeEach
+	void setUp() {
+		mockProducer = MockKafka.producer(false);
+		PaymentRepository repository = new PaymentRepository(4, 1_000, false, dir, Duration.ofMinutes(1));
+		PaymentTracer tracer = PaymentTracer.disabled();
+		PaymentService paymentService = new PaymentService(repository,
+				new PaymentApprovedProducer(MockKafka.template(mockProducer), tracer), tracer, null);
+		IdempotentPaymentIngress ingress = new IdempotentPaymentIngress(paymentService, Duration.ofMinutes(10), 1_000,
+				new SimpleMeterRegistry());
+		HotKeySalter salter = new HotKeySalter(
+				new HotKeyDetector("payment.notification.v1", 4, 0.05, 100, Duration.ofMinutes(1)), false, 8,
+				new SimpleMeterRegistry());
+		mvc = MockMvcBuilders.standaloneSetup(new PaymentController(paymentService, ingress, new PublishStatusRegistry(),
+				new BulkPaymentIngestionService(ingress, new ObjectMapper()), repository,
+				new PaymentNotificationProducer(MockKafka.template(mockProducer), salter))).build();
+	}
+
+	@Test
+	void asyncModeAnswersWithTheAckedRecordPosition() throws Exception {
+		MvcResult result = mvc.perform(approve("/api/payments/approved/async", "p-1"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockProducer.completeNext();
+
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.paymentId").value("p-1"))
+				.andExpect(jsonPath("$.status").value("ACKED"))
+				.andExpect(jsonPath("$.partition").isNumber())
+				.andExpect(jsonPath("$.offset").isNumber());
+	}
+
+	@Test
+	void asyncModeAnswersBadGatewayWhenThePublishFails() throws Exception {
+		MvcResult result = mvc.perform(approve("/api/payments/approved/async", "p-1"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockProducer.errorNext(new RuntimeException("broker down"));
+
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isBadGateway())
+				.andExpect(jsonPath("$.status").value("FAILED"))
+				.andExpect(jsonPath("$.error").value("broker down"));
+	}
+
+	@Test
+	void acceptedModeIsPolledByEventId() throws Exception {
+		MvcResult accepted = mvc.perform(approve("/api/payments/approved/accepted", "p-1"))
+				.andExpect(status().isAccepted())
+				.andExpect(jsonPath("$.status").value("PENDING"))
+				.andReturn();
+		String location = accepted.getResponse().getHeader("Location");
+
+		mvc.perform(get(location))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("PENDING"));
+
+		mockProducer.completeNext();
+
+		mvc.perform(get(location))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("ACKED"));
+	}
+
+	@Test
+	void acceptedModeReportsAFailedPublish() throws Exception {
+		MvcResult accepted = mvc.perform(approve("/api/payments/approved/accepted", "p-1"))
+				.andExpect(status().isAccepted())
+				.andExpect(header().exists("Location"))
+				.andReturn();
+		mockProducer.errorNext(new RuntimeException("broker down"));
+
+		mvc.perform(get(accepted.getResponse().getHeader("Location")))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("FAILED"));
+	}
+
+	@Test
+	void unknownEventIdIsNotFound() throws Exception {
+		mvc.perform(get("/api/payments/approved/{eventId}", "nope"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void notificationIsPublishedKeyedByTheUser() throws Exception {
+		mvc.perform(post("/api/payments/notify")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"paymentId\":\"p-1\",\"userId\":\"u-1\",\"amount\":\"10.50\",\"currency\":\"BRL\",\"message\":\"ok\"}"))
+				.andExpect(status().isOk());
+
+		assertThat(mockProducer.history()).singleElement().satisfies(record -> {
+			assertThat(record.topic()).isEqualTo("payment.notification.v1");
+			assertThat(record.key()).isEqualTo("u-1");
+			assertThat(((PaymentNotificationEvent) record.value()).paymentId()).isEqualTo("p-1");
+		});
+	}
+
+	private static RequestBuilder approve(String path, String paymentId) {
+		return post(path)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"paymentId\":\"" + paymentId + "\",\"userId\":\"u-1\",\"amount\":\"10.50\",\"currency\":\"BRL\"}");
+	}
+}
@@ -0,0 +1,48 @@
+package com.mvbr.store.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class EventIdsTests {
+
+	@Test
+	void generatesUniqueTimeOrderedVersion7Uuids() throws Exception {
+		String first = EventIds.next();
+		Thread.sleep(2);
+
+		Set<String> ids = new HashSet<>();
+		for (int i = 0; i < 10_000; i++) {
+			ids.add(EventIds.next());
+		}
+		assertThat(ids).hasSize(10_000);
+
+		UUID uuid = UUID.fromString(first);
+		assertThat(uuid.version()).isEqualTo(7);
+		assertThat(uuid.variant()).isEqualTo(2);
+		assertThat(uuid.getMostSignificantBits() >>> 16).isCloseTo(System.currentTimeMillis(),
+				within(5_000L));
+
+		// o prefixo (timestamp) ordena lexicograficamente
+		assertThat(ids).allSatisfy(id -> assertThat(id.substring(0, 13)).isGreaterThan(first.substring(0, 13)));
+	}
+
+	@Test
+	void sameKeyAndTimeGiveTheSameVersion7Uuid() {
+		long millis = System.currentTimeMillis();
+
+		String id = EventIds.of("approved:p-1", millis);
+		assertThat(EventIds.of("approved:p-1", millis)).isEqualTo(id);
+		assertThat(EventIds.of("approved:p-2", millis)).isNotEqualTo(id);
+
+		UUID uuid = UUID.fromString(id);
+		assertThat(uuid.version()).isEqualTo(7);
+		assertThat(uuid.variant()).isEqualTo(2);
+		assertThat(uuid.getMostSignificantBits() >>> 16).isEqualTo(millis);
+	}
+}
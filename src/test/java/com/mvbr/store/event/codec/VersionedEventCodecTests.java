@@ -0,0 +1,101 @@
+package com.mvbr.store.event.codec;
+
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.event.PaymentNotificationEvent;
+import com.mvbr.store.model.Money;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VersionedEventCodecTests {
+
+	private final PaymentApprovedEvent approved = new PaymentApprovedEvent(
+			"f04cc487-723d-4718-9082-d62273868fd2", "pgto-100", "user-20",
+			Money.parse("14957.49", "BRL"), "APPROVED", 1764908587316L);
+
+	@Test
+	void roundTripsBothEventTypes() {
+		PaymentNotificationEvent notification = new PaymentNotificationEvent(
+				"e-1", "pgto-100", "user-20", Money.parse("10.50", "USD"), "Pagamento aprovado ✓", 1764908587316L);
+
+		assertThat(PaymentEventCodec.decode(PaymentEventCodec.encode(approved))).isEqualTo(approved);
+		assertThat(PaymentEventCodec.decode(PaymentEventCodec.encode(notification))).isEqualTo(notification);
+	}
+
+	@Test
+	void roundTripsNullsAndExtremeAmounts() {
+		PaymentApprovedEvent empty = new PaymentApprovedEvent(null, "p", "u", null, "APPROVED", 0L);
+		PaymentApprovedEvent large = new PaymentApprovedEvent(
+				null, "p", "u", Money.ofMinor(Long.MAX_VALUE, "JPY"), null, 0L);
+		PaymentApprovedEvent negative = new PaymentApprovedEvent(
+				"e", "p", "u", Money.parse("-0.05", "BRL"), "APPROVED", 1L);
+
+		assertThat(PaymentEventCodec.decode(PaymentEventCodec.encode(empty))).isEqualTo(empty);
+		assertThat(PaymentEventCodec.decode(PaymentEventCodec.encode(large))).isEqualTo(large);
+		assertThat(PaymentEventCodec.decode(PaymentEventCodec.encode(negative))).isEqualTo(negative);
+	}
+
+	@Test
+	void decodesApprovedEventsWrittenWithTheDecimalLayout() {
+		BinaryWriter writer = new BinaryWriter(64);
+		writer.writeByte(PaymentEventCodec.TYPE_PAYMENT_APPROVED);
+		writer.writeByte(PaymentEventCodec.LAYOUT_V1);
+		writer.writeString(approved.eventId());
+		writer.writeString(approved.paymentId());
+		writer.writeString(approved.userId());
+		writer.writeDecimal(new BigDecimal("14957.490"));
+		writer.writeString("brl");
+		writer.writeString(approved.status());
+		writer.writeByte(1);
+		writer.writeVarLong(approved.timestamp());
+
+		assertThat(PaymentEventCodec.decode(writer.toByteArray())).isEqualTo(approved);
+	}
+
+	@Test
+	void corruptLengthNearIntMaxIsRejectedAsTruncated() {
+		BinaryWriter writer = new BinaryWriter(16);
+		writer.writeByte(PaymentEventCodec.TYPE_PAYMENT_APPROVED);
+		writer.writeByte(PaymentEventCodec.LAYOUT_V1);
+		writer.writeVarLong(Integer.MAX_VALUE);          // tamanho do eventId corrompido
+		writer.writeByte('x');
+
+		assertThatThrownBy(() -> PaymentEventCodec.decode(writer.toByteArray()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Truncated binary event");
+	}
+
+	@Test
+	void serializerSelectsFormatAndDeserializerFollowsHeader() {
+		VersionedEventDeserializer deserializer = new VersionedEventDeserializer();
+		deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "*"), false);
+
+		VersionedEventSerializer binary = new VersionedEventSerializer();
+		binary.configure(Map.of(VersionedEventSerializer.BINARY_ENABLED, true), false);
+		RecordHeaders binaryHeaders = new RecordHeaders();
+		byte[] binaryBytes = binary.serialize("payment.approved.v1", binaryHeaders, approved);
+
+		VersionedEventSerializer json = new VersionedEventSerializer();
+		json.configure(Map.of(), false);
+		RecordHeaders jsonHeaders = new RecordHeaders();
+		byte[] jsonBytes = json.serialize("payment.approved.v1", jsonHeaders, approved);
+
+		assertThat(new String(binaryHeaders.lastHeader(EventSchema.HEADER).value(), StandardCharsets.UTF_8))
+				.isEqualTo(EventSchema.BINARY_V2);
+		assertThat(new String(jsonHeaders.lastHeader(EventSchema.HEADER).value(), StandardCharsets.UTF_8))
+				.isEqualTo(EventSchema.JSON_V1);
+		assertThat(binaryBytes.length).isLessThan(jsonBytes.length / 2);
+		assertThat(new String(jsonBytes, StandardCharsets.UTF_8)).contains("\"amount\":14957.49,\"currency\":\"BRL\"");
+
+		assertThat(deserializer.deserialize("payment.approved.v1", binaryHeaders, binaryBytes)).isEqualTo(approved);
+		assertThat(deserializer.deserialize("payment.approved.v1", jsonHeaders, jsonBytes)).isEqualTo(approved);
+	}
+
+}
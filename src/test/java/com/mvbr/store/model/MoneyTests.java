@@ -0,0 +1,49 @@
+package com.mvbr.store.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.ValueInstantiationException;
+import com.mvbr.store.dto.PaymentApprovedRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTests {
+
+	@Test
+	void parsesAndFormatsInMinorUnitsOfTheCurrency() {
+		assertThat(Money.parse("10.5", "brl").minorUnits()).isEqualTo(1050);
+		assertThat(Money.parse("10.500", "BRL")).isEqualTo(Money.ofMinor(1050, "BRL"));
+		assertThat(Money.parse("-0.05", "BRL").amountText()).isEqualTo("-0.05");
+		assertThat(Money.parse("1000", "JPY").amountText()).isEqualTo("1000");
+		assertThat(Money.parse("1.5e2", "USD").minorUnits()).isEqualTo(15000);
+		assertThat(Money.of(new BigDecimal("0.001"), "BHD").toString()).isEqualTo("0.001 BHD");
+
+		assertThat(Money.parse("1", "brl").currency()).isSameAs(Money.parse("1", "BRL").currency());
+
+		assertThatThrownBy(() -> Money.parse("10.555", "BRL")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.parse("1.5", "JPY")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.parse("99999999999999999999", "BRL")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.parse("1", "XYZ1")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.parse("abc", "BRL")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void staysFlatInJson() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+
+		PaymentApprovedRequest req = mapper.readValue(
+				"{\"paymentId\":\"p-1\",\"userId\":\"u-1\",\"amount\":14957.49,\"currency\":\"brl\"}",
+				PaymentApprovedRequest.class);
+
+		assertThat(req.money()).isEqualTo(Money.ofMinor(1495749, "BRL"));
+		assertThat(mapper.writeValueAsString(req))
+				.isEqualTo("{\"paymentId\":\"p-1\",\"userId\":\"u-1\",\"amount\":14957.49,\"currency\":\"BRL\"}");
+
+		assertThat(mapper.readValue("{\"paymentId\":\"p-1\"}", PaymentApprovedRequest.class).money()).isNull();
+		assertThatThrownBy(() -> mapper.readValue("{\"paymentId\":\"p-1\",\"amount\":1}", PaymentApprovedRequest.class))
+				.isInstanceOf(ValueInstantiationException.class);
+	}
+}
@@ -0,0 +1,132 @@
+package com.mvbr.store.outbox;
+
+import com.mvbr.store.MockKafka;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.storage.SegmentedLog;
+import com.mvbr.store.tracing.PaymentTracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentOutboxTests {
+
+	private static final Money AMOUNT = Money.parse("10.50", "BRL");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void failedEventHoldsBackNewerEventsOfTheSameUserAndAckedOnesAreNotResent() throws Exception {
+		MockProducer<String, Object> producer = MockKafka.producer(false);
+		PaymentOutbox outbox = new PaymentOutbox(new PaymentApprovedProducer(MockKafka.template(producer), PaymentTracer.disabled()),
+				dir, 1 << 20, 100, Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+		// e-1 fica sem ack enquanto o resto chega: o próximo lote do relay é [e-2, f-1, e-3, f-2]
+		List<CompletableFuture<SendResult<String, Object>>> acks = new ArrayList<>();
+		acks.add(outbox.append(event("e-1", "u-1")));
+		await(() -> producer.history().size() == 1);
+		acks.add(outbox.append(event("e-2", "u-1")));
+		acks.add(outbox.append(event("f-1", "u-2")));
+		acks.add(outbox.append(event("e-3", "u-1")));
+		acks.add(outbox.append(event("f-2", "u-2")));
+		assertThat(producer.completeNext()).isTrue();
+
+		// um em voo por usuário: e-2 e f-1 saem juntos, e-3 e f-2 esperam o ack do anterior
+		await(() -> producer.history().size() == 3);
+		assertThat(producer.completeNext()).isTrue();             // e-2
+		await(() -> producer.history().size() == 4);
+		assertThat(producer.completeNext()).isTrue();             // f-1
+		await(() -> producer.history().size() == 5);
+		assertThat(producer.errorNext(new RuntimeException("broker down"))).isTrue();   // e-3
+		assertThat(producer.completeNext()).isTrue();             // f-2
+
+		assertThat(acks.get(4)).succeedsWithin(Duration.ofSeconds(5));
+		assertThat(acks.get(3)).isNotDone();
+
+		// só e-3 volta; f-2, confirmado depois da falha, não é reenviado
+		await(() -> producer.history().size() == 6);
+		acks.add(outbox.append(event("e-4", "u-1")));
+		assertThat(producer.completeNext()).isTrue();
+		assertThat(acks.get(3)).succeedsWithin(Duration.ofSeconds(5));
+		await(() -> producer.history().size() == 7);
+		assertThat(producer.completeNext()).isTrue();
+		assertThat(acks.get(5)).succeedsWithin(Duration.ofSeconds(5));
+		await(() -> outbox.backlogBytes() == 0);
+
+		assertThat(eventIds(producer.history())).containsExactly("e-1", "e-2", "f-1", "e-3", "f-2", "e-3", "e-4");
+		// por usuário, nada mais novo sai entre a falha de e-3 e o seu reenvio
+		assertThat(eventIds(producer.history(), "u-1")).containsExactly("e-1", "e-2", "e-3", "e-3", "e-4");
+		assertThat(eventIds(producer.history(), "u-2")).containsExactly("f-1", "f-2");
+
+		outbox.close();
+	}
+
+	@Test
+	void appendNotConfirmedOnDiskThrowsButTheEventIsStillRelayed() throws Exception {
+		MockProducer<String, Object> producer = MockKafka.producer(true);
+		// fsync travado até o teste liberar
+		CountDownLatch fsync = new CountDownLatch(1);
+		SegmentedLog log = new SegmentedLog(dir, 1 << 20) {
+			@Override
+			public long flush() {
+				try {
+					fsync.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				return super.flush();
+			}
+		};
+		PaymentOutbox outbox = new PaymentOutbox(new PaymentApprovedProducer(MockKafka.template(producer), PaymentTracer.disabled()),
+				log, dir, 100, Duration.ofMillis(50), new SimpleMeterRegistry());
+
+		assertThatThrownBy(() -> outbox.append(event("e-1", "u-1")))
+				.isInstanceOf(OutboxNotDurableException.class)
+				.hasMessageContaining("e-1");
+		assertThat(producer.history()).isEmpty();
+		fsync.countDown();
+
+		// o registro já estava no segmento: o relay publica, e o retry do cliente tem o mesmo eventId
+		await(() -> producer.history().size() == 1);
+		await(() -> outbox.backlogBytes() == 0);
+
+		outbox.close();
+	}
+
+	private static PaymentApprovedEvent event(String eventId, String userId) {
+		return new PaymentApprovedEvent(eventId, "p-" + eventId, userId, AMOUNT, "APPROVED", System.currentTimeMillis());
+	}
+
+	private static List<String> eventIds(List<ProducerRecord<String, Object>> records) {
+		return records.stream().map(record -> ((PaymentApprovedEvent) record.value()).eventId()).toList();
+	}
+
+	private static List<String> eventIds(List<ProducerRecord<String, Object>> records, String key) {
+		return eventIds(records.stream().filter(record -> key.equals(record.key())).toList());
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("timed out").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.mvbr.store.producer.hotkey;
+
+import com.mvbr.store.dto.HotKeyReportResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HotKeyDetectorTests {
+
+	private static final Duration WINDOW = Duration.ofHours(1);
+
+	@Test
+	void findsTheHottestKeyAndThePartitionSkew() {
+		HotKeyDetector detector = skewedTraffic();
+
+		HotKeyReportResponse report = detector.report();
+		assertThat(report.records()).isEqualTo(1_000);
+		assertThat(report.partitionRecords()).containsExactly(600L, 200L, 200L);
+		assertThat(report.skew()).isCloseTo(1.8, within(0.001));
+
+		HotKeyReportResponse.HotKey hottest = report.hotKeys().get(0);
+		assertThat(hottest.key()).isEqualTo("whale");
+		assertThat(hottest.estimate()).isGreaterThanOrEqualTo(400);
+		assertThat(hottest.hot()).isTrue();
+		assertThat(report.hotKeys()).hasSizeLessThanOrEqualTo(4);
+
+		assertThat(detector.isHot("whale")).isTrue();
+		assertThat(detector.isHot("user-1")).isFalse();
+	}
+
+	@Test
+	void countsDecayEveryWindow() {
+		HotKeyDetector detector = skewedTraffic();
+
+		detector.decayIfDue(System.currentTimeMillis() + WINDOW.toMillis());
+
+		HotKeyReportResponse report = detector.report();
+		assertThat(report.records()).isEqualTo(500);
+		assertThat(report.partitionRecords()).containsExactly(300L, 100L, 100L);
+		assertThat(report.hotKeys().get(0).estimate()).isBetween(200L, 210L);
+	}
+
+	@Test
+	void saltsOnlyHotKeysAndUnsaltsThemBack() {
+		HotKeyDetector detector = skewedTraffic();
+		HotKeySalter salter = new HotKeySalter(detector, true, 8, new SimpleMeterRegistry());
+
+		String salted = salter.keyFor("whale");
+		assertThat(salted).startsWith("whale" + HotKeySalter.SEPARATOR);
+		assertThat(HotKeySalter.unsalt(salted)).isEqualTo("whale");
+
+		assertThat(salter.keyFor("user-1")).isEqualTo("user-1");
+		assertThat(HotKeySalter.unsalt("user-1")).isEqualTo("user-1");
+
+		HotKeySalter disabled = new HotKeySalter(detector, false, 8, new SimpleMeterRegistry());
+		assertThat(disabled.keyFor("whale")).isEqualTo("whale");
+	}
+
+	// 400 registros de um usuário na partição 0 + 600 espalhados por 200 usuários
+	private static HotKeyDetector skewedTraffic() {
+		HotKeyDetector detector = new HotKeyDetector("payment.notification.v1", 4, 0.05, 100, WINDOW);
+		for (int i = 0; i < 1_000; i++) {
+			if (i % 5 < 2) {
+				detector.record("whale", 0);
+			} else {
+				detector.record("user-" + (i % 200), i % 3);
+			}
+		}
+		return detector;
+	}
+
+}
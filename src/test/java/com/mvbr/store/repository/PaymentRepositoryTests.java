@@ -0,0 +1,120 @@
+package com.mvbr.store.repository;
+
+import com.mvbr.store.model.Money;
+import com.mvbr.store.model.Payment;
+import com.mvbr.store.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentRepositoryTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void approveAndCancelRaceHasExactlyOneWinner() throws Exception {
+		PaymentRepository repository = newRepository(1000, false);
+
+		for (int i = 0; i < 200; i++) {
+			String id = "p-" + i;
+			repository.findOrRegister(id, "user-1", Money.parse("10", "BRL"));
+
+			CountDownLatch start = new CountDownLatch(1);
+			AtomicInteger wins = new AtomicInteger();
+			Thread approve = Thread.ofPlatform().start(() -> attempt(start, wins, () -> repository.approve(id)));
+			Thread cancel = Thread.ofPlatform().start(() -> attempt(start, wins, () -> repository.cancel(id)));
+			start.countDown();
+			approve.join();
+			cancel.join();
+
+			assertThat(wins.get()).isEqualTo(1);
+			assertThat(repository.findById(id).orElseThrow().isTerminal()).isTrue();
+		}
+	}
+
+	@Test
+	void resubmissionReturnsTheStoredPaymentAndRejectsDifferentData() {
+		PaymentRepository repository = newRepository(1000, false);
+
+		Payment first = repository.findOrRegister("p-1", "user-1", Money.parse("10.00", "brl"));
+		assertThat(repository.findOrRegister("p-1", "user-1", Money.parse("10", "BRL"))).isSameAs(first);
+		assertThatThrownBy(() -> repository.findOrRegister("p-1", "user-1", Money.parse("11", "BRL")))
+				.isInstanceOf(IllegalArgumentException.class);
+
+		repository.approve(first);
+		assertThatThrownBy(() -> repository.approve("p-1")).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> repository.cancel("unknown")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void reapprovalThatChangesNothingIsNotQueuedForEvictionAgain() {
+		PaymentRepository repository = newRepository(1000, false);
+
+		Payment payment = repository.findOrRegister("p-1", "user-1", Money.parse("10", "BRL"));
+		for (int i = 0; i < 100; i++) {
+			assertThat(repository.approveIdempotent(payment).getStatus()).isEqualTo(PaymentStatus.APPROVED);
+		}
+
+		assertThat(repository.terminatedQueueSize()).isEqualTo(1);
+	}
+
+	@Test
+	void evictsOnlyTerminalPaymentsAndKeepsTheUserIndexInSync() {
+		PaymentRepository repository = newRepository(2, false);      // 1 shard, 2 pagamentos
+
+		repository.findOrRegister("p-1", "user-1", Money.parse("1", "BRL"));
+		repository.findOrRegister("p-2", "user-1", Money.parse("1", "BRL"));
+		assertThatThrownBy(() -> repository.findOrRegister("p-3", "user-2", Money.parse("1", "BRL")))
+				.isInstanceOf(IllegalStateException.class);
+
+		repository.cancel("p-1");
+		repository.findOrRegister("p-3", "user-2", Money.parse("1", "BRL"));
+
+		assertThat(repository.findById("p-1")).isEmpty();
+		assertThat(repository.findByUserId("user-1")).extracting(Payment::getPaymentId).containsExactly("p-2");
+		assertThat(repository.findByUserId("user-2")).extracting(Payment::getPaymentId).containsExactly("p-3");
+		assertThat(repository.size()).isEqualTo(2);
+	}
+
+	@Test
+	void snapshotRestoresPaymentsWithStatus() {
+		PaymentRepository repository = newRepository(1000, true);
+		repository.findOrRegister("p-1", "user-1", Money.parse("12.34", "USD"));
+		repository.approve(repository.findOrRegister("p-2", "user-1", Money.parse("1", "BRL")));
+		repository.close();
+
+		PaymentRepository restored = newRepository(1000, true);
+		try {
+			assertThat(restored.findById("p-1").orElseThrow().getAmount()).isEqualTo(Money.parse("12.34", "USD"));
+			assertThat(restored.findById("p-2").orElseThrow().getStatus()).isEqualTo(PaymentStatus.APPROVED);
+			assertThat(restored.findByUserId("user-1")).hasSize(2);
+		} finally {
+			restored.close();
+		}
+	}
+
+	private PaymentRepository newRepository(int capacity, boolean snapshot) {
+		int shards = capacity <= 2 ? 1 : 8;
+		return new PaymentRepository(shards, capacity, snapshot, dir, Duration.ofHours(1));
+	}
+
+	private static void attempt(CountDownLatch start, AtomicInteger wins, Runnable transition) {
+		try {
+			start.await();
+			transition.run();
+			wins.incrementAndGet();
+		} catch (IllegalStateException ex) {
+			// perdeu a corrida
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.mvbr.store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mvbr.store.MockKafka;
+import com.mvbr.store.dto.BulkPaymentResult;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.repository.PaymentRepository;
+import com.mvbr.store.tracing.PaymentTracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkPaymentIngestionServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private MockProducer<String, Object> mockProducer;
+	private BulkPaymentIngestionService service;
+
+	@BeforeEach
+	void setUp() {
+		mockProducer = MockKafka.producer(true);
+		PaymentRepository repository = new PaymentRepository(4, 1_000, false, dir, Duration.ofMinutes(1));
+		PaymentTracer tracer = PaymentTracer.disabled();
+		PaymentService paymentService = new PaymentService(repository, new PaymentApprovedProducer(MockKafka.template(mockProducer), tracer), tracer, null);
+		IdempotentPaymentIngress ingress = new IdempotentPaymentIngress(paymentService, Duration.ofMinutes(10), 1_000,
+				new SimpleMeterRegistry());
+		service = new BulkPaymentIngestionService(ingress, objectMapper);
+	}
+
+	@Test
+	void invalidNdjsonLinesAreRejectedAndTheStreamGoesOn() throws Exception {
+		List<BulkPaymentResult> results = ingest("""
+				{"paymentId":"p-1","userId":"u-1","amount":"10.00","currency":"BRL"}
+				{"paymentId":"p-2","userId":"u-1","amount":
+				{"paymentId":"p-3","userId":"u-1","amount":"abc","currency":"BRL"}
+
+				{"paymentId":"p-4","userId":"u-2","amount":"5.00","currency":"BRL"}
+				{"paymentId":"p-5","userId":"u-2","amount":"5.00","currency":"BRL"} trailing
+				{"paymentId":["p-6"],"userId":"u-2","amount":"5.00","currency":"BRL"}
+				{"paymentId":"p-7","userId":"u-3","amount":"1.00","currency":"BRL"}
+				""");
+
+		assertThat(results).extracting(BulkPaymentResult::index).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L);
+		assertThat(results).extracting(BulkPaymentResult::status)
+				.containsExactly("ACKED", "REJECTED", "REJECTED", "ACKED", "REJECTED", "REJECTED", "ACKED");
+		assertThat(results).extracting(BulkPaymentResult::paymentId)
+				.containsExactly("p-1", null, null, "p-4", null, null, "p-7");
+		assertThat(results).filteredOn(result -> result.status().equals("REJECTED"))
+				.allSatisfy(result -> assertThat(result.error()).isNotBlank());
+		assertThat(mockProducer.history()).hasSize(3);
+	}
+
+	@Test
+	void brokenArraySyntaxStopsAfterReportingEveryEarlierElement() throws Exception {
+		List<BulkPaymentResult> results = ingest("""
+				[
+				  {"paymentId":"p-1","userId":"u-1","amount":"10.00","currency":"BRL"},
+				  {"paymentId":"p-2","userId":"u-1","amount":"abc","currency":"BRL"},
+				  {"paymentId":"p-3","userId":"u-1","amount":"2.00","currency":"BRL"},
+				  {"paymentId":"p-4","userId" "u-1"},
+				  {"paymentId":"p-5","userId":"u-1","amount":"3.00","currency":"BRL"}
+				]
+				""");
+
+		assertThat(results).extracting(BulkPaymentResult::status)
+				.containsExactly("ACKED", "REJECTED", "ACKED", "REJECTED");
+		assertThat(results.get(3).index()).isEqualTo(3);
+		assertThat(mockProducer.history()).hasSize(2);
+	}
+
+	private List<BulkPaymentResult> ingest(String body) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+		List<BulkPaymentResult> results = new ArrayList<>();
+		for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+			results.add(objectMapper.readValue(line, BulkPaymentResult.class));
+		}
+		return results;
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.mvbr.store.service;
+
+import com.mvbr.store.MockKafka;
+import com.mvbr.store.model.IllegalPaymentTransitionException;
+import com.mvbr.store.model.Money;
+import com.mvbr.store.model.Payment;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import com.mvbr.store.repository.PaymentRepository;
+import com.mvbr.store.tracing.PaymentTracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotentPaymentIngressTests {
+
+	@TempDir
+	Path dir;
+
+	private final Money amount = Money.parse("10.50", "BRL");
+
+	private MockProducer<String, Object> mockProducer;
+	private PaymentRepository paymentRepository;
+	private PaymentService paymentService;
+
+	@BeforeEach
+	void setUp() {
+		mockProducer = MockKafka.producer(false);
+		paymentRepository = new PaymentRepository(4, 1_000, false, dir, Duration.ofMinutes(1));
+		PaymentTracer tracer = PaymentTracer.disabled();
+		paymentService = new PaymentService(paymentRepository, new PaymentApprovedProducer(MockKafka.template(mockProducer), tracer), tracer, null);
+	}
+
+	@Test
+	void concurrentDuplicatesShareOnePublish() throws Exception {
+		IdempotentPaymentIngress ingress = newIngress(Duration.ofMinutes(10));
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<PaymentPublication>> results = new ArrayList<>();
+		for (int i = 0; i < 32; i++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				return ingress.approvePayment("p-1", "user-1", amount);
+			}));
+		}
+		start.countDown();
+
+		String eventId = results.get(0).get().event().eventId();
+		for (Future<PaymentPublication> result : results) {
+			assertThat(result.get().event().eventId()).isEqualTo(eventId);
+		}
+		executor.shutdown();
+
+		assertThat(mockProducer.history()).hasSize(1);
+		assertThat(ingress.published()).isEqualTo(1);
+		assertThat(ingress.collapsed()).isEqualTo(31);
+	}
+
+	@Test
+	void ackedPublicationIsAnsweredFromCacheUntilTtl() {
+		IdempotentPaymentIngress ingress = newIngress(Duration.ofMinutes(10));
+
+		PaymentPublication first = ingress.approvePayment("p-1", "user-1", amount);
+		mockProducer.completeNext();
+
+		PaymentPublication retry = ingress.approvePayment("p-1", "user-1", amount);
+
+		assertThat(retry).isSameAs(first);
+		assertThat(retry.ack()).isCompleted();
+		assertThat(mockProducer.history()).hasSize(1);
+		assertThat(ingress.cached()).isEqualTo(1);
+
+		assertThatThrownBy(() -> ingress.approvePayment("p-1", "user-2", amount))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void expiredOrFailedPublicationsGoBackToPaymentService() {
+		IdempotentPaymentIngress ingress = newIngress(Duration.ZERO);
+
+		PaymentPublication first = ingress.approvePayment("p-1", "user-1", amount);
+		mockProducer.completeNext();
+
+		// fora do cache, mas já confirmado: o PaymentService devolve o mesmo ack sem publicar
+		PaymentPublication again = ingress.approvePayment("p-1", "user-1", amount);
+		assertThat(again.event().eventId()).isEqualTo(first.event().eventId());
+		assertThat(again.ack().join().getRecordMetadata().offset()).isEqualTo(first.ack().join().getRecordMetadata().offset());
+
+		PaymentPublication failed = ingress.approvePayment("p-2", "user-1", amount);
+		mockProducer.errorNext(new RuntimeException("broker down"));
+		assertThat(failed.ack()).isCompletedExceptionally();
+		assertThat(ingress.size()).isZero();
+
+		// o status já é APPROVED, mas o pedido repetido depois da falha ainda publica
+		PaymentPublication retry = ingress.approvePayment("p-2", "user-1", amount);
+		mockProducer.completeNext();
+		assertThat(retry.ack()).isCompleted();
+		assertThat(retry.event().eventId()).isEqualTo(failed.event().eventId());
+		assertThat(mockProducer.history()).hasSize(3);
+	}
+
+	@Test
+	void canceledPaymentCannotBeApproved() {
+		IdempotentPaymentIngress ingress = newIngress(Duration.ofMinutes(10));
+
+		paymentService.cancelPayment(paymentRepository.register(new Payment("p-1", "user-1", amount)).getPaymentId());
+
+		assertThatThrownBy(() -> ingress.approvePayment("p-1", "user-1", amount))
+				.isInstanceOf(IllegalPaymentTransitionException.class);
+		assertThat(mockProducer.history()).isEmpty();
+	}
+
+	private IdempotentPaymentIngress newIngress(Duration ttl) {
+		return new IdempotentPaymentIngress(paymentService, ttl, 1_000, new SimpleMeterRegistry());
+	}
+
+}
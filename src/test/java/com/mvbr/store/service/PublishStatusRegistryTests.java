@@ -0,0 +1,67 @@
+package com.mvbr.store.service;
+
+import com.mvbr.store.dto.PaymentPublishResponse;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PublishStatusRegistryTests {
+
+	private final PublishStatusRegistry registry = new PublishStatusRegistry();
+
+	@Test
+	void tracksPendingUntilTheAckAndKeepsTheRecordPosition() {
+		CompletableFuture<SendResult<String, Object>> ack = new CompletableFuture<>();
+		CompletableFuture<PaymentPublishResponse> tracked = registry.track(new PaymentPublication(event("e-1"), ack));
+
+		assertThat(registry.find("e-1")).get().extracting(PaymentPublishResponse::status).isEqualTo("PENDING");
+		assertThat(tracked).isNotDone();
+
+		ack.complete(sendResult("e-1", 3, 42L));
+
+		assertThat(tracked).isCompletedWithValue(new PaymentPublishResponse("e-1", "p-e-1", "ACKED", 3, 42L, null));
+		assertThat(registry.find("e-1")).contains(tracked.join());
+	}
+
+	@Test
+	void failedPublishIsReportedAndARepublicationGoesBackToPending() {
+		CompletableFuture<SendResult<String, Object>> ack = new CompletableFuture<>();
+		CompletableFuture<PaymentPublishResponse> tracked = registry.track(new PaymentPublication(event("e-1"), ack));
+
+		ack.completeExceptionally(new RuntimeException("broker down"));
+
+		// o future do track completa normalmente, com o status final
+		assertThat(tracked.join().status()).isEqualTo("FAILED");
+		assertThat(tracked.join().error()).isEqualTo("broker down");
+		assertThat(registry.find("e-1")).get().extracting(PaymentPublishResponse::status).isEqualTo("FAILED");
+
+		CompletableFuture<SendResult<String, Object>> retry = new CompletableFuture<>();
+		registry.track(new PaymentPublication(event("e-1"), retry));
+		assertThat(registry.find("e-1")).get().extracting(PaymentPublishResponse::status).isEqualTo("PENDING");
+
+		retry.complete(sendResult("e-1", 0, 7L));
+		assertThat(registry.find("e-1")).get().extracting(PaymentPublishResponse::status).isEqualTo("ACKED");
+	}
+
+	@Test
+	void unknownEventIdIsEmpty() {
+		assertThat(registry.find("nope")).isEmpty();
+	}
+
+	private static PaymentApprovedEvent event(String eventId) {
+		return new PaymentApprovedEvent(eventId, "p-" + eventId, "u-1", Money.parse("10.50", "BRL"), "APPROVED", 1L);
+	}
+
+	private static SendResult<String, Object> sendResult(String eventId, int partition, long offset) {
+		RecordMetadata metadata = new RecordMetadata(new TopicPartition("payment.approved.v1", partition), offset, 0, 0L, 0, 0);
+		return new SendResult<>(new ProducerRecord<>("payment.approved.v1", eventId), metadata);
+	}
+}
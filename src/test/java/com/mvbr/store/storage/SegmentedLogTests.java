@@ -0,0 +1,69 @@
+package com.mvbr.store.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentedLogTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void appendsAcrossSegmentsAndReadsBack() {
+		try (SegmentedLog log = new SegmentedLog(directory, 256)) {
+			List<Long> positions = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				positions.add(log.append(("event-" + i).getBytes(StandardCharsets.UTF_8)));
+			}
+
+			List<String> read = new ArrayList<>();
+			long next = log.read(0, log.writePosition(), Integer.MAX_VALUE,
+					(position, payload) -> read.add(new String(payload, StandardCharsets.UTF_8)));
+
+			assertThat(read).hasSize(50).startsWith("event-0").endsWith("event-49");
+			assertThat(next).isEqualTo(log.writePosition());
+			assertThat(new String(log.readAt(positions.get(42)), StandardCharsets.UTF_8)).isEqualTo("event-42");
+		}
+	}
+
+	@Test
+	void recoversWritePositionAfterReopenAndDeletesOldSegments() throws Exception {
+		long end;
+		try (SegmentedLog log = new SegmentedLog(directory, 256)) {
+			for (int i = 0; i < 30; i++) {
+				log.append(("event-" + i).getBytes(StandardCharsets.UTF_8));
+			}
+			end = log.writePosition();
+		}
+
+		try (SegmentedLog log = new SegmentedLog(directory, 256)) {
+			assertThat(log.writePosition()).isEqualTo(end);
+
+			long position = log.append("after-restart".getBytes(StandardCharsets.UTF_8));
+			assertThat(new String(log.readAt(position), StandardCharsets.UTF_8)).isEqualTo("after-restart");
+
+			long segmentsBefore;
+			try (var files = Files.list(directory)) {
+				segmentsBefore = files.count();
+			}
+			log.deleteSegmentsBefore(position);
+			try (var files = Files.list(directory)) {
+				assertThat(files.count()).isLessThan(segmentsBefore);
+			}
+
+			List<String> read = new ArrayList<>();
+			log.read(0, log.writePosition(), Integer.MAX_VALUE,
+					(p, payload) -> read.add(new String(payload, StandardCharsets.UTF_8)));
+			assertThat(read).endsWith("after-restart").doesNotContain("event-0");
+		}
+	}
+
+}
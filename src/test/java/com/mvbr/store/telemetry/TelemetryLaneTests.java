@@ -0,0 +1,76 @@
+package com.mvbr.store.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mvbr.store.MockKafka;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelemetryLaneTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void spillsWhenTheProducerRejectsAndReplaysInOrderLater() throws Exception {
+		MockProducer<String, Object> producer = MockKafka.producer(true);
+		producer.sendException = new BufferExhaustedException("buffer full");
+
+		TelemetryLane lane = newLane(producer, 1_024, 1 << 20);
+		for (int i = 0; i < 10; i++) {
+			assertThat(lane.emit(event(i))).isTrue();
+		}
+		await(() -> lane.spilled() == 10);
+		assertThat(producer.history()).isEmpty();
+
+		producer.sendException = null;
+		await(() -> lane.replayed() == 10);
+
+		assertThat(producer.history()).hasSize(10);
+		assertThat(((TelemetryEvent) producer.history().get(0).value()).attributes()).containsEntry("seq", "0");
+		assertThat(((TelemetryEvent) producer.history().get(9).value()).attributes()).containsEntry("seq", "9");
+		assertThat(lane.spillBacklogBytes()).isZero();
+		assertThat(lane.dropped()).isZero();
+		lane.close();
+	}
+
+	@Test
+	void dropsInsteadOfBlockingWhenTheSpillIsFull() throws Exception {
+		MockProducer<String, Object> producer = MockKafka.producer(true);
+		producer.sendException = new BufferExhaustedException("buffer full");
+
+		TelemetryLane lane = newLane(producer, 1_024, 256);
+		for (int i = 0; i < 100; i++) {
+			lane.emit(event(i));
+		}
+		await(() -> lane.spilled() + lane.dropped() == 100);
+
+		assertThat(lane.dropped()).isPositive();
+		assertThat(lane.spillBacklogBytes()).isLessThan(256 + 200);
+		lane.close();
+	}
+
+	private TelemetryLane newLane(MockProducer<String, Object> producer, int capacity, long maxSpillBytes) {
+		return new TelemetryLane(MockKafka.template(producer), "telemetry.v1", capacity, dir, 64 * 1024, maxSpillBytes, new ObjectMapper());
+	}
+
+	private static TelemetryEvent event(int seq) {
+		return new TelemetryEvent("page-view", "user-" + seq, Map.of("seq", Integer.toString(seq)), seq);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("timed out").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+}
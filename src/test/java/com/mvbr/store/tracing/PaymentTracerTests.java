@@ -0,0 +1,111 @@
+package com.mvbr.store.tracing;
+
+import com.mvbr.store.dto.StageLatencyResponse;
+import com.mvbr.store.event.PaymentApprovedEvent;
+import com.mvbr.store.model.Money;
+import com.mvbr.store.producer.PaymentApprovedProducer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentTracerTests {
+
+	@Test
+	void recorderKeepsTheLatestSamplesAndReportsPercentiles() {
+		LatencyFlightRecorder recorder = new LatencyFlightRecorder(100);    // arredonda para 128
+
+		for (int i = 1; i <= 228; i++) {
+			recorder.record(TraceStage.HANDLER, i * 1_000L);
+		}
+		recorder.record(TraceStage.HANDLER, -1);                            // descartada
+
+		StageLatencyResponse handler = recorder.snapshot(TraceStage.HANDLER);
+		assertThat(handler.totalRecorded()).isEqualTo(228);
+		assertThat(handler.samples()).isEqualTo(128);
+		// ficaram as amostras 101..228 µs
+		assertThat(handler.p50Micros()).isEqualTo(164.0);
+		assertThat(handler.p99Micros()).isEqualTo(227.0);
+		assertThat(handler.maxMicros()).isEqualTo(228.0);
+
+		assertThat(recorder.snapshot(TraceStage.DELIVERY).samples()).isZero();
+	}
+
+	@Test
+	void sampledPaymentCarriesCheckpointsFromRequestToHandler() {
+		PaymentTracer tracer = new PaymentTracer(true, 1.0, 64, Duration.ofMinutes(2));
+		MockProducer<String, Object> mockProducer = new MockProducer<>(true, new StringSerializer(), (topic, value) -> new byte[0]);
+		PaymentApprovedProducer producer = new PaymentApprovedProducer(
+				new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)), tracer);
+
+		assertThat(tracer.begin()).isTrue();
+		PaymentApprovedEvent event = event("evt-1");
+		tracer.eventBuilt(event);
+		tracer.end();
+
+		producer.producePaymentApproved(event);
+
+		ProducerRecord<String, Object> sent = mockProducer.history().get(0);
+		assertThat(sent.headers().lastHeader(PaymentTracer.RECEIVED_HEADER)).isNotNull();
+		assertThat(sent.headers().lastHeader(PaymentTracer.SENT_HEADER)).isNotNull();
+
+		ConsumerRecord<String, Object> received = new ConsumerRecord<>(sent.topic(), 0, 0, sent.key(), sent.value());
+		sent.headers().forEach(header -> received.headers().add(header));
+		tracer.handled(received, PaymentTracer.now());
+
+		for (TraceStage stage : TraceStage.values()) {
+			assertThat(tracer.recorder().snapshot(stage).samples()).as(stage.name()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void sampledEventsThatNeverReachTheSendExpireInsteadOfStoppingTheSampling() {
+		PaymentTracer tracer = new PaymentTracer(true, 1.0, 64, Duration.ZERO);
+		MockProducer<String, Object> mockProducer = new MockProducer<>(true, new StringSerializer(), (topic, value) -> new byte[0]);
+		PaymentApprovedProducer producer = new PaymentApprovedProducer(
+				new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)), tracer);
+
+		// requests amostrados que falharam depois do build: nenhum chega ao send
+		for (int i = 0; i < 10_000; i++) {
+			assertThat(tracer.begin()).isTrue();
+			tracer.eventBuilt(event("lost-" + i));
+			tracer.end();
+		}
+
+		assertThat(tracer.begin()).isTrue();
+		PaymentApprovedEvent event = event("evt-1");
+		tracer.eventBuilt(event);
+		tracer.end();
+		producer.producePaymentApproved(event);
+
+		assertThat(mockProducer.history().get(0).headers().lastHeader(PaymentTracer.SENT_HEADER)).isNotNull();
+	}
+
+	@Test
+	void unsampledPaymentsKeepTheSharedHeaders() {
+		PaymentTracer tracer = new PaymentTracer(true, 0, 64, Duration.ofMinutes(2));
+		MockProducer<String, Object> mockProducer = new MockProducer<>(true, new StringSerializer(), (topic, value) -> new byte[0]);
+		PaymentApprovedProducer producer = new PaymentApprovedProducer(
+				new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)), tracer);
+
+		assertThat(tracer.begin()).isFalse();
+		PaymentApprovedEvent event = event("evt-2");
+		tracer.eventBuilt(event);
+		producer.producePaymentApproved(event);
+
+		assertThat(mockProducer.history().get(0).headers().lastHeader(PaymentTracer.SENT_HEADER)).isNull();
+		assertThat(tracer.recorder().snapshot(TraceStage.SERVICE).totalRecorded()).isZero();
+	}
+
+	private static PaymentApprovedEvent event(String eventId) {
+		return new PaymentApprovedEvent(eventId, "p-1", "user-1", Money.parse("10.50", "BRL"), "APPROVED", 0L);
+	}
+
+}